@@ -0,0 +1,81 @@
+package com.synchrony.userapp.config;
+
+import com.synchrony.userapp.model.MyUserDetails;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of authenticating one request in {@link JwtRequestFilter}, with the principal
+ * served from memory as it is once the principal cache is warm and a revocation list
+ * holding 10000 other tokens in an in-memory H2 db, which a token missing the Bloom filter never queries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtRequestFilterBenchmark {
+
+    private JwtRequestFilter filter;
+
+    private String authorization;
+
+    private final FilterChain chain = (request, response) -> { };
+
+    @Setup
+    public void setUp() {
+        JwtUtils jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "ScSw160jFqYm");
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3600000);
+        jwtUtils.initVerifiedTokenCache();
+        UserDetails user = new MyUserDetails("vidhya@yopmail.com", "testing");
+        UserDetailsService userDetailsService = username -> user;
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:revocation;DB_CLOSE_DELAY=-1");
+        Flyway.configure().dataSource(dataSource).load().migrate();
+        TokenRevocationList revocationList = new TokenRevocationList(new SimpleMeterRegistry(),
+                new JdbcTemplate(dataSource), 100000, 0.01);
+        Date expiration = new Date(System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1));
+        for (int i = 0; i < 10000; i++) {
+            revocationList.revoke(UUID.randomUUID().toString(), expiration);
+        }
+
+        filter = new JwtRequestFilter();
+        ReflectionTestUtils.setField(filter, "jwtTokenUtil", jwtUtils);
+        ReflectionTestUtils.setField(filter, "userService", userDetailsService);
+        ReflectionTestUtils.setField(filter, "tokenRevocationList", revocationList);
+        authorization = "Bearer " + jwtUtils.generateJwtToken(user);
+    }
+
+    @Benchmark
+    public MockHttpServletResponse doFilter() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/imageData");
+        request.addHeader("Authorization", authorization);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        try {
+            filter.doFilter(request, response, chain);
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+        return response;
+    }
+}
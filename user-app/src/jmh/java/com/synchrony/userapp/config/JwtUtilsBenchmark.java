@@ -0,0 +1,73 @@
+package com.synchrony.userapp.config;
+
+import com.synchrony.userapp.model.MyUserDetails;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per request cost of authenticating a bearer token.<br>
+ * {@code threeVerifications} replays what the filter did before claims were reused:
+ * one verification for the subject and two more inside validateToken.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtUtilsBenchmark {
+
+    private static final String SECRET = "ScSw160jFqYm";
+
+    @Param({"false", "true"})
+    private boolean verifiedCacheEnabled;
+
+    private JwtUtils jwtUtils;
+
+    private UserDetails userDetails;
+
+    private String token;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 3600000);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheEnabled", verifiedCacheEnabled);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheMaximumSize", 10000L);
+        ReflectionTestUtils.setField(jwtUtils, "verifiedCacheTtlMs", 60000L);
+        jwtUtils.initVerifiedTokenCache();
+        userDetails = new MyUserDetails("vidhya@yopmail.com", "testing");
+        token = jwtUtils.generateJwtToken(userDetails);
+    }
+
+    @Benchmark
+    public boolean threeVerifications() {
+        String username = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody().getSubject();
+        String subject = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody().getSubject();
+        Date expiration = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody().getExpiration();
+        return username.equals(userDetails.getUsername()) && subject.equals(username)
+                && !expiration.before(new Date());
+    }
+
+    @Benchmark
+    public boolean parseAndVerify() {
+        Claims claims = jwtUtils.parseAndVerify(token);
+        return jwtUtils.validateToken(claims, userDetails);
+    }
+
+    @Benchmark
+    public String generateJwtToken() {
+        return jwtUtils.generateJwtToken(userDetails);
+    }
+}
@@ -0,0 +1,115 @@
+package com.synchrony.userapp.entity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput and on disk size of a user_gallery shaped table in H2, keyed either by random
+ * uuids in VARCHAR(255) as before or by time ordered uuids in BINARY(16).<br>
+ * The table is preloaded so inserts land in a B-tree of realistic depth. The size of the table with
+ * its primary key and listing index is printed once per trial, e.g.
+ * ./gradlew jmh -PjmhIncludes=IdInsertBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class IdInsertBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+
+    private static final int USERS = 1000;
+
+    @Param({"varchar-random", "binary-time-ordered"})
+    private String idLayout;
+
+    @Param({"200000"})
+    private int preloadedRows;
+
+    private Connection connection;
+
+    private PreparedStatement insert;
+
+    private Object[] userIds;
+
+    private long inserted;
+
+    @Setup
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:id-insert-" + idLayout + ";MODE=PostgreSQL");
+        connection.setAutoCommit(false);
+        String idType = binary() ? "binary(16)" : "varchar(255)";
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create table gallery (id " + idType + " not null, user_id " + idType + ","
+                    + " storage_key varchar(64), created_at timestamp, constraint pk_gallery primary key (id))");
+            statement.execute("create index idx_gallery_listing on gallery (user_id, created_at, id)");
+        }
+        userIds = new Object[USERS];
+        for (int i = 0; i < USERS; i++) {
+            userIds[i] = newId();
+        }
+        insert = connection.prepareStatement(
+                "insert into gallery (id, user_id, storage_key, created_at) values (?, ?, ?, ?)");
+        for (int i = 0; i < preloadedRows / BATCH_SIZE; i++) {
+            insertBatch();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select disk_space_used('GALLERY'), count(*) from gallery")) {
+            rs.next();
+            long bytes = rs.getLong(1);
+            long rows = rs.getLong(2);
+            System.out.printf("%n%s: %d rows, %d KiB for table and indexes, %d bytes per row%n",
+                    idLayout, rows, bytes / 1024, bytes / rows);
+        }
+        insert.close();
+        connection.close();
+    }
+
+    /**
+     * Description: Insert one batch of gallery rows and commit, as a burst of uploads would.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insertBatch() throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            insert.setObject(1, newId());
+            insert.setObject(2, userIds[(int) (inserted++ % USERS)]);
+            insert.setString(3, "5f70bf18a086007016e948b04aed3b82103a36bea41755b6cddfaf10ace3c6ef");
+            insert.setTimestamp(4, now);
+            insert.addBatch();
+        }
+        insert.executeBatch();
+        connection.commit();
+    }
+
+    private Object newId() {
+        return binary() ? TimeOrderedUuidGenerator.toBytes(TimeOrderedUuidGenerator.next())
+                : UUID.randomUUID().toString();
+    }
+
+    private boolean binary() {
+        return "binary-time-ordered".equals(idLayout);
+    }
+}
@@ -0,0 +1,142 @@
+package com.synchrony.userapp.service.implemetation;
+
+import com.synchrony.userapp.model.ImageDataQuery;
+import com.synchrony.userapp.model.UserGalleryMetadata;
+import com.synchrony.userapp.repository.UserGalleryRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Cost of writing one /imageData page as JSON, the repository is replaced by in-memory rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ImageDataBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int images;
+
+    private UserServiceImpl userService;
+
+    private ImageDataQuery query;
+
+    private final CountingOutputStream out = new CountingOutputStream();
+
+    @Setup
+    public void setUp() {
+        List<UserGalleryMetadata> rows = new ArrayList<>(images + 1);
+        Instant createdAt = Instant.now();
+        for (int i = 0; i <= images; i++) {
+            rows.add(new Row(UUID.randomUUID(), "image-" + i + ".jpg", 1024L * 1024, "image/jpeg",
+                    createdAt.plusMillis(i)));
+        }
+        UserGalleryRepository repository = mock(UserGalleryRepository.class);
+        when(repository.streamMetadataByUserId(any(), any())).thenAnswer(invocation -> rows.stream());
+
+        userService = new UserServiceImpl();
+        ReflectionTestUtils.setField(userService, "userGalleryRepository", repository);
+        query = new ImageDataQuery(UUID.randomUUID(), "vidhya@yopmail.com", images, null);
+    }
+
+    @Benchmark
+    public long writeImagesData() throws IOException {
+        out.count = 0;
+        userService.writeImagesData(query, out);
+        return out.count;
+    }
+
+    /**
+     * Sink which only counts the bytes written, so the benchmark measures serialization alone.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(final int b) {
+            count++;
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+            count += len;
+        }
+    }
+
+    private static final class Row implements UserGalleryMetadata {
+
+        private final UUID id;
+
+        private final String fileName;
+
+        private final Long fileSize;
+
+        private final String contentType;
+
+        private final Instant createdAt;
+
+        private Row(final UUID id, final String fileName, final Long fileSize, final String contentType,
+                final Instant createdAt) {
+            this.id = id;
+            this.fileName = fileName;
+            this.fileSize = fileSize;
+            this.contentType = contentType;
+            this.createdAt = createdAt;
+        }
+
+        @Override
+        public UUID getId() {
+            return id;
+        }
+
+        @Override
+        public String getFileName() {
+            return fileName;
+        }
+
+        @Override
+        public Long getFileSize() {
+            return fileSize;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public Integer getWidth() {
+            return 4032;
+        }
+
+        @Override
+        public Integer getHeight() {
+            return 3024;
+        }
+
+        @Override
+        public Instant getCreatedAt() {
+            return createdAt;
+        }
+    }
+}
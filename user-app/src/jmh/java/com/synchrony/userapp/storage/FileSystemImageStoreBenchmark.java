@@ -0,0 +1,87 @@
+package com.synchrony.userapp.storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload and download byte paths of the filesystem image store.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FileSystemImageStoreBenchmark {
+
+    @Param({"102400", "4194304"})
+    private int imageSize;
+
+    private Path storePath;
+
+    private FileSystemImageStore imageStore;
+
+    private byte[] image;
+
+    /**
+     * Differs from the downloaded image, so uploads are not deduplicated against it.
+     */
+    private byte[] upload;
+
+    private String storedKey;
+
+    private final byte[] buffer = new byte[8192];
+
+    @Setup
+    public void setUp() throws IOException {
+        storePath = Files.createTempDirectory("image-store-benchmark");
+        imageStore = new FileSystemImageStore();
+        ReflectionTestUtils.setField(imageStore, "storePath", storePath.toString());
+        image = new byte[imageSize];
+        new Random(42).nextBytes(image);
+        upload = new byte[imageSize];
+        new Random(7).nextBytes(upload);
+        StoredImage stored = imageStore.store(new ByteArrayInputStream(image));
+        imageStore.publish(stored);
+        storedKey = stored.getStorageKey();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(storePath);
+    }
+
+    @Benchmark
+    public String upload() throws IOException {
+        StoredImage stored = imageStore.store(new ByteArrayInputStream(upload));
+        imageStore.publish(stored);
+        imageStore.delete(stored.getStorageKey());
+        return stored.getStorageKey();
+    }
+
+    @Benchmark
+    public long download() throws IOException {
+        long read = 0;
+        try (InputStream in = imageStore.load(storedKey).getInputStream()) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                read += n;
+            }
+        }
+        return read;
+    }
+}
@@ -0,0 +1,235 @@
+package com.synchrony.userapp.loadtest;
+
+import com.synchrony.userapp.UserAppApplication;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end load test, started by the {@code loadTest} Gradle task.<br>
+ * Boots the application on a random port with its own in-memory db and image directory,
+ * registers {@code loadTest.users} users and lets each of them run a weighted mix of calls
+ * for {@code loadTest.durationSeconds}. Latencies are recorded per endpoint after the warmup and
+ * checked against the thresholds file, the process exits with 1 when one is exceeded.
+ * Any {@code loadTest.app.*} property is handed to the application, e.g.
+ * {@code -PloadTest.app.server.tomcat.threads.max=400}. The report names the thread model the
+ * requests ran on, {@code loadTestCompare} runs the load on both.
+ */
+public final class LoadTestRunner {
+
+    static final String[] ENDPOINTS = {"login", "uploadImage", "imageData", "image", "deleteImage"};
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private static final String APP_PROPERTY_PREFIX = "loadTest.app.";
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        int users = Integer.getInteger("loadTest.users", 500);
+        int durationSeconds = Integer.getInteger("loadTest.durationSeconds", 60);
+        int warmupSeconds = Integer.getInteger("loadTest.warmupSeconds", 10);
+        int thinkTimeMs = Integer.getInteger("loadTest.thinkTimeMs", 100);
+        int imageKb = Integer.getInteger("loadTest.imageKb", 200);
+        Map<String, Integer> mix = parseMix(System.getProperty("loadTest.mix",
+                "login=5,uploadImage=10,imageData=35,image=45,deleteImage=5"));
+
+        Map<String, Histogram> latencies = new LinkedHashMap<>();
+        Map<String, LongAdder> errors = new LinkedHashMap<>();
+        for (String endpoint : ENDPOINTS) {
+            latencies.put(endpoint, new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3));
+            errors.put(endpoint, new LongAdder());
+        }
+
+        ConfigurableApplicationContext context = startApplication(users);
+        boolean passed;
+        try {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/user";
+            byte[] image = jpeg(imageKb);
+            long measureFrom = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+            long deadline = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+
+            ExecutorService pool = Executors.newFixedThreadPool(users);
+            List<Future<?>> running = new ArrayList<>(users);
+            for (int i = 0; i < users; i++) {
+                running.add(pool.submit(new VirtualUser(baseUrl, "load-user-" + i + "@example.com", image, mix,
+                        thinkTimeMs, measureFrom, deadline, latencies, errors)));
+            }
+            for (Future<?> user : running) {
+                user.get();
+            }
+            pool.shutdown();
+
+            String report = "execution: " + threadModel(context) + System.lineSeparator()
+                    + report(latencies, errors, durationSeconds);
+            List<String> failures = check(loadThresholds(), latencies, errors, durationSeconds);
+            passed = failures.isEmpty();
+            StringBuilder result = new StringBuilder(report);
+            result.append(passed ? "PASSED" : "FAILED").append(System.lineSeparator());
+            failures.forEach(failure -> result.append("  ").append(failure).append(System.lineSeparator()));
+            System.out.print(result);
+            writeReport(result.toString());
+        } finally {
+            context.close();
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static ConfigurableApplicationContext startApplication(final int users) throws IOException {
+        Path storePath = Files.createTempDirectory("load-test-images");
+        List<String> properties = new ArrayList<>();
+        properties.add("server.port=0");
+        properties.add("management.server.port=0");
+        properties.add("spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+        properties.add("app.image.store-path=" + storePath);
+        properties.add("logging.level.com.synchrony=WARN");
+        properties.add("app.security.rate-limit.enabled=false");
+        properties.add("server.tomcat.max-connections=" + Math.max(8192, users * 2));
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(APP_PROPERTY_PREFIX))
+                .forEach(name -> properties.add(name.substring(APP_PROPERTY_PREFIX.length()) + "="
+                        + System.getProperty(name)));
+        // passed as command line arguments, so they win over application.properties
+        return new SpringApplicationBuilder(UserAppApplication.class)
+                .run(properties.stream().map(property -> "--" + property).toArray(String[]::new));
+    }
+
+    private static String threadModel(final ConfigurableApplicationContext context) {
+        if (context.getEnvironment().getProperty("app.threads.virtual.enabled", Boolean.class, false)) {
+            return "virtual threads";
+        }
+        return "platform threads, server.tomcat.threads.max="
+                + context.getEnvironment().getProperty("server.tomcat.threads.max", "200");
+    }
+
+    private static Map<String, Integer> parseMix(final String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] weight = entry.trim().split("=");
+            weights.put(weight[0], Integer.parseInt(weight[1]));
+        }
+        return weights;
+    }
+
+    /**
+     * Description: Noise jpeg of roughly the requested size, so uploads look like real photos.
+     * @param sizeKb wanted size
+     * @return jpeg bytes
+     * @throws IOException
+     */
+    private static byte[] jpeg(final int sizeKb) throws IOException {
+        int side = Math.max(16, (int) Math.sqrt(sizeKb * 1024 / 1.5));
+        BufferedImage noise = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                noise.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(noise, "jpg", out);
+        return out.toByteArray();
+    }
+
+    private static String report(final Map<String, Histogram> latencies, final Map<String, LongAdder> errors,
+            final int durationSeconds) {
+        StringWriter report = new StringWriter();
+        PrintWriter out = new PrintWriter(report);
+        out.printf("%-12s %9s %7s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "p99.9 ms");
+        long total = 0;
+        for (String endpoint : ENDPOINTS) {
+            Histogram histogram = latencies.get(endpoint);
+            total += histogram.getTotalCount();
+            out.printf("%-12s %9d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n", endpoint, histogram.getTotalCount(),
+                    errors.get(endpoint).sum(), (double) histogram.getTotalCount() / durationSeconds,
+                    millis(histogram, 50), millis(histogram, 95), millis(histogram, 99), millis(histogram, 99.9));
+        }
+        out.printf("%-12s %9d %7s %9.1f%n", "total", total, "", (double) total / durationSeconds);
+        out.flush();
+        return report.toString();
+    }
+
+    private static List<String> check(final Properties thresholds, final Map<String, Histogram> latencies,
+            final Map<String, LongAdder> errors, final int durationSeconds) {
+        List<String> failures = new ArrayList<>();
+        long total = 0;
+        for (String endpoint : ENDPOINTS) {
+            Histogram histogram = latencies.get(endpoint);
+            total += histogram.getTotalCount();
+            double maxErrorRate = Double.parseDouble(thresholds.getProperty("errorRate", "1"));
+            long requests = histogram.getTotalCount() + errors.get(endpoint).sum();
+            double errorRate = requests == 0 ? 0 : (double) errors.get(endpoint).sum() / requests;
+            if (errorRate > maxErrorRate) {
+                failures.add(String.format("%s error rate %.4f > %.4f", endpoint, errorRate, maxErrorRate));
+            }
+        }
+        for (String key : thresholds.stringPropertyNames()) {
+            int separator = key.indexOf(".p");
+            if (separator < 0 || !latencies.containsKey(key.substring(0, separator))) {
+                continue;
+            }
+            double percentile = Double.parseDouble(key.substring(separator + 2));
+            double limit = Double.parseDouble(thresholds.getProperty(key));
+            double actual = millis(latencies.get(key.substring(0, separator)), percentile);
+            if (actual > limit) {
+                failures.add(String.format("%s %.2f ms > %.2f ms", key, actual, limit));
+            }
+        }
+        double minThroughput = Double.parseDouble(thresholds.getProperty("throughput", "0"));
+        double throughput = (double) total / durationSeconds;
+        if (throughput < minThroughput) {
+            failures.add(String.format("throughput %.1f req/s < %.1f req/s", throughput, minThroughput));
+        }
+        return failures;
+    }
+
+    private static double millis(final Histogram histogram, final double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static Properties loadThresholds() throws IOException {
+        Properties thresholds = new Properties();
+        String path = System.getProperty("loadTest.thresholds");
+        if (path != null) {
+            try (InputStream in = Files.newInputStream(Paths.get(path))) {
+                thresholds.load(in);
+            }
+        }
+        return thresholds;
+    }
+
+    private static void writeReport(final String report) throws IOException {
+        String path = System.getProperty("loadTest.report");
+        if (path != null) {
+            Path file = Paths.get(path);
+            Files.createDirectories(file.getParent());
+            Files.write(file, report.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
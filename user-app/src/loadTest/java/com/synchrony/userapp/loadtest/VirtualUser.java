@@ -0,0 +1,247 @@
+package com.synchrony.userapp.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.Histogram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One simulated client: registers, then keeps calling the API in the configured mix until the deadline.<br>
+ * Ids of uploaded images are learned from /imageData and used for downloads and deletes.
+ */
+class VirtualUser implements Runnable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String PASSWORD = "load1234";
+
+    private final String baseUrl;
+
+    private final String email;
+
+    private final byte[] image;
+
+    private final Map<String, Integer> mix;
+
+    private final int totalWeight;
+
+    private final int thinkTimeMs;
+
+    private final long measureFrom;
+
+    private final long deadline;
+
+    private final Map<String, Histogram> latencies;
+
+    private final Map<String, LongAdder> errors;
+
+    private final List<String> imageIds = new ArrayList<>();
+
+    private String token;
+
+    VirtualUser(final String baseUrl, final String email, final byte[] image, final Map<String, Integer> mix,
+            final int thinkTimeMs, final long measureFrom, final long deadline,
+            final Map<String, Histogram> latencies, final Map<String, LongAdder> errors) {
+        this.baseUrl = baseUrl;
+        this.email = email;
+        this.image = image;
+        this.mix = mix;
+        this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        this.thinkTimeMs = thinkTimeMs;
+        this.measureFrom = measureFrom;
+        this.deadline = deadline;
+        this.latencies = latencies;
+        this.errors = errors;
+    }
+
+    @Override
+    public void run() {
+        try {
+            Response registered = send("POST", "/register", "application/json", credentials());
+            if (!registered.ok()) {
+                throw new IllegalStateException("Cannot register " + email + ": " + registered.body());
+            }
+            token = accessToken(registered.content);
+            while (System.nanoTime() < deadline) {
+                call(nextEndpoint());
+                if (thinkTimeMs > 0) {
+                    Thread.sleep(thinkTimeMs);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot register " + email, e);
+        }
+    }
+
+    private String nextEndpoint() {
+        int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<String, Integer> weight : mix.entrySet()) {
+            pick -= weight.getValue();
+            if (pick < 0) {
+                return weight.getKey();
+            }
+        }
+        return "imageData";
+    }
+
+    private void call(final String endpoint) {
+        String effective = imageIds.isEmpty() && ("image".equals(endpoint) || "deleteImage".equals(endpoint))
+                ? "imageData"
+                : endpoint;
+        long start = System.nanoTime();
+        boolean success;
+        try {
+            success = execute(effective);
+        } catch (IOException e) {
+            success = false;
+        }
+        long end = System.nanoTime();
+        if (start < measureFrom || end > deadline) {
+            return;
+        }
+        if (success) {
+            latencies.get(effective).recordValue(TimeUnit.NANOSECONDS.toMicros(end - start));
+        } else {
+            errors.get(effective).increment();
+        }
+    }
+
+    private boolean execute(final String endpoint) throws IOException {
+        Response response;
+        switch (endpoint) {
+            case "login":
+                response = send("POST", "/login", "application/json", credentials());
+                if (response.ok()) {
+                    token = accessToken(response.content);
+                }
+                return response.ok();
+            case "uploadImage":
+                String boundary = UUID.randomUUID().toString();
+                return send("POST", "/uploadImage", "multipart/form-data; boundary=" + boundary,
+                        multipart(boundary)).ok();
+            case "imageData":
+                response = send("GET", "/imageData?limit=50", null, null);
+                if (response.ok()) {
+                    rememberImageIds(response.content);
+                }
+                return response.ok();
+            case "image":
+                String imageId = imageIds.get(ThreadLocalRandom.current().nextInt(imageIds.size()));
+                return send("GET", "/image/" + imageId, null, null).ok();
+            case "deleteImage":
+                String deleted = imageIds.remove(ThreadLocalRandom.current().nextInt(imageIds.size()));
+                return send("DELETE", "/image/" + deleted, null, null).ok();
+            default:
+                throw new IllegalArgumentException("Unknown endpoint " + endpoint);
+        }
+    }
+
+    private void rememberImageIds(final byte[] imageData) throws IOException {
+        imageIds.clear();
+        for (JsonNode user : MAPPER.readTree(imageData)) {
+            for (JsonNode gallery : user.path("imageData")) {
+                imageIds.add(gallery.get("galleryId").asText());
+            }
+        }
+    }
+
+    private static String accessToken(final byte[] tokens) throws IOException {
+        return MAPPER.readTree(tokens).get("accessToken").asText();
+    }
+
+    private byte[] credentials() throws IOException {
+        return MAPPER.writeValueAsBytes(new Credentials(email, PASSWORD));
+    }
+
+    private byte[] multipart(final String boundary) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(image.length + 256);
+        body.write(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"image\"; filename=\"load.jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.write(image);
+        body.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return body.toByteArray();
+    }
+
+    private Response send(final String method, final String path, final String contentType, final byte[] body)
+            throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod(method);
+        if (token != null) {
+            connection.setRequestProperty("Authorization", "Bearer " + token);
+        }
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", contentType);
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        // the body is always drained so the connection goes back to the keep-alive pool
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[8192];
+                int n;
+                while ((n = stream.read(buffer)) != -1) {
+                    content.write(buffer, 0, n);
+                }
+            }
+        }
+        return new Response(status, content.toByteArray());
+    }
+
+    private static final class Response {
+
+        private final int status;
+
+        private final byte[] content;
+
+        private Response(final int status, final byte[] content) {
+            this.status = status;
+            this.content = content;
+        }
+
+        private boolean ok() {
+            return status >= 200 && status < 300;
+        }
+
+        private String body() {
+            return new String(content, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Request body of /register and /login.
+     */
+    public static final class Credentials {
+
+        public final String email;
+
+        public final String password;
+
+        Credentials(final String email, final String password) {
+            this.email = email;
+            this.password = password;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.synchrony.userapp.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Enables the Caffeine backed caches, sizes and expiry are set with {@code spring.cache.caffeine.spec}.<br>
+ * Caches listed in {@code spring.cache.cache-names} record statistics which are published
+ * as {@code cache.gets{result=hit|miss}} metrics.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+
+    /**
+     * Authenticated principals keyed by email, read on every request by the JWT filter.
+     */
+    public static final String PRINCIPAL_CACHE = "principals";
+}
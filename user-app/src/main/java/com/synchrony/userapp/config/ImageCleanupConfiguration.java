@@ -0,0 +1,34 @@
+package com.synchrony.userapp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Worker pool releasing the stored content of bulk deleted images.<br>
+ * Pool and queue are bounded, when both are full the request thread releases the content itself
+ * once its delete is committed, which slows bulk deletes down instead of queueing them without limit.
+ */
+@Configuration
+public class ImageCleanupConfiguration {
+
+    public static final String IMAGE_CLEANUP_EXECUTOR = "imageCleanupExecutor";
+
+    @Bean(name = IMAGE_CLEANUP_EXECUTOR)
+    public ThreadPoolTaskExecutor imageCleanupExecutor(
+            @Value("${app.image.cleanup.pool-size}") final int poolSize,
+            @Value("${app.image.cleanup.queue-capacity}") final int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-cleanup-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
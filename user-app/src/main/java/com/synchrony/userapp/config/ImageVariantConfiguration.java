@@ -0,0 +1,34 @@
+package com.synchrony.userapp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Worker pool generating resized image variants.<br>
+ * Pool and queue are bounded, when both are full the submitting request thread generates the
+ * variants itself, which slows uploads down instead of piling up decoded images on the heap.
+ */
+@Configuration
+public class ImageVariantConfiguration {
+
+    public static final String IMAGE_VARIANT_EXECUTOR = "imageVariantExecutor";
+
+    @Bean(name = IMAGE_VARIANT_EXECUTOR)
+    public ThreadPoolTaskExecutor imageVariantExecutor(
+            @Value("${app.image.variant.pool-size}") final int poolSize,
+            @Value("${app.image.variant.queue-capacity}") final int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("image-variant-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -0,0 +1,68 @@
+package com.synchrony.userapp.config;
+
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+/**
+ * Reactive counterpart of {@link JwtRequestFilter}, with the same rules: only access tokens which
+ * verify, are not revoked and belong to a known user authenticate the exchange, any other token
+ * leaves it anonymous. The signature check runs on the event loop, the user lookup and the revocation
+ * check, which may query the db, do not.
+ */
+@Slf4j
+public class JwtAuthenticationWebFilter implements WebFilter {
+
+    private final JwtUtils jwtTokenUtil;
+
+    private final TokenRevocationList tokenRevocationList;
+
+    private final ReactiveUserDetailsService userService;
+
+    public JwtAuthenticationWebFilter(final JwtUtils jwtTokenUtil, final TokenRevocationList tokenRevocationList,
+            final ReactiveUserDetailsService userService) {
+        this.jwtTokenUtil = jwtTokenUtil;
+        this.tokenRevocationList = tokenRevocationList;
+        this.userService = userService;
+    }
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        String requestTokenHeader = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (requestTokenHeader == null || !requestTokenHeader.startsWith("Bearer ")) {
+            return chain.filter(exchange);
+        }
+        Claims claims;
+        try {
+            claims = jwtTokenUtil.parseAndVerify(jwtTokenUtil.parseJwt(requestTokenHeader));
+        } catch (Exception e) {
+            log.error("Cannot set user authentication: {}", e.toString());
+            return chain.filter(exchange);
+        }
+        if (!jwtTokenUtil.isAccessToken(claims)) {
+            return chain.filter(exchange);
+        }
+        // the lookup runs on the blocking scheduler, a possible hit of the revocation filter queries the db
+        return userService.findByUsername(claims.getSubject())
+                .filter(userDetails -> !tokenRevocationList.isRevoked(claims.getId(), jwtTokenUtil.getFamilyId(claims)))
+                .filter(userDetails -> jwtTokenUtil.validateToken(claims, userDetails))
+                .map(userDetails -> (Authentication) new UsernamePasswordAuthenticationToken(userDetails, null,
+                        userDetails.getAuthorities()))
+                .onErrorResume(e -> {
+                    log.error("Cannot set user authentication: {}", e.toString());
+                    return Mono.empty();
+                })
+                .map(ReactiveSecurityContextHolder::withAuthentication)
+                .defaultIfEmpty(Context.empty())
+                .flatMap(context -> chain.filter(exchange).contextWrite(context));
+    }
+}
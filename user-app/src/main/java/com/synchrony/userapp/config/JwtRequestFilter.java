@@ -1,8 +1,8 @@
 package com.synchrony.userapp.config;
 
-import com.synchrony.userapp.service.implemetation.UserServiceImpl;
-import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -21,6 +21,7 @@ import java.io.IOException;
  * For any incoming request this Filter class gets executed.<br>
  */
 @Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class JwtRequestFilter extends OncePerRequestFilter {
 
     @Autowired
@@ -29,6 +30,9 @@ public class JwtRequestFilter extends OncePerRequestFilter {
     @Autowired
     private JwtUtils jwtTokenUtil;
 
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
     /**
      * This method is invoked once per request.
      *
@@ -42,13 +46,16 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         final String requestTokenHeader = request.getHeader("Authorization");
         try {
             String username = null;
-            String jwtToken = null;
-            final int tokenStarts = 7;
+            Claims claims = null;
             // JWT Token is in the form "Bearer token". Remove Bearer word and get
-            // only the Token
+            // only the Token, its signature is verified once and the claims reused below.
+            // Refresh tokens and revoked tokens do not authenticate requests.
             if (requestTokenHeader != null && requestTokenHeader.startsWith("Bearer ")) {
-                jwtToken = jwtTokenUtil.parseJwt(requestTokenHeader);
-                username = jwtTokenUtil.getUserNameFromJwtToken(jwtToken);
+                claims = jwtTokenUtil.parseAndVerify(jwtTokenUtil.parseJwt(requestTokenHeader));
+                if (jwtTokenUtil.isAccessToken(claims)
+                        && !tokenRevocationList.isRevoked(claims.getId(), jwtTokenUtil.getFamilyId(claims))) {
+                    username = claims.getSubject();
+                }
             }
 
             // Once we get the token validate it.
@@ -57,7 +64,7 @@ public class JwtRequestFilter extends OncePerRequestFilter {
                 UserDetails userDetails = this.userService.loadUserByUsername(username);
                 // if token is valid configure Spring Security to manually set
                 // authentication
-                if (jwtTokenUtil.validateToken(jwtToken, userDetails)) {
+                if (jwtTokenUtil.validateToken(claims, userDetails)) {
                     UsernamePasswordAuthenticationToken authToken =
                             new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
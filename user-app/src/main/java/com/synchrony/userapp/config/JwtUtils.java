@@ -1,7 +1,12 @@
 package com.synchrony.userapp.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
@@ -10,7 +15,14 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Component
 @Slf4j
@@ -22,38 +34,206 @@ public class JwtUtils {
     @Value("${app.jwtExpirationMs}")
     private transient int jwtExpirationMs;
 
+    @Value("${app.jwt.refresh-expiration-ms}")
+    private long refreshExpirationMs;
+
+    @Value("${app.jwt.verified-cache.enabled}")
+    private boolean verifiedCacheEnabled;
+
+    @Value("${app.jwt.verified-cache.maximum-size}")
+    private long verifiedCacheMaximumSize;
+
+    @Value("${app.jwt.verified-cache.ttl-ms}")
+    private long verifiedCacheTtlMs;
+
     public static final int SKIP = 7;
 
+    /**
+     * Claim telling access tokens from refresh tokens.
+     */
+    public static final String TOKEN_TYPE = "typ";
+
+    public static final String ACCESS_TOKEN = "access";
+
+    public static final String REFRESH_TOKEN = "refresh";
+
+    /**
+     * Claim shared by all tokens issued from one login, refreshing keeps the family of the refresh token.
+     */
+    public static final String FAMILY = "fam";
+
+    /**
+     * Claims of recently verified tokens keyed by the SHA-256 of the token, null when disabled.
+     */
+    private Cache<String, Claims> verifiedTokens;
+
+    /**
+     * Description: Build the verified token cache when app.jwt.verified-cache.enabled is set.
+     */
+    @PostConstruct
+    public void initVerifiedTokenCache() {
+        if (verifiedCacheEnabled) {
+            verifiedTokens = Caffeine.newBuilder()
+                    .maximumSize(verifiedCacheMaximumSize)
+                    .expireAfterWrite(verifiedCacheTtlMs, TimeUnit.MILLISECONDS)
+                    .build();
+        }
+    }
 
+    /**
+     * Description: Generate a short lived access token, it carries a random token id so it can be revoked.
+     * @param userDetails
+     * @return access token
+     */
+    @Timed("jwt.generate")
     public String generateJwtToken(UserDetails userDetails) {
-    	UserDetails userPrincipal =  userDetails;
+        return generateToken(userDetails, ACCESS_TOKEN, null, jwtExpirationMs);
+    }
+
+    /**
+     * Description: Generate a short lived access token belonging to a token family.
+     * @param userDetails
+     * @param familyId id shared by the tokens of one login
+     * @return access token
+     */
+    @Timed("jwt.generate")
+    public String generateJwtToken(UserDetails userDetails, String familyId) {
+        return generateToken(userDetails, ACCESS_TOKEN, familyId, jwtExpirationMs);
+    }
+
+    /**
+     * Description: Generate a long lived refresh token, accepted by /token/refresh only.
+     * @param userDetails
+     * @return refresh token
+     */
+    @Timed("jwt.generate")
+    public String generateRefreshToken(UserDetails userDetails) {
+        return generateToken(userDetails, REFRESH_TOKEN, null, refreshExpirationMs);
+    }
+
+    /**
+     * Description: Generate a long lived refresh token belonging to a token family.
+     * @param userDetails
+     * @param familyId id shared by the tokens of one login
+     * @return refresh token
+     */
+    @Timed("jwt.generate")
+    public String generateRefreshToken(UserDetails userDetails, String familyId) {
+        return generateToken(userDetails, REFRESH_TOKEN, familyId, refreshExpirationMs);
+    }
+
+    private String generateToken(final UserDetails userDetails, final String type, final String familyId,
+            final long expirationMs) {
+        Date issuedAt = new Date();
         return Jwts.builder()
-                .setSubject(userPrincipal.getUsername())
-                .setIssuedAt(new Date())
-                .setExpiration(new Date(new Date().getTime() + jwtExpirationMs))
+                .setId(UUID.randomUUID().toString())
+                .setSubject(userDetails.getUsername())
+                .claim(TOKEN_TYPE, type)
+                .claim(FAMILY, familyId)
+                .setIssuedAt(issuedAt)
+                .setExpiration(new Date(issuedAt.getTime() + expirationMs))
                 .signWith(SignatureAlgorithm.HS512, jwtSecret)
                 .compact();
     }
 
+    /**
+     * @return lifetime of access tokens in milliseconds
+     */
+    public long getJwtExpirationMs() {
+        return jwtExpirationMs;
+    }
+
+    /**
+     * @return lifetime of refresh tokens in milliseconds
+     */
+    public long getRefreshExpirationMs() {
+        return refreshExpirationMs;
+    }
+
+    /**
+     * @param claims verified by parseAndVerify
+     * @return id of the token family, null for tokens issued before families existed
+     */
+    public String getFamilyId(final Claims claims) {
+        return claims.get(FAMILY, String.class);
+    }
+
+    /**
+     * Description: Check the token may authenticate requests, tokens issued before refresh tokens
+     * existed carry no type and are access tokens.
+     * @param claims verified by parseAndVerify
+     * @return true for access tokens
+     */
+    public boolean isAccessToken(final Claims claims) {
+        Object type = claims.get(TOKEN_TYPE);
+        return type == null || ACCESS_TOKEN.equals(type);
+    }
+
+    /**
+     * @param claims verified by parseAndVerify
+     * @return true for refresh tokens
+     */
+    public boolean isRefreshToken(final Claims claims) {
+        return REFRESH_TOKEN.equals(claims.get(TOKEN_TYPE));
+    }
+
     public String getUserNameFromJwtToken(String token) {
-        return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
+        return parseAndVerify(token).getSubject();
     }
 
     /**
-     * Description: Check token expiration.
+     * Description: Verify the signature and expiry of the token once and return its claims,
+     * so subject and expiry checks for the same request reuse them.
+     * Recently verified tokens are answered from the cache when it is enabled.
      * @param token
+     * @return verified claims
+     * @throws io.jsonwebtoken.JwtException if the token is malformed, forged or expired
+     */
+    @Timed("jwt.verify")
+    public Claims parseAndVerify(final String token) {
+        if (verifiedTokens == null) {
+            return verify(token);
+        }
+        String tokenHash = hash(token);
+        Claims claims = verifiedTokens.getIfPresent(tokenHash);
+        if (claims == null) {
+            claims = verify(token);
+            verifiedTokens.put(tokenHash, claims);
+        } else if (isTokenExpired(claims)) {
+            verifiedTokens.invalidate(tokenHash);
+            throw new ExpiredJwtException(null, claims, "JWT expired at " + claims.getExpiration());
+        }
+        return claims;
+    }
+
+    private Claims verify(final String token) {
+        return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody();
+    }
+
+    private static String hash(final String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Description: Check token expiration.
+     * @param claims
      * @return
      */
-     private Boolean isTokenExpired(final String token) {
-        final Date expiration = Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getExpiration();
-        return expiration.before(new Date());
+     private Boolean isTokenExpired(final Claims claims) {
+        final Date expiration = claims.getExpiration();
+        return expiration != null && expiration.before(new Date());
     }
 
-    /** Validate token . */
-    public Boolean validateToken(final String token,
+    /** Validate token claims returned by parseAndVerify . */
+    public Boolean validateToken(final Claims claims,
             final UserDetails userDetails) {
-        final String username = getUserNameFromJwtToken(token);
-        return username.equals(userDetails.getUsername()) && !isTokenExpired(token);
+        final String username = claims.getSubject();
+        return username.equals(userDetails.getUsername()) && !isTokenExpired(claims);
     }
 
     /** Parse token . */
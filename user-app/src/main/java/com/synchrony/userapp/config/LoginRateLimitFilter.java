@@ -0,0 +1,239 @@
+package com.synchrony.userapp.config;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.synchrony.userapp.model.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throttles {@code /login} and {@code /register} per client IP and per email.<br>
+ * Runs ahead of the JWT filter, attempts over the limit are answered with 429 and a Retry-After
+ * header before any db lookup or password hashing happens. The email is read from the small JSON
+ * body, which is then replayed to the controller.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class LoginRateLimitFilter extends OncePerRequestFilter {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final boolean enabled;
+
+    private final int maxBodyBytes;
+
+    private final RateLimiter ipLimiter;
+
+    private final RateLimiter emailLimiter;
+
+    private final Counter ipRejected;
+
+    private final Counter emailRejected;
+
+    public LoginRateLimitFilter(final MeterRegistry registry,
+            @Value("${app.security.rate-limit.enabled}") final boolean enabled,
+            @Value("${app.security.rate-limit.ip.capacity}") final int ipCapacity,
+            @Value("${app.security.rate-limit.ip.refill-period}") final Duration ipRefillPeriod,
+            @Value("${app.security.rate-limit.email.capacity}") final int emailCapacity,
+            @Value("${app.security.rate-limit.email.refill-period}") final Duration emailRefillPeriod,
+            @Value("${app.security.rate-limit.max-keys}") final long maxKeys,
+            @Value("${app.security.rate-limit.max-body-bytes}") final int maxBodyBytes) {
+        this.enabled = enabled;
+        this.maxBodyBytes = maxBodyBytes;
+        this.ipLimiter = new RateLimiter(ipCapacity, ipRefillPeriod, maxKeys);
+        this.emailLimiter = new RateLimiter(emailCapacity, emailRefillPeriod, maxKeys);
+        this.ipRejected = Counter.builder("auth.rate.limited")
+                .description("Login and registration attempts rejected by the rate limiter")
+                .tag("key", "ip")
+                .register(registry);
+        this.emailRejected = Counter.builder("auth.rate.limited")
+                .description("Login and registration attempts rejected by the rate limiter")
+                .tag("key", "email")
+                .register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        String path = request.getServletPath();
+        return !enabled || !HttpMethod.POST.matches(request.getMethod())
+                || !("/login".equals(path) || "/register".equals(path));
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+            final FilterChain chain) throws ServletException, IOException {
+        long wait = ipLimiter.tryAcquire(request.getRemoteAddr());
+        if (wait > 0) {
+            ipRejected.increment();
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, "Too many attempts, try again later", wait);
+            return;
+        }
+        byte[] body = StreamUtils.copyToByteArray(new BoundedInputStream(request.getInputStream(), maxBodyBytes + 1));
+        if (body.length > maxBodyBytes) {
+            reject(response, HttpStatus.PAYLOAD_TOO_LARGE, "Request body too large", 0);
+            return;
+        }
+        String email = readEmail(body);
+        if (email != null) {
+            wait = emailLimiter.tryAcquire(email);
+            if (wait > 0) {
+                emailRejected.increment();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS, "Too many attempts, try again later", wait);
+                return;
+            }
+        }
+        chain.doFilter(new ReplayedBodyRequest(request, body), response);
+    }
+
+    /**
+     * Description: Email of a login or registration body, normalized so case and blanks do not make new keys.
+     * @param body JSON request body
+     * @return email, null if the body has none
+     */
+    static String readEmail(final byte[] body) {
+        try {
+            JsonNode email = MAPPER.readTree(body).path("email");
+            return email.isTextual() ? email.asText().trim().toLowerCase(Locale.ROOT) : null;
+        } catch (IOException e) {
+            // malformed bodies are left to the controller to reject
+            return null;
+        }
+    }
+
+    private static void reject(final HttpServletResponse response, final HttpStatus status, final String message,
+            final long waitNanos) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        if (waitNanos > 0) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(TimeUnit.NANOSECONDS.toSeconds(waitNanos - 1) + 1));
+        }
+        MAPPER.writeValue(response.getOutputStream(), new Response(message));
+    }
+
+    /**
+     * Stops after a limit, so oversized bodies are detected without reading them in full.
+     */
+    private static final class BoundedInputStream extends InputStream {
+
+        private final InputStream in;
+
+        private int remaining;
+
+        private BoundedInputStream(final InputStream in, final int limit) {
+            this.in = in;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Hands the body read by the filter on to the controller.
+     */
+    private static final class ReplayedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private ReplayedBodyRequest(final HttpServletRequest request, final byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(final ReadListener readListener) {
+                    throw new UnsupportedOperationException("Body is already read");
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(final byte[] b, final int off, final int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body),
+                    encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding)));
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
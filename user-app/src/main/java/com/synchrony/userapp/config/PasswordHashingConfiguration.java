@@ -0,0 +1,43 @@
+package com.synchrony.userapp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * BCrypt encoder and the worker pool every hash and verification runs on.<br>
+ * Pool and queue are bounded and further work is rejected, so a burst of logins waits on at most
+ * {@code pool-size + queue-capacity} request threads and the rest of the traffic keeps its threads.
+ */
+@Configuration
+public class PasswordHashingConfiguration {
+
+    public static final String PASSWORD_HASHING_EXECUTOR = "passwordHashingExecutor";
+
+    /**
+     * Description: Encoder with the configured cost, each step of strength doubles the work per hash.
+     * @param strength log2 of the BCrypt rounds
+     * @return BCryptPasswordEncoder
+     */
+    @Bean
+    public BCryptPasswordEncoder bCryptPasswordEncoder(@Value("${app.security.bcrypt.strength}") final int strength) {
+        return new BCryptPasswordEncoder(strength);
+    }
+
+    @Bean(name = PASSWORD_HASHING_EXECUTOR)
+    public ThreadPoolTaskExecutor passwordHashingExecutor(
+            @Value("${app.security.password-hashing.pool-size}") final int poolSize,
+            @Value("${app.security.password-hashing.queue-capacity}") final int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("password-hashing-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,70 @@
+package com.synchrony.userapp.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets keyed by an arbitrary string, e.g. a client IP or an email.<br>
+ * Each bucket is a single {@link AtomicLong} holding the time its next token is due (GCRA), taking
+ * a token is one compare-and-set, so concurrent attempts never lock. Buckets live in a Caffeine
+ * map which drops keys idle for longer than a full refill, such a bucket would be full again anyway.
+ */
+public class RateLimiter {
+
+    private final long emissionIntervalNanos;
+
+    private final long burstNanos;
+
+    private final Cache<String, AtomicLong> buckets;
+
+    private final LongSupplier nanoClock;
+
+    /**
+     * @param capacity tokens available to a key after it has been idle
+     * @param refillPeriod time in which a drained bucket fills up again
+     * @param maxKeys keys kept at most, least recently used keys go first beyond that
+     */
+    public RateLimiter(final int capacity, final Duration refillPeriod, final long maxKeys) {
+        this(capacity, refillPeriod, maxKeys, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock source of {@link System#nanoTime()}, replaced by tests to step through refills
+     */
+    RateLimiter(final int capacity, final Duration refillPeriod, final long maxKeys, final LongSupplier nanoClock) {
+        this.emissionIntervalNanos = refillPeriod.toNanos() / capacity;
+        this.burstNanos = emissionIntervalNanos * (capacity - 1);
+        this.nanoClock = nanoClock;
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(refillPeriod.toNanos(), TimeUnit.NANOSECONDS)
+                .ticker(nanoClock::getAsLong)
+                .build();
+    }
+
+    /**
+     * Description: Take a token for the key.
+     * @param key
+     * @return 0 if a token was taken, otherwise the nanoseconds until the next one is available
+     */
+    public long tryAcquire(final String key) {
+        AtomicLong nextDue = buckets.get(key, k -> new AtomicLong(Long.MIN_VALUE));
+        long now = nanoClock.getAsLong();
+        while (true) {
+            long due = nextDue.get();
+            long start = due == Long.MIN_VALUE || due - now < 0 ? now : due;
+            long wait = start - now - burstNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (nextDue.compareAndSet(due, start + emissionIntervalNanos)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.synchrony.userapp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Worker threads the reactive stack hands blocking work to, when started with
+ * {@code spring.main.web-application-type=reactive}.<br>
+ * JPA, the image store and password hashing block, so they never run on the event loop. The pool
+ * and its queue are bounded, work beyond both is rejected instead of piling up, and while an
+ * upload waits for a worker its body is not read, so the client is held back by TCP flow control.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveConfiguration {
+
+    public static final String BLOCKING_SCHEDULER = "blockingScheduler";
+
+    @Bean(name = BLOCKING_SCHEDULER, destroyMethod = "dispose")
+    public Scheduler blockingScheduler(
+            @Value("${app.reactive.blocking.pool-size}") final int poolSize,
+            @Value("${app.reactive.blocking.queue-capacity}") final int queueCapacity) {
+        return Schedulers.newBoundedElastic(poolSize, queueCapacity, "blocking-io");
+    }
+}
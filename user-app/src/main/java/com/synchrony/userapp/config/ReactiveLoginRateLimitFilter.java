@@ -0,0 +1,157 @@
+package com.synchrony.userapp.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.synchrony.userapp.model.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WebFlux variant of {@link LoginRateLimitFilter}, the same limits and counters for
+ * {@code /login} and {@code /register} on the reactive stack.<br>
+ * Ordered ahead of Spring Security's filter chain (-100), so attempts over the limit are answered
+ * with 429 before any db lookup or password hashing happens. The body is joined in memory up to
+ * app.security.rate-limit.max-body-bytes without blocking and replayed to the controller.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Order(-101)
+public class ReactiveLoginRateLimitFilter implements WebFilter {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final boolean enabled;
+
+    private final int maxBodyBytes;
+
+    private final RateLimiter ipLimiter;
+
+    private final RateLimiter emailLimiter;
+
+    private final Counter ipRejected;
+
+    private final Counter emailRejected;
+
+    public ReactiveLoginRateLimitFilter(final MeterRegistry registry,
+            @Value("${app.security.rate-limit.enabled}") final boolean enabled,
+            @Value("${app.security.rate-limit.ip.capacity}") final int ipCapacity,
+            @Value("${app.security.rate-limit.ip.refill-period}") final Duration ipRefillPeriod,
+            @Value("${app.security.rate-limit.email.capacity}") final int emailCapacity,
+            @Value("${app.security.rate-limit.email.refill-period}") final Duration emailRefillPeriod,
+            @Value("${app.security.rate-limit.max-keys}") final long maxKeys,
+            @Value("${app.security.rate-limit.max-body-bytes}") final int maxBodyBytes) {
+        this.enabled = enabled;
+        this.maxBodyBytes = maxBodyBytes;
+        this.ipLimiter = new RateLimiter(ipCapacity, ipRefillPeriod, maxKeys);
+        this.emailLimiter = new RateLimiter(emailCapacity, emailRefillPeriod, maxKeys);
+        this.ipRejected = Counter.builder("auth.rate.limited")
+                .description("Login and registration attempts rejected by the rate limiter")
+                .tag("key", "ip")
+                .register(registry);
+        this.emailRejected = Counter.builder("auth.rate.limited")
+                .description("Login and registration attempts rejected by the rate limiter")
+                .tag("key", "email")
+                .register(registry);
+    }
+
+    @Override
+    public Mono<Void> filter(final ServerWebExchange exchange, final WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().pathWithinApplication().value();
+        if (!enabled || request.getMethod() != HttpMethod.POST
+                || !("/login".equals(path) || "/register".equals(path))) {
+            return chain.filter(exchange);
+        }
+        long wait = ipLimiter.tryAcquire(remoteAddress(request));
+        if (wait > 0) {
+            ipRejected.increment();
+            return reject(exchange, HttpStatus.TOO_MANY_REQUESTS, "Too many attempts, try again later", wait);
+        }
+        return DataBufferUtils.join(request.getBody(), maxBodyBytes)
+                .map(ReactiveLoginRateLimitFilter::toBytes)
+                .defaultIfEmpty(new byte[0])
+                .map(Optional::of)
+                .onErrorResume(DataBufferLimitException.class, e -> Mono.just(Optional.empty()))
+                .flatMap(body -> body.isPresent()
+                        ? limitEmail(exchange, chain, body.get())
+                        : reject(exchange, HttpStatus.PAYLOAD_TOO_LARGE, "Request body too large", 0));
+    }
+
+    private Mono<Void> limitEmail(final ServerWebExchange exchange, final WebFilterChain chain, final byte[] body) {
+        String email = LoginRateLimitFilter.readEmail(body);
+        if (email != null) {
+            long wait = emailLimiter.tryAcquire(email);
+            if (wait > 0) {
+                emailRejected.increment();
+                return reject(exchange, HttpStatus.TOO_MANY_REQUESTS, "Too many attempts, try again later", wait);
+            }
+        }
+        ServerHttpRequest replayed = new ServerHttpRequestDecorator(exchange.getRequest()) {
+            @Override
+            public Flux<DataBuffer> getBody() {
+                return Flux.defer(() -> Flux.just(exchange.getResponse().bufferFactory().wrap(body)));
+            }
+        };
+        return chain.filter(exchange.mutate().request(replayed).build());
+    }
+
+    private static String remoteAddress(final ServerHttpRequest request) {
+        InetSocketAddress address = request.getRemoteAddress();
+        if (address == null) {
+            return "unknown";
+        }
+        return address.getAddress() == null ? address.getHostString() : address.getAddress().getHostAddress();
+    }
+
+    private static byte[] toBytes(final DataBuffer buffer) {
+        try {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            return bytes;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    private static Mono<Void> reject(final ServerWebExchange exchange, final HttpStatus status, final String message,
+            final long waitNanos) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(status);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        if (waitNanos > 0) {
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                    String.valueOf(TimeUnit.NANOSECONDS.toSeconds(waitNanos - 1) + 1));
+        }
+        byte[] body;
+        try {
+            body = MAPPER.writeValueAsBytes(new Response(message));
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+}
@@ -0,0 +1,96 @@
+package com.synchrony.userapp.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
+import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.ServerAuthenticationEntryPoint;
+import org.springframework.security.web.server.context.NoOpServerSecurityContextRepository;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Security of the reactive stack, the same public and authenticated paths as
+ * {@link SecurityConfiguration} for the endpoints it serves.<br>
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableWebFluxSecurity
+public class ReactiveSecurityConfiguration {
+
+  private static final byte[] UNAUTHORIZED_BODY =
+          "{\"error\":\"Please authenticate.\"}".getBytes(StandardCharsets.UTF_8);
+
+  @Autowired
+  JwtUtils jwtUtils;
+
+  @Autowired
+  TokenRevocationList tokenRevocationList;
+
+  /**
+   * Description: Principals are loaded by the blocking UserDetailsService on the blocking scheduler,
+   * its principal cache still applies.
+   */
+  @Bean
+  public ReactiveUserDetailsService reactiveUserDetailsService(final UserDetailsService userDetailsService,
+          @Qualifier(ReactiveConfiguration.BLOCKING_SCHEDULER) final Scheduler blockingScheduler) {
+    return username -> Mono.fromCallable(() -> userDetailsService.loadUserByUsername(username))
+            .subscribeOn(blockingScheduler);
+  }
+
+  /**
+   * Description: Filter is to intercept all the incoming exchanges, no session is kept.
+   * @param http
+   * @param reactiveUserDetailsService
+   * @return filterChain.
+   */
+  @Bean
+  public SecurityWebFilterChain securityWebFilterChain(final ServerHttpSecurity http,
+          final ReactiveUserDetailsService reactiveUserDetailsService) {
+    return http.csrf().disable()
+            .httpBasic().disable()
+            .formLogin().disable()
+            .logout().disable()
+            .securityContextRepository(NoOpServerSecurityContextRepository.getInstance())
+            .authorizeExchange()
+            .pathMatchers("/register", "/login", "/token/refresh", "/actuator/health", "/actuator/prometheus")
+            .permitAll()
+            .pathMatchers("/actuator/metrics/**", "/actuator/dedup")
+            .hasRole("ADMIN")
+            .pathMatchers("/token/revoke", "/uploadImage", "/image/**", "/images", "/account")
+            .authenticated()
+            .and()
+            .exceptionHandling()
+            .authenticationEntryPoint(unauthorizedEntryPoint())
+            .and()
+            .addFilterAt(new JwtAuthenticationWebFilter(jwtUtils, tokenRevocationList, reactiveUserDetailsService),
+                    SecurityWebFiltersOrder.AUTHENTICATION)
+            .build();
+  }
+
+  /**
+   * Description: Rejects unauthenticated exchanges with 401 and the body JwtAuthenticationEntryPoint sends.
+   */
+  private static ServerAuthenticationEntryPoint unauthorizedEntryPoint() {
+    return (exchange, exception) -> {
+      ServerHttpResponse response = exchange.getResponse();
+      response.setStatusCode(HttpStatus.UNAUTHORIZED);
+      response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+      DataBuffer body = response.bufferFactory().wrap(UNAUTHORIZED_BODY);
+      return response.writeWith(Mono.just(body));
+    };
+  }
+}
@@ -2,6 +2,7 @@ package com.synchrony.userapp.config;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -18,6 +19,7 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
  */
 @Configuration
 @EnableWebSecurity
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @Slf4j
 public class SecurityConfiguration{
 
@@ -27,9 +29,15 @@ public class SecurityConfiguration{
   @Autowired
   JwtAuthenticationEntryPoint authJWTEntryPoint;
 
+  @Autowired
+  LoginRateLimitFilter loginRateLimitFilter;
+
   @Autowired
   UserDetailsService jwtUserDetailService;
 
+  @Autowired
+  BCryptPasswordEncoder bCryptPasswordEncoder;
+
   /**
    * Description: Filter is to intercept all the incoming requests
    * @param http
@@ -41,15 +49,19 @@ public class SecurityConfiguration{
       http.csrf()
               .disable()
               .authorizeRequests()
-              .antMatchers("/register", "/login", "/h2-console/**", "/swagger-ui/**","/swagger-ui.html","/user-openapi/**")
+              .antMatchers("/register", "/login", "/token/refresh", "/h2-console/**", "/swagger-ui/**","/swagger-ui.html","/user-openapi/**",
+                      "/actuator/health", "/actuator/prometheus")
               .permitAll()
-              .antMatchers("/uploadImage","/imageData","/image/**")
+              .antMatchers("/actuator/metrics/**","/actuator/dedup")
+              .hasRole("ADMIN")
+              .antMatchers("/token/revoke","/uploadImage","/uploadImages","/imageData","/image/**","/images","/account")
               .authenticated()
               .and()
               .exceptionHandling()
               .authenticationEntryPoint(authJWTEntryPoint)
               .and()
-              .addFilterBefore(authJWTTokenfilter, UsernamePasswordAuthenticationFilter.class);
+              .addFilterBefore(authJWTTokenfilter, UsernamePasswordAuthenticationFilter.class)
+              .addFilterBefore(loginRateLimitFilter, JwtRequestFilter.class);
       http.headers().frameOptions().disable();
       return http.build();
     } catch (Exception exp) {
@@ -60,11 +72,6 @@ public class SecurityConfiguration{
     return null;
   }
 
-  @Bean
-  public BCryptPasswordEncoder bCryptPasswordEncoder() {
-    return new BCryptPasswordEncoder();
-  }
-
   /**
    * Decsprition : Authenticate User.
    */
@@ -74,7 +81,7 @@ public class SecurityConfiguration{
       AuthenticationManagerBuilder authenticationManagerBuilder = http
               .getSharedObject(AuthenticationManagerBuilder.class);
       authenticationManagerBuilder.userDetailsService(jwtUserDetailService)
-              .passwordEncoder(bCryptPasswordEncoder());
+              .passwordEncoder(bCryptPasswordEncoder);
       return authenticationManagerBuilder.build();
     } catch (Exception exp) {
       if (log.isErrorEnabled()) {
@@ -0,0 +1,27 @@
+package com.synchrony.userapp.config;
+
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executor of asynchronous MVC work such as the StreamingResponseBody of /imageData.<br>
+ * Boot only declares its applicationTaskExecutor while no other Executor bean exists, so the dedicated
+ * pools for variants, cleanup and password hashing made MVC fall back to a SimpleAsyncTaskExecutor
+ * starting one thread per response. It is declared here from the {@code spring.task.execution} properties,
+ * pool and queue are bounded and responses beyond them are answered with 503.
+ */
+@Configuration
+public class TaskExecutionConfiguration {
+
+    @Lazy
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    public ThreadPoolTaskExecutor applicationTaskExecutor(final TaskExecutorBuilder builder) {
+        return builder.build();
+    }
+}
@@ -0,0 +1,227 @@
+package com.synchrony.userapp.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ids of revoked tokens and refresh token families, kept in the {@code revoked_token} table until the
+ * tokens expire on their own, so revocations survive restarts and are shared by every instance.<br>
+ * A Bloom filter sits in front of the table, so the lookup done by the JWT filter for every request
+ * is a handful of bit reads and only a possible hit queries the db. The filter only knows the ids
+ * revoked on this instance since its last rebuild, which happens at startup and with every purge,
+ * an access token revoked on another instance may pass here until then. Refresh tokens are always
+ * checked against the table with {@link #isRevokedInStore(String)} and {@link #revoke(String, Date)}.
+ */
+@Component
+@Slf4j
+public class TokenRevocationList {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final int expectedTokens;
+
+    private final double falsePositiveRate;
+
+    /**
+     * Ids in the table which have not expired, as of the last rebuild plus later revocations.
+     */
+    private final AtomicLong revokedCount = new AtomicLong();
+
+    private volatile BloomFilter filter;
+
+    /**
+     * Filter being rebuilt by purgeExpired, revocations during the rebuild are put into it as well.
+     */
+    private volatile BloomFilter rebuilding;
+
+    /**
+     * Keeps rebuilds from overlapping, revocations never wait for it.
+     */
+    private final ReentrantLock purgeLock = new ReentrantLock();
+
+    public TokenRevocationList(final MeterRegistry registry, final JdbcTemplate jdbcTemplate,
+            @Value("${app.jwt.revocation.expected-tokens}") final int expectedTokens,
+            @Value("${app.jwt.revocation.false-positive-rate}") final double falsePositiveRate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.expectedTokens = expectedTokens;
+        this.falsePositiveRate = falsePositiveRate;
+        this.filter = new BloomFilter(expectedTokens, falsePositiveRate);
+        Gauge.builder("auth.tokens.revoked", revokedCount, AtomicLong::get)
+                .description("Revoked tokens which have not expired yet")
+                .register(registry);
+    }
+
+    /**
+     * Description: Load the ids revoked before this instance started.
+     */
+    @PostConstruct
+    public void init() {
+        purgeExpired();
+    }
+
+    /**
+     * Description: Revoke a token or a token family until it expires. The primary key of the table decides
+     * between concurrent revocations of the same id, on any instance exactly one of them returns true,
+     * so no lock is held around the insert.
+     * @param tokenId jti of the token or id of the family
+     * @param expiration expiry of the token, an expired token is rejected anyway and not kept
+     * @return false if the id was already revoked
+     */
+    public boolean revoke(final String tokenId, final Date expiration) {
+        if (expiration == null || expiration.getTime() <= System.currentTimeMillis()) {
+            return true;
+        }
+        try {
+            jdbcTemplate.update("insert into revoked_token (token_id, expires_at) values (?, ?)",
+                    tokenId, new Timestamp(expiration.getTime()));
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+        // read before the filter: a rebuild which started after the insert reads the row itself,
+        // one which ended before this read has already swapped in the filter put below
+        BloomFilter next = rebuilding;
+        if (next != null) {
+            next.put(tokenId);
+        }
+        filter.put(tokenId);
+        revokedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Description: Check whether a token has been revoked, tokens without an id cannot be revoked.
+     * Ids the Bloom filter has not seen are answered without touching the db.
+     * @param tokenId jti of the token or id of its family, may be null
+     * @return true if revoked
+     */
+    public boolean isRevoked(final String tokenId) {
+        return tokenId != null && filter.mightContain(tokenId) && isRevokedInStore(tokenId);
+    }
+
+    /**
+     * Description: Check whether a token or the family it belongs to has been revoked.
+     * @param tokenId jti of the token, may be null
+     * @param familyId id of its family, may be null
+     * @return true if either is revoked
+     */
+    public boolean isRevoked(final String tokenId, final String familyId) {
+        return isRevoked(tokenId) || isRevoked(familyId);
+    }
+
+    /**
+     * Description: Check the table itself, including ids revoked on other instances.
+     * @param tokenId jti of the token or id of its family, may be null
+     * @return true if revoked and not expired
+     */
+    public boolean isRevokedInStore(final String tokenId) {
+        if (tokenId == null) {
+            return false;
+        }
+        Integer found = jdbcTemplate.queryForObject(
+                "select count(*) from revoked_token where token_id = ? and expires_at > ?", Integer.class,
+                tokenId, new Timestamp(System.currentTimeMillis()));
+        return found != null && found > 0;
+    }
+
+    /**
+     * Description: Drop ids of expired tokens and rebuild the filter from the remaining ones,
+     * picking up the ids revoked on other instances.
+     */
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.purge-interval-ms}")
+    public void purgeExpired() {
+        purgeLock.lock();
+        try {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            int purged = jdbcTemplate.update("delete from revoked_token where expires_at <= ?", now);
+            Integer remaining = jdbcTemplate.queryForObject("select count(*) from revoked_token", Integer.class);
+            int count = remaining == null ? 0 : remaining;
+            BloomFilter rebuilt = new BloomFilter(Math.max(expectedTokens, count), falsePositiveRate);
+            rebuilding = rebuilt;
+            jdbcTemplate.query("select token_id from revoked_token", rs -> {
+                rebuilt.put(rs.getString(1));
+            });
+            filter = rebuilt;
+            rebuilding = null;
+            revokedCount.set(count);
+            log.debug("Purged {} expired token ids, {} still revoked", purged, count);
+        } finally {
+            purgeLock.unlock();
+        }
+    }
+
+    /**
+     * Bit set addressed by double hashing of a 64-bit FNV-1a hash of the token id.
+     */
+    static final class BloomFilter {
+
+        private final AtomicLongArray bits;
+
+        private final long bitCount;
+
+        private final int hashCount;
+
+        BloomFilter(final int expectedInsertions, final double falsePositiveRate) {
+            long optimalBits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate)
+                    / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.max(1, (optimalBits + 63) >>> 6);
+            this.bits = new AtomicLongArray(words);
+            this.bitCount = (long) words << 6;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        }
+
+        void put(final String key) {
+            long hash = hash(key);
+            int first = (int) hash;
+            int second = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = index(first + i * second);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = bits.get(word);
+                } while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(final String key) {
+            long hash = hash(key);
+            int first = (int) hash;
+            int second = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = index(first + i * second);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long index(final int combined) {
+            return (combined & Integer.MAX_VALUE) % bitCount;
+        }
+
+        private static long hash(final String key) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b & 0xff;
+                hash *= 0x100000001b3L;
+            }
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.synchrony.userapp.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs request handling on virtual threads when app.threads.virtual.enabled is set.<br>
+ * Tomcat hands every request to a new virtual thread instead of its fixed worker pool, so the
+ * controller, the service and its JPA calls no longer hold a platform thread while they wait on
+ * uploads, downloads or the db. Streamed responses such as /imageData run on virtual threads too.
+ * Concurrency is then bounded by the connection limit and the db pool rather than by
+ * server.tomcat.threads.max. CPU bound work keeps its own bounded pools.<br>
+ * On JDK 21 a virtual thread blocking inside a synchronized block stays pinned to its carrier thread.
+ * The H2 driver holds the session monitor for every statement, including its file I/O, and Hikari
+ * synchronizes parts of connection handout, so db heavy requests can pin all carriers
+ * (one per core by default) and stall every other request. The Hikari pool size bounds how many
+ * threads can be pinned in the driver at once, keep it below the carrier count, and run with
+ * -Djdk.tracePinnedThreads=short to log where pinning happens.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.threads.virtual.enabled", havingValue = "true")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@Slf4j
+public class VirtualThreadConfiguration implements WebMvcConfigurer {
+
+    public static final String REQUEST_EXECUTOR = "virtualThreadRequestExecutor";
+
+    @Bean(name = REQUEST_EXECUTOR)
+    public ExecutorService virtualThreadRequestExecutor() {
+        log.info("Handling requests on virtual threads");
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-virtual-", 0).factory());
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadRequestExecutor());
+    }
+
+    /**
+     * Description: Run asynchronous MVC work, e.g. StreamingResponseBody, on virtual threads
+     * instead of the applicationTaskExecutor pool sized by spring.task.execution.pool.*.
+     * @param configurer
+     */
+    @Override
+    public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(virtualThreadRequestExecutor()));
+    }
+}
@@ -0,0 +1,128 @@
+package com.synchrony.userapp.controller;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streamed WebFlux file part seen through the {@link MultipartFile} contract of the UserService.<br>
+ * The part is staged in a temp file by {@link #stage(FilePart, long, Scheduler)} without blocking,
+ * the request is read only as fast as the file is written, so a slow client holds no thread.
+ * The service then reads the staged file on the blocking scheduler.
+ */
+final class FilePartMultipartFile implements MultipartFile {
+
+    private final FilePart part;
+
+    private final Path content;
+
+    private final long size;
+
+    private FilePartMultipartFile(final FilePart part, final Path content, final long size) {
+        this.part = part;
+        this.content = content;
+        this.size = size;
+    }
+
+    /**
+     * Description: Write the part to a temp file, only creating and deleting the file block.
+     * Parts above maxBytes fail with {@link MaxUploadSizeExceededException} as on the servlet stack.
+     * @param part streamed file part
+     * @param maxBytes bytes allowed at most
+     * @param blockingScheduler scheduler for the file system calls
+     * @return staged part, its temp file is removed by {@link #delete()}
+     */
+    static Mono<FilePartMultipartFile> stage(final FilePart part, final long maxBytes,
+            final Scheduler blockingScheduler) {
+        return Mono.fromCallable(() -> Files.createTempFile("upload-", ".part"))
+                .subscribeOn(blockingScheduler)
+                .flatMap(file -> {
+                    AtomicLong size = new AtomicLong();
+                    Flux<DataBuffer> limited = part.content().handle((buffer, sink) -> {
+                        if (size.addAndGet(buffer.readableByteCount()) > maxBytes) {
+                            DataBufferUtils.release(buffer);
+                            sink.error(new MaxUploadSizeExceededException(maxBytes));
+                        } else {
+                            sink.next(buffer);
+                        }
+                    });
+                    return DataBufferUtils.write(limited, file)
+                            .then(Mono.fromCallable(() -> new FilePartMultipartFile(part, file, size.get())))
+                            .onErrorResume(e -> discard(file, blockingScheduler).then(Mono.error(e)))
+                            .doOnCancel(() -> discard(file, blockingScheduler).subscribe());
+                });
+    }
+
+    private static Mono<Boolean> discard(final Path file, final Scheduler blockingScheduler) {
+        return Mono.fromCallable(() -> Files.deleteIfExists(file))
+                .subscribeOn(blockingScheduler)
+                .onErrorReturn(false);
+    }
+
+    /**
+     * Description: Remove the staged content.
+     * @return false if it was already removed
+     * @throws IOException
+     */
+    boolean delete() throws IOException {
+        return Files.deleteIfExists(content);
+    }
+
+    @Override
+    public String getName() {
+        return part.name();
+    }
+
+    @Override
+    public String getOriginalFilename() {
+        return part.filename();
+    }
+
+    @Override
+    public String getContentType() {
+        MediaType contentType = part.headers().getContentType();
+        return contentType == null ? null : contentType.toString();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return bytes staged
+     */
+    @Override
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public byte[] getBytes() throws IOException {
+        return Files.readAllBytes(content);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Files.newInputStream(content);
+    }
+
+    @Override
+    public void transferTo(final File dest) throws IOException {
+        Files.copy(content, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
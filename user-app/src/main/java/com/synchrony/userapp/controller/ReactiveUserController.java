@@ -0,0 +1,242 @@
+package com.synchrony.userapp.controller;
+
+import com.synchrony.userapp.config.JwtUtils;
+import com.synchrony.userapp.config.ReactiveConfiguration;
+import com.synchrony.userapp.exception.ImageNotFoundException;
+import com.synchrony.userapp.model.ImageDeleteRequest;
+import com.synchrony.userapp.model.ImageDownload;
+import com.synchrony.userapp.model.TokenRefreshRequest;
+import com.synchrony.userapp.model.TokenResponse;
+import com.synchrony.userapp.model.UserModel;
+import com.synchrony.userapp.service.UserService;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.codec.multipart.Part;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import javax.validation.Valid;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+/**
+ * WebFlux variant of {@link UserController} for the token, image and account endpoints, active with
+ * {@code spring.main.web-application-type=reactive}.<br>
+ * Bodies are streamed as {@link DataBuffer}s with backpressure both ways, so a slow client holds a
+ * connection but no thread. Uploads are staged in a temp file before the service reads them.
+ * The {@link UserService} is shared with the servlet stack, its blocking calls run on the bounded
+ * blocking scheduler and never on the event loop.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@SecurityRequirement(name = "bearerAuth")
+@Slf4j
+public class ReactiveUserController {
+
+    private static final int DOWNLOAD_BUFFER_SIZE = 16 * 1024;
+
+    private final UserService userService;
+
+    private final JwtUtils jwtUtils;
+
+    private final Scheduler blockingScheduler;
+
+    private final DataSize maxFileSize;
+
+    private final String imageCacheControl;
+
+    public ReactiveUserController(final UserService userService, final JwtUtils jwtUtils,
+            @Qualifier(ReactiveConfiguration.BLOCKING_SCHEDULER) final Scheduler blockingScheduler,
+            @Value("${spring.servlet.multipart.max-file-size}") final DataSize maxFileSize,
+            @Value("${app.image.cache-control.max-age}") final Duration imageCacheMaxAge) {
+        this.userService = userService;
+        this.jwtUtils = jwtUtils;
+        this.blockingScheduler = blockingScheduler;
+        this.maxFileSize = maxFileSize;
+        this.imageCacheControl = CacheControl.maxAge(imageCacheMaxAge).cachePrivate().getHeaderValue() + ", immutable";
+    }
+
+    /**
+     * Description: This endpoint is a method to register User.
+     * @param userModel
+     * @return access and refresh token with 201
+     */
+    @PostMapping("/register")
+    public Mono<ResponseEntity<TokenResponse>> register(@RequestBody @Valid final UserModel userModel) {
+        log.info("User Registration");
+        return blocking(() -> userService.registerUser(userModel))
+                .map(tokens -> ResponseEntity.status(HttpStatus.CREATED).body(tokens));
+    }
+
+    /**
+     * Description: This endpoint is a method for user login.
+     * @param userModel
+     * @return access and refresh token
+     */
+    @PostMapping("/login")
+    public Mono<ResponseEntity<TokenResponse>> login(@RequestBody @Valid final UserModel userModel) {
+        log.info("User login");
+        return blocking(() -> userService.login(userModel)).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Description: Exchange a refresh token for a new access and refresh token.
+     * @param refreshRequest
+     * @return access and refresh token
+     */
+    @PostMapping("/token/refresh")
+    public Mono<ResponseEntity<TokenResponse>> refreshToken(
+            @RequestBody @Valid final TokenRefreshRequest refreshRequest) {
+        log.info("Refresh token");
+        return blocking(() -> userService.refreshToken(refreshRequest.getRefreshToken())).map(ResponseEntity::ok);
+    }
+
+    /**
+     * Description: Revoke the access token of the loggedIn user and, when sent, its refresh token.
+     * @param authorization bearer access token of the request
+     * @param refreshRequest optional refresh token to revoke as well
+     * @return message
+     */
+    @PostMapping("/token/revoke")
+    public Mono<ResponseEntity<String>> revokeToken(@RequestHeader(HttpHeaders.AUTHORIZATION) final String authorization,
+            @RequestBody(required = false) final TokenRefreshRequest refreshRequest) {
+        log.info("Revoke token of loggedIn user");
+        return blocking(() -> {
+            userService.revokeTokens(jwtUtils.parseJwt(authorization),
+                    refreshRequest == null ? null : refreshRequest.getRefreshToken());
+            return ResponseEntity.ok().body("Token revoked successfully");
+        });
+    }
+
+    /**
+     * Description: Upload user image of loggedIn user. Parts are streamed (spring.webflux.multipart.streaming),
+     * the image part is written to a temp file without blocking and handed to the service once complete,
+     * other parts are skipped. Images above spring.servlet.multipart.max-file-size are refused with 413
+     * and empty images with 404 as on the servlet stack.
+     * @param parts of the multipart request
+     * @param principal loggedIn user
+     * @return message if the user image save .
+     */
+    @PostMapping(value = "/uploadImage", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public Mono<ResponseEntity<String>> uploadImage(@RequestBody final Flux<Part> parts, final Principal principal) {
+        log.info("Upload user image of loggedIn user");
+        return parts.concatMap(part -> {
+                    if (part instanceof FilePart && "image".equals(part.name())) {
+                        return Mono.usingWhen(
+                                FilePartMultipartFile.stage((FilePart) part, maxFileSize.toBytes(), blockingScheduler),
+                                image -> blocking(() -> uploadStaged(principal.getName(), image)),
+                                image -> blocking(image::delete));
+                    }
+                    return part.content().doOnNext(DataBufferUtils::release).then(Mono.<Boolean>empty());
+                })
+                .next()
+                .switchIfEmpty(Mono.error(() -> new ImageNotFoundException("No image Found")))
+                .map(uploaded -> uploaded
+                        ? ResponseEntity.ok().body("Image uploaded successfully")
+                        : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build());
+    }
+
+    private boolean uploadStaged(final String userName, final FilePartMultipartFile image) throws Exception {
+        if (image.isEmpty()) {
+            log.error("Image is Empty");
+            throw new ImageNotFoundException("No image Found");
+        }
+        return userService.uploadImage(userName, image);
+    }
+
+    /**
+     * Description: Display the user image based on userGallery Id, streamed in buffers as the client reads them.
+     * Caching headers and 304 answers are the same as on the servlet stack, Range requests are not supported.
+     * @param imageId
+     * @param size longest side the client renders, a resized variant is served when one covers it
+     * @param exchange current exchange
+     * @return image, empty once a 304 has been set on the response
+     */
+    @GetMapping(value = "/image/{id}", produces = {MediaType.IMAGE_JPEG_VALUE,
+            MediaType.IMAGE_GIF_VALUE, MediaType.IMAGE_PNG_VALUE })
+    public Mono<ResponseEntity<Flux<DataBuffer>>> downloadImage(
+            @PathVariable("id") final UUID imageId,
+            @RequestParam(value = "size", required = false) final Integer size,
+            final ServerWebExchange exchange) {
+        log.info("Download image based on userGallery Id");
+        DataBufferFactory bufferFactory = exchange.getResponse().bufferFactory();
+        return blocking(() -> userService.findImage(imageId, size))
+                .filter(download -> !exchange.checkNotModified(download.getETag(),
+                        download.getLastModified() == null ? Instant.MIN : download.getLastModified()))
+                .flatMap(download -> blocking(() -> imageResponse(download, bufferFactory)));
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> imageResponse(final ImageDownload download,
+            final DataBufferFactory bufferFactory) throws Exception {
+        Resource image = userService.getImage(download);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CACHE_CONTROL, imageCacheControl)
+                .contentLength(image.contentLength());
+        MediaType contentType = download.getMediaType();
+        if (contentType != null) {
+            response.contentType(contentType);
+        }
+        return response.body(DataBufferUtils.read(image, bufferFactory, DOWNLOAD_BUFFER_SIZE)
+                .subscribeOn(blockingScheduler));
+    }
+
+    /**
+     * Description: Delete several images of the loggedIn user in one request, ids of other users are ignored.
+     * The ids are sent as a JSON body, at most {@link ImageDeleteRequest#MAX_IDS} of them, more are rejected
+     * with 400. Stored content is released in the background.
+     * @param deleteRequest userGallery Ids
+     * @param principal loggedIn user
+     * @return message with the number of images deleted
+     */
+    @DeleteMapping("/images")
+    public Mono<ResponseEntity<String>> deleteUserImages(@RequestBody @Valid final ImageDeleteRequest deleteRequest,
+            final Principal principal) {
+        log.info("Delete {} images of loggedIn user", deleteRequest.getIds().size());
+        return blocking(() -> userService.deleteImages(principal.getName(), deleteRequest.getIds()))
+                .map(deleted -> ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .body(deleted + " images deleted successfully"));
+    }
+
+    /**
+     * Description: Delete the loggedIn user and all of its images, stored content is released in the background.
+     * @param principal loggedIn user
+     * @return message
+     */
+    @DeleteMapping("/account")
+    public Mono<ResponseEntity<String>> deleteAccount(final Principal principal) {
+        log.info("Delete account of loggedIn user");
+        return blocking(() -> userService.deleteAccount(principal.getName()))
+                .map(deleted -> ResponseEntity.status(HttpStatus.ACCEPTED).body("Account deleted successfully"));
+    }
+
+    private <T> Mono<T> blocking(final Callable<T> call) {
+        return Mono.fromCallable(call).subscribeOn(blockingScheduler);
+    }
+}
@@ -1,28 +1,48 @@
 package com.synchrony.userapp.controller;
 
 import com.synchrony.userapp.config.JwtUtils;
+import com.synchrony.userapp.exception.AuthenticationBusyException;
 import com.synchrony.userapp.exception.ImageNotFoundException;
+import com.synchrony.userapp.exception.InvalidCursorException;
+import com.synchrony.userapp.exception.InvalidTokenException;
 import com.synchrony.userapp.exception.RecordAlreadyExistsException;
 import com.synchrony.userapp.exception.RecordNotFoundException;
+import com.synchrony.userapp.exception.UnsupportedImageTypeException;
+import com.synchrony.userapp.exception.UploadLimitExceededException;
+import com.synchrony.userapp.model.ImageDataQuery;
+import com.synchrony.userapp.model.ImageDeleteRequest;
+import com.synchrony.userapp.model.ImageDownload;
+import com.synchrony.userapp.model.ImageUploadResult;
+import com.synchrony.userapp.model.TokenRefreshRequest;
+import com.synchrony.userapp.model.TokenResponse;
 import com.synchrony.userapp.model.UserModel;
 import com.synchrony.userapp.service.UserService;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import lombok.extern.slf4j.Slf4j;
-import org.json.simple.JSONArray;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
 import java.util.UUID;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @SecurityRequirement(name = "bearerAuth")
 @Slf4j
 public class UserController {
@@ -32,14 +52,23 @@ public class UserController {
     @Autowired
     private JwtUtils jwtUtils;
 
+    private String imageCacheControl;
+
+    @Value("${app.image.cache-control.max-age}")
+    public void setImageCacheMaxAge(final Duration maxAge) {
+        imageCacheControl = CacheControl.maxAge(maxAge).cachePrivate().getHeaderValue() + ", immutable";
+    }
+
     /**
      * Description: This endpoint is a method to register User.
      * @param userModel
-     * @return ResponseEntity<String> obj token and statuscode is send as Response
+     * @return ResponseEntity<TokenResponse> obj access and refresh token and statuscode is send as Response
      * @throws RecordAlreadyExistsException if user already registered with same emailId
+     * @throws AuthenticationBusyException if too many passwords are being hashed
      */
     @PostMapping("/register")
-    public ResponseEntity<String>  register(@RequestBody @Valid UserModel userModel) throws RecordAlreadyExistsException {
+    public ResponseEntity<TokenResponse>  register(@RequestBody @Valid UserModel userModel)
+            throws RecordAlreadyExistsException, AuthenticationBusyException {
         log.info("User Registration");
         return ResponseEntity.status(HttpStatus.CREATED)
                 .body(userService.registerUser(userModel));
@@ -49,16 +78,48 @@ public class UserController {
     /**
      * Description: This endpoint is a method for user login.
      * @param userModel
-     * @return ResponseEntity<String> obj token and statuscode is send as Response
+     * @return ResponseEntity<TokenResponse> obj access and refresh token and statuscode is send as Response
      * @throws RecordNotFoundException if user not found
+     * @throws AuthenticationBusyException if too many passwords are being verified
      */
     @PostMapping("/login")
-    public ResponseEntity<String>  login(@RequestBody @Valid UserModel userModel) throws RecordNotFoundException {
+    public ResponseEntity<TokenResponse>  login(@RequestBody @Valid UserModel userModel)
+            throws RecordNotFoundException, AuthenticationBusyException {
         log.info("User login");
         return ResponseEntity.status(HttpStatus.OK)
                 .body(userService.login(userModel));
     }
 
+    /**
+     * Description: Exchange a refresh token for a new access and refresh token, the password is not needed.
+     * The refresh token sent is revoked, each one can be used once.
+     * @param refreshRequest
+     * @return ResponseEntity<TokenResponse> obj access and refresh token
+     * @throws InvalidTokenException if the refresh token is invalid, expired or revoked
+     */
+    @PostMapping("/token/refresh")
+    public ResponseEntity<TokenResponse> refreshToken(@RequestBody @Valid final TokenRefreshRequest refreshRequest)
+            throws InvalidTokenException {
+        log.info("Refresh token");
+        return ResponseEntity.ok(userService.refreshToken(refreshRequest.getRefreshToken()));
+    }
+
+    /**
+     * Description: Revoke the access token of the loggedIn user and, when sent, its refresh token.
+     * @param authorization bearer access token of the request
+     * @param refreshRequest optional refresh token to revoke as well
+     * @return message
+     * @throws InvalidTokenException if the refresh token is invalid or belongs to another user
+     */
+    @PostMapping("/token/revoke")
+    public ResponseEntity<?> revokeToken(@RequestHeader(HttpHeaders.AUTHORIZATION) final String authorization,
+            @RequestBody(required = false) final TokenRefreshRequest refreshRequest) throws InvalidTokenException {
+        log.info("Revoke token of loggedIn user");
+        userService.revokeTokens(jwtUtils.parseJwt(authorization),
+                refreshRequest == null ? null : refreshRequest.getRefreshToken());
+        return ResponseEntity.ok().body("Token revoked successfully");
+    }
+
     /**
      * Description: Upload user image of loggedIn user.
      * @param image
@@ -69,7 +130,8 @@ public class UserController {
     @PostMapping(value = "/uploadImage", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<?> uploadImage(
             @RequestParam("image") final MultipartFile image)
-            throws IOException, ImageNotFoundException, RecordNotFoundException {
+            throws IOException, ImageNotFoundException, RecordNotFoundException, UploadLimitExceededException,
+            UnsupportedImageTypeException {
         log.info("Upload user image of loggedIn user");
         if (image.getSize() <= 0) {
             log.error("Image is Empty");
@@ -82,30 +144,72 @@ public class UserController {
     }
 
     /**
-     * Description: Display the user and image Data of loggedIn user.
-     *
+     * Description: Upload several images of the loggedIn user in one request.
+     * @param images
+     * @return result per image, 207 when some of them failed.
+     * @throws RecordNotFoundException
+     */
+    @PostMapping(value = "/uploadImages", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<List<ImageUploadResult>> uploadImages(
+            @RequestParam("images") final List<MultipartFile> images) throws RecordNotFoundException {
+        log.info("Upload {} user images of loggedIn user", images.size());
+        List<ImageUploadResult> results = userService.uploadImages(jwtUtils.getLoggedInUserName(), images);
+        boolean allUploaded = results.stream().allMatch(ImageUploadResult::isUploaded);
+        return ResponseEntity.status(allUploaded ? HttpStatus.OK : HttpStatus.MULTI_STATUS).body(results);
+    }
+
+    /**
+     * Description: Display one page of the user and image Data of loggedIn user.
+     * The JSON is written while the rows are read from the db.
+     * @param limit page size, the configured default when absent
+     * @param cursor nextCursor of the previous page, absent for the first page
      * @return user image.
      */
     @GetMapping(value = "/imageData", produces="application/json")
-    public ResponseEntity<JSONArray> getUserImageData() throws RecordNotFoundException {
+    public ResponseEntity<StreamingResponseBody> getUserImageData(
+            @RequestParam(value = "limit", required = false) final Integer limit,
+            @RequestParam(value = "cursor", required = false) final String cursor)
+            throws RecordNotFoundException, InvalidCursorException {
         log.info("Fetch user and image Data respective to loggedIn User");
-        return new ResponseEntity<>(userService.getImagesData(jwtUtils.getLoggedInUserName()), HttpStatus.OK);
+        ImageDataQuery query = userService.getImagesData(jwtUtils.getLoggedInUserName(), limit, cursor);
+        StreamingResponseBody imageData = out -> userService.writeImagesData(query, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(imageData);
     }
 
     /**
      * Description: Display the user image based on userGallery Id.
+     * The image is streamed with Content-Length, Range requests are answered with 206 partial content.
+     * Stored images never change, so they carry a strong ETag and may be cached as immutable;
+     * a matching If-None-Match or If-Modified-Since is answered with 304 before any content is read.
+     * The Content-Type is the one sniffed at upload.
      * @param imageId
-     * @return  image
+     * @param size longest side the client renders, a resized variant is served when one covers it
+     * @return  image, null once a 304 has been set on the response
      * @throws IOException
      * @throws RecordNotFoundException
      */
     @GetMapping(value = "/image/{id}", produces = {MediaType.IMAGE_JPEG_VALUE,
             MediaType.IMAGE_GIF_VALUE, MediaType.IMAGE_PNG_VALUE })
-    public ResponseEntity<?> downloadImage(
-            @PathVariable("id") final UUID imageId) throws IOException, RecordNotFoundException {
+    public ResponseEntity<Resource> downloadImage(
+            @PathVariable("id") final UUID imageId,
+            @RequestParam(value = "size", required = false) final Integer size,
+            final WebRequest request) throws IOException, RecordNotFoundException {
         log.info("Download image based on userGallery Id");
-        byte[] image = userService.getImage(imageId);
-        return new ResponseEntity<>(image, HttpStatus.OK);
+        ImageDownload download = userService.findImage(imageId, size);
+        long lastModified = download.getLastModified() == null ? -1 : download.getLastModified().toEpochMilli();
+        if (request.checkNotModified(download.getETag(), lastModified)) {
+            return null;
+        }
+        Resource image = userService.getImage(download);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CACHE_CONTROL, imageCacheControl);
+        MediaType contentType = download.getMediaType();
+        if (contentType != null) {
+            response.contentType(contentType);
+        }
+        return response.body(image);
     }
 
     /**
@@ -122,4 +226,32 @@ public class UserController {
         return new ResponseEntity<>("Image deleted successfully",
                 HttpStatus.ACCEPTED);
     }
+
+    /**
+     * Description: Delete several images of the loggedIn user in one request, ids of other users are ignored.
+     * The ids are sent as a JSON body, at most {@link ImageDeleteRequest#MAX_IDS} of them, more are rejected
+     * with 400. Stored content is released in the background.
+     * @param deleteRequest userGallery Ids
+     * @return message with the number of images deleted
+     * @throws RecordNotFoundException
+     */
+    @DeleteMapping("/images")
+    public ResponseEntity<?> deleteUserImages(@RequestBody @Valid final ImageDeleteRequest deleteRequest)
+            throws RecordNotFoundException {
+        log.info("Delete {} images of loggedIn user", deleteRequest.getIds().size());
+        int deleted = userService.deleteImages(jwtUtils.getLoggedInUserName(), deleteRequest.getIds());
+        return new ResponseEntity<>(deleted + " images deleted successfully", HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Description: Delete the loggedIn user and all of its images, stored content is released in the background.
+     * @return message
+     * @throws RecordNotFoundException
+     */
+    @DeleteMapping("/account")
+    public ResponseEntity<?> deleteAccount() throws RecordNotFoundException {
+        log.info("Delete account of loggedIn user");
+        userService.deleteAccount(jwtUtils.getLoggedInUserName());
+        return new ResponseEntity<>("Account deleted successfully", HttpStatus.ACCEPTED);
+    }
 }
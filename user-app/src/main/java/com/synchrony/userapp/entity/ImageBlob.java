@@ -0,0 +1,27 @@
+package com.synchrony.userapp.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.sql.Blob;
+
+/**
+ * Image content kept by the database image store.<br>
+ * Mapped for the schema only, the content is streamed through JDBC and never loaded as an entity.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "image_blob")
+public class ImageBlob {
+
+    @Id
+    @Column(name = "storage_key", length = 64, updatable = false, nullable = false)
+    private String storageKey;
+
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(name = "content", nullable = false)
+    private Blob content;
+}
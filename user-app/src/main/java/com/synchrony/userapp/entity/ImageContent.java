@@ -0,0 +1,32 @@
+package com.synchrony.userapp.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * One row per distinct image content, shared by every gallery row with the same digest.<br>
+ * Mapped for the schema only, the reference count is maintained with atomic updates by
+ * {@link com.synchrony.userapp.storage.ImageContentRegistry}.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "image_content")
+public class ImageContent {
+
+    @Id
+    @Column(name = "content_hash", length = 64, updatable = false, nullable = false)
+    private String contentHash;
+
+    @Column(name = "content_size", nullable = false)
+    private Long contentSize;
+
+    @Column(name = "ref_count", nullable = false)
+    private Long refCount;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+}
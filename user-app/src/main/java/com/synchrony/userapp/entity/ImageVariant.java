@@ -0,0 +1,43 @@
+package com.synchrony.userapp.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Type;
+
+import javax.persistence.*;
+import java.util.UUID;
+
+/**
+ * Resized copy of a stored image, bounded to {@code maxDimension} pixels on its longer side.<br>
+ * Variants belong to the stored content rather than to a gallery row, so deduplicated uploads share them.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "image_variant", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_image_variant_source_size", columnNames = {"source_key", "max_dimension"})})
+public class ImageVariant {
+
+    @Id
+    @GeneratedValue(generator = TimeOrderedUuidGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedUuidGenerator.NAME, strategy = TimeOrderedUuidGenerator.STRATEGY)
+    @Type(type="uuid-binary")
+    @Column(name="id", columnDefinition = "BINARY(16)",updatable = false, nullable = false)
+    private UUID id;
+
+    @Column(name = "source_key", length = 64, nullable = false)
+    private String sourceKey;
+
+    @Column(name = "max_dimension", nullable = false)
+    private Integer maxDimension;
+
+    @Column(name = "storage_key", length = 64, nullable = false)
+    private String storageKey;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "content_size")
+    private Long contentSize;
+}
@@ -9,14 +9,16 @@ import java.util.UUID;
 
 @Data
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "uk_users_email", columnList = "email", unique = true)})
 @AllArgsConstructor
 @NoArgsConstructor
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
-    @Type(type="uuid-char")
-    @Column(name="id", columnDefinition = "VARCHAR(255)",updatable = false, nullable = false)
+    @GeneratedValue(generator = TimeOrderedUuidGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedUuidGenerator.NAME, strategy = TimeOrderedUuidGenerator.STRATEGY)
+    @Type(type="uuid-binary")
+    @Column(name="id", columnDefinition = "BINARY(16)",updatable = false, nullable = false)
     private UUID id;
     private String email;
     private String password;
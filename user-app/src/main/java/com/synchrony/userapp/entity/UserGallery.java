@@ -3,31 +3,52 @@ package com.synchrony.userapp.entity;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
 import org.hibernate.annotations.Type;
 
 import javax.persistence.*;
+import java.time.Instant;
 import java.util.UUID;
 
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "user_gallery")
+@Table(name = "user_gallery", indexes = {
+        @Index(name = "idx_user_gallery_listing", columnList = "user_id, created_at, id")})
 public class UserGallery {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
-    @Type(type="uuid-char")
-    @Column(name="id", columnDefinition = "VARCHAR(255)",updatable = false, nullable = false)
+    @GeneratedValue(generator = TimeOrderedUuidGenerator.NAME)
+    @GenericGenerator(name = TimeOrderedUuidGenerator.NAME, strategy = TimeOrderedUuidGenerator.STRATEGY)
+    @Type(type="uuid-binary")
+    @Column(name="id", columnDefinition = "BINARY(16)",updatable = false, nullable = false)
     private UUID id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     private User user;
 
-    @Lob
-    @Column(name = "image", length = Integer.MAX_VALUE)
-    private byte[] image;
+    @Column(name = "storage_key", length = 64)
+    private String storageKey;
 
     private String fileName;
 
+    @Column(name = "file_size")
+    private Long fileSize;
+
+    @Column(name = "content_type")
+    private String contentType;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    private Integer width;
+
+    private Integer height;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt;
+
 
 }
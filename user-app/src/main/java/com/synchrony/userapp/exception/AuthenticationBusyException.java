@@ -0,0 +1,18 @@
+package com.synchrony.userapp.exception;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Thrown when the password hashing pool cannot take more work.
+ */
+
+@SuppressWarnings("serial")
+@Data
+@EqualsAndHashCode(callSuper = false)
+@AllArgsConstructor
+public class AuthenticationBusyException extends Exception {
+
+    private String message;
+}
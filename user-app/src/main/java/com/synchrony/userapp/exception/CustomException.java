@@ -1,6 +1,7 @@
 package com.synchrony.userapp.exception;
 
 import com.synchrony.userapp.model.Response;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -9,6 +10,7 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
 import java.util.ArrayList;
@@ -53,6 +55,62 @@ public class CustomException extends ResponseEntityExceptionHandler {
         return entity;
     }
 
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<Object> handleExceptions(InvalidCursorException exception) {
+        Response response = new Response();
+        response.setMessage(exception.getMessage());
+        ResponseEntity<Object> entity = new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        return entity;
+    }
+
+    @ExceptionHandler(UploadLimitExceededException.class)
+    public ResponseEntity<Object> handleExceptions(UploadLimitExceededException exception) {
+        Response response = new Response();
+        response.setMessage(exception.getMessage());
+        ResponseEntity<Object> entity = new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+        return entity;
+    }
+
+    @ExceptionHandler(AuthenticationBusyException.class)
+    public ResponseEntity<Object> handleExceptions(AuthenticationBusyException exception) {
+        Response response = new Response();
+        response.setMessage(exception.getMessage());
+        ResponseEntity<Object> entity = new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+        return entity;
+    }
+
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Object> handleExceptions(TaskRejectedException exception) {
+        Response response = new Response();
+        response.setMessage("Server busy, try again later");
+        ResponseEntity<Object> entity = new ResponseEntity<>(response, HttpStatus.SERVICE_UNAVAILABLE);
+        return entity;
+    }
+
+    @ExceptionHandler(InvalidTokenException.class)
+    public ResponseEntity<Object> handleExceptions(InvalidTokenException exception) {
+        Response response = new Response();
+        response.setMessage(exception.getMessage());
+        ResponseEntity<Object> entity = new ResponseEntity<>(response, HttpStatus.UNAUTHORIZED);
+        return entity;
+    }
+
+    @ExceptionHandler(UnsupportedImageTypeException.class)
+    public ResponseEntity<Object> handleExceptions(UnsupportedImageTypeException exception) {
+        Response response = new Response();
+        response.setMessage(exception.getMessage());
+        ResponseEntity<Object> entity = new ResponseEntity<>(response, HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+        return entity;
+    }
+
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<Object> handleExceptions(MaxUploadSizeExceededException exception) {
+        Response response = new Response();
+        response.setMessage("Image exceeds the maximum upload size");
+        ResponseEntity<Object> entity = new ResponseEntity<>(response, HttpStatus.PAYLOAD_TOO_LARGE);
+        return entity;
+    }
+
     @ExceptionHandler(ImageNotFoundException.class)
     public  ResponseEntity<Object> handleImageNotFoundException(
             ImageNotFoundException ex) {
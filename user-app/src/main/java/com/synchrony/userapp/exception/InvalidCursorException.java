@@ -0,0 +1,19 @@
+package com.synchrony.userapp.exception;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Description: Thrown when the cursor passed to /imageData cannot be decoded, e.g. it was altered
+ * or does not come from a nextCursor. Answered with 400.
+ */
+
+@SuppressWarnings("serial")
+@Data
+@EqualsAndHashCode(callSuper = false)
+@AllArgsConstructor
+public class InvalidCursorException extends Exception {
+
+    private String message;
+}
@@ -0,0 +1,18 @@
+package com.synchrony.userapp.exception;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Thrown when a refresh token is malformed, expired, revoked or not a refresh token.
+ */
+
+@SuppressWarnings("serial")
+@Data
+@EqualsAndHashCode(callSuper = false)
+@AllArgsConstructor
+public class InvalidTokenException extends Exception {
+
+    private String message;
+}
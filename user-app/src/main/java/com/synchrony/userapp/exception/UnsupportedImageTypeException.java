@@ -0,0 +1,18 @@
+package com.synchrony.userapp.exception;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Thrown when uploaded content is not a JPEG, PNG or GIF image.
+ */
+
+@SuppressWarnings("serial")
+@Data
+@EqualsAndHashCode(callSuper = false)
+@AllArgsConstructor
+public class UnsupportedImageTypeException extends Exception {
+
+    private String message;
+}
@@ -0,0 +1,18 @@
+package com.synchrony.userapp.exception;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Thrown when no upload slot frees up in time.
+ */
+
+@SuppressWarnings("serial")
+@Data
+@EqualsAndHashCode(callSuper = false)
+@AllArgsConstructor
+public class UploadLimitExceededException extends Exception {
+
+    private String message;
+}
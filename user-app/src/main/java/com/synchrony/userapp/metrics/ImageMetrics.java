@@ -0,0 +1,63 @@
+package com.synchrony.userapp.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Byte counters of the image endpoints.<br>
+ */
+@Component
+public class ImageMetrics {
+
+    private final DistributionSummary uploaded;
+
+    private final DistributionSummary downloaded;
+
+    private final Counter newContent;
+
+    private final Counter duplicateContent;
+
+    private final Counter deduplicatedBytes;
+
+    public ImageMetrics(final MeterRegistry registry) {
+        this.uploaded = DistributionSummary.builder("image.upload.size")
+                .description("Size of uploaded images")
+                .baseUnit("bytes")
+                .register(registry);
+        this.downloaded = DistributionSummary.builder("image.download.size")
+                .description("Size of images handed out for download")
+                .baseUnit("bytes")
+                .register(registry);
+        this.newContent = Counter.builder("image.content")
+                .description("Uploads by whether their content was already stored")
+                .tag("result", "new")
+                .register(registry);
+        this.duplicateContent = Counter.builder("image.content")
+                .description("Uploads by whether their content was already stored")
+                .tag("result", "duplicate")
+                .register(registry);
+        this.deduplicatedBytes = Counter.builder("image.content.deduplicated")
+                .description("Bytes of uploads whose content was already stored")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public void recordUpload(final long bytes) {
+        uploaded.record(bytes);
+    }
+
+    public void recordDownload(final long bytes) {
+        downloaded.record(bytes);
+    }
+
+    public void recordContent(final boolean created, final long bytes) {
+        if (created) {
+            newContent.increment();
+        } else {
+            duplicateContent.increment();
+            deduplicatedBytes.increment(bytes);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.synchrony.userapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published when a user deletes the account, the cached principal is evicted after the commit.
+ */
+@Data
+@AllArgsConstructor
+public class AccountDeletedEvent {
+
+    private String userName;
+}
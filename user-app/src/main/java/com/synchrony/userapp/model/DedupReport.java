@@ -0,0 +1,36 @@
+package com.synchrony.userapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Storage saved by content-addressed deduplication.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DedupReport {
+
+    /**
+     * Gallery rows referencing stored content.
+     */
+    private long references;
+
+    /**
+     * Distinct contents actually stored.
+     */
+    private long distinctContents;
+
+    /**
+     * Bytes the references would take without deduplication.
+     */
+    private long logicalBytes;
+
+    private long storedBytes;
+
+    /**
+     * logicalBytes / storedBytes, 1.0 when nothing is shared.
+     */
+    private double dedupRatio;
+}
@@ -0,0 +1,60 @@
+package com.synchrony.userapp.model;
+
+import com.synchrony.userapp.exception.InvalidCursorException;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Keyset position in a user's gallery listing, ordered by createdAt then id.<br>
+ * Handed to clients as an opaque url safe token.
+ */
+@Data
+@AllArgsConstructor
+public class ImageDataCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private Instant createdAt;
+
+    private UUID id;
+
+    /**
+     * Description: Cursor pointing after the given row.
+     * @param metadata last row of a page
+     * @return cursor
+     */
+    public static ImageDataCursor after(final UserGalleryMetadata metadata) {
+        return new ImageDataCursor(metadata.getCreatedAt(), metadata.getId());
+    }
+
+    /**
+     * Description: Encode the cursor as token.
+     * @return token
+     */
+    public String encode() {
+        String position = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Description: Decode a token created by encode.
+     * @param token
+     * @return cursor
+     * @throws InvalidCursorException if the token was not issued by this service
+     */
+    public static ImageDataCursor decode(final String token) throws InvalidCursorException {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = position.indexOf(SEPARATOR);
+            return new ImageDataCursor(Instant.parse(position.substring(0, separator)),
+                    UUID.fromString(position.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Invalid cursor");
+        }
+    }
+}
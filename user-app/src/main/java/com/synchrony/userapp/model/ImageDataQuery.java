@@ -0,0 +1,25 @@
+package com.synchrony.userapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * One validated page request of a user's image data, resolved before the response is streamed.
+ */
+@Data
+@AllArgsConstructor
+public class ImageDataQuery {
+
+    private UUID userId;
+
+    private String email;
+
+    private int pageSize;
+
+    /**
+     * Position after the previous page, null for the first page.
+     */
+    private ImageDataCursor cursor;
+}
@@ -0,0 +1,29 @@
+package com.synchrony.userapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Body of a bulk image delete. The ids travel in the body since a query string of thousands of ids
+ * runs into the URL length limits of clients and proxies.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ImageDeleteRequest {
+
+    /**
+     * Most ids one request may delete, larger requests are rejected with 400.
+     */
+    public static final int MAX_IDS = 10000;
+
+    @NotEmpty(message = "should be filled out")
+    @Size(max = MAX_IDS, message = "should not contain more than " + MAX_IDS + " ids")
+    private List<UUID> ids;
+}
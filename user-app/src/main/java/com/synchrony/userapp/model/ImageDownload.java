@@ -0,0 +1,53 @@
+package com.synchrony.userapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Metadata of the image content to serve, resolved before any of the content is read.
+ */
+@Data
+@AllArgsConstructor
+public class ImageDownload {
+
+    private UUID imageId;
+
+    /**
+     * Key of the original or of the chosen variant, the content digest.
+     */
+    private String storageKey;
+
+    private String contentType;
+
+    private Instant lastModified;
+
+    /**
+     * Description: Strong validator of the content, stored content never changes under its key.
+     * @return quoted storage key
+     */
+    public String getETag() {
+        return "\"" + storageKey + "\"";
+    }
+
+    /**
+     * Description: Type recorded at upload, images uploaded before types were sniffed may carry
+     * whatever the client sent and are left to content negotiation.
+     * @return concrete image type, null when there is none
+     */
+    public MediaType getMediaType() {
+        if (contentType == null) {
+            return null;
+        }
+        try {
+            MediaType mediaType = MediaType.parseMediaType(contentType);
+            return "image".equals(mediaType.getType()) && mediaType.isConcrete() ? mediaType : null;
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.synchrony.userapp.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Outcome of a single part of a multi-image upload.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(Include.NON_NULL)
+public class ImageUploadResult {
+
+    private String fileName;
+
+    private UUID galleryId;
+
+    private boolean uploaded;
+
+    private String message;
+
+    public static ImageUploadResult uploaded(final String fileName, final UUID galleryId) {
+        return new ImageUploadResult(fileName, galleryId, true, null);
+    }
+
+    public static ImageUploadResult failed(final String fileName, final String message) {
+        return new ImageUploadResult(fileName, null, false, message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.synchrony.userapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published once the gallery row of an upload is saved.
+ */
+@Data
+@AllArgsConstructor
+public class ImageUploadedEvent {
+
+    private String storageKey;
+
+    private String contentType;
+}
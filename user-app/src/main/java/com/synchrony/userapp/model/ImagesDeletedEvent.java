@@ -0,0 +1,18 @@
+package com.synchrony.userapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published once gallery rows are deleted in bulk, their stored content is released after the commit.
+ */
+@Data
+@AllArgsConstructor
+public class ImagesDeletedEvent {
+
+    /**
+     * Id of the release queued with the delete by
+     * {@link com.synchrony.userapp.storage.ImageContentRegistry#queueRelease(java.util.Collection)}.
+     */
+    private String releaseId;
+}
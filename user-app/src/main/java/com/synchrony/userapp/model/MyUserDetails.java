@@ -4,6 +4,7 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
+import java.util.Collections;
 
 public class MyUserDetails implements UserDetails {
 
@@ -16,15 +17,29 @@ public class MyUserDetails implements UserDetails {
 
   private String username;
 
+  private Collection<? extends GrantedAuthority> authorities;
+
   /**
    *
    * @param username
    * @param password
    */
   public MyUserDetails(final String username, final String password) {
+    this(username, password, Collections.emptyList());
+  }
+
+  /**
+   *
+   * @param username
+   * @param password
+   * @param authorities roles granted to the user, e.g. ROLE_ADMIN
+   */
+  public MyUserDetails(final String username, final String password,
+          final Collection<? extends GrantedAuthority> authorities) {
     super();
     this.username = username;
     this.password = password;
+    this.authorities = authorities;
   }
 
   /**
@@ -33,7 +48,7 @@ public class MyUserDetails implements UserDetails {
    */
   @Override
   public Collection<? extends GrantedAuthority> getAuthorities() {
-    return null;
+    return authorities;
   }
 
   /**
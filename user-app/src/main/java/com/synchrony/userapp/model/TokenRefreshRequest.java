@@ -0,0 +1,16 @@
+package com.synchrony.userapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TokenRefreshRequest {
+
+    @NotBlank(message = "should be filled out")
+    private String refreshToken;
+}
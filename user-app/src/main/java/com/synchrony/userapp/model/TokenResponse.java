@@ -0,0 +1,31 @@
+package com.synchrony.userapp.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Token pair handed out by /register, /login and /token/refresh.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TokenResponse {
+
+    private String accessToken;
+
+    private String refreshToken;
+
+    private String tokenType = "Bearer";
+
+    /**
+     * Seconds until the access token expires.
+     */
+    private long expiresIn;
+
+    public TokenResponse(final String accessToken, final String refreshToken, final long expiresIn) {
+        this.accessToken = accessToken;
+        this.refreshToken = refreshToken;
+        this.expiresIn = expiresIn;
+    }
+}
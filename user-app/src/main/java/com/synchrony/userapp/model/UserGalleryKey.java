@@ -0,0 +1,13 @@
+package com.synchrony.userapp.model;
+
+import java.util.UUID;
+
+/**
+ * Projection of a locked userGallery row, the id to delete it by and the storage key to release.
+ */
+public interface UserGalleryKey {
+
+    UUID getId();
+
+    String getStorageKey();
+}
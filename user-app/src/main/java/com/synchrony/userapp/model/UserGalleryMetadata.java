@@ -0,0 +1,24 @@
+package com.synchrony.userapp.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Projection of the userGallery columns needed to list images, the image content is never selected.
+ */
+public interface UserGalleryMetadata {
+
+    UUID getId();
+
+    String getFileName();
+
+    Long getFileSize();
+
+    String getContentType();
+
+    Integer getWidth();
+
+    Integer getHeight();
+
+    Instant getCreatedAt();
+}
@@ -0,0 +1,44 @@
+package com.synchrony.userapp.repository;
+
+import com.synchrony.userapp.entity.ImageVariant;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface ImageVariantRepository extends JpaRepository<ImageVariant, UUID> {
+
+    /**
+     * Description: Smallest variant of the stored image which still covers the requested size.
+     * @param sourceKey storage key of the original
+     * @param size requested size of the longer side
+     * @return variant, empty when the original has to be served
+     */
+    Optional<ImageVariant> findFirstBySourceKeyAndMaxDimensionGreaterThanEqualOrderByMaxDimensionAsc(
+            String sourceKey, Integer size);
+
+    List<ImageVariant> findBySourceKey(String sourceKey);
+
+    boolean existsBySourceKey(String sourceKey);
+
+    @Query("select v.storageKey from ImageVariant v where v.sourceKey in :sourceKeys")
+    List<String> findStorageKeysBySourceKeyIn(@Param("sourceKeys") Collection<String> sourceKeys);
+
+    /**
+     * Description: Delete the variants of many originals with one statement.
+     * @param sourceKeys storage keys of the originals
+     * @return number of variants deleted
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from ImageVariant v where v.sourceKey in :sourceKeys")
+    int deleteBySourceKeyIn(@Param("sourceKeys") Collection<String> sourceKeys);
+}
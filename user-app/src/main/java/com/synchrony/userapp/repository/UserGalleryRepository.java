@@ -1,15 +1,91 @@
 package com.synchrony.userapp.repository;
 
 import com.synchrony.userapp.entity.UserGallery;
+import com.synchrony.userapp.model.UserGalleryKey;
+import com.synchrony.userapp.model.UserGalleryMetadata;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserGalleryRepository extends JpaRepository<UserGallery, UUID> {
 
-    List<UserGallery> findByUserId(UUID userId);
+    String SELECT_METADATA = "select g.id as id, g.fileName as fileName, g.fileSize as fileSize,"
+            + " g.contentType as contentType, g.width as width, g.height as height, g.createdAt as createdAt"
+            + " from UserGallery g where g.user.id = :userId";
+
+    String ORDER_BY_LISTING = " order by g.createdAt, g.id";
+
+    /**
+     * Description: First page of the gallery metadata of a user, image content is never loaded.
+     * The stream must be consumed and closed inside a transaction.
+     * @param userId
+     * @param page only the page size is used, rows are ordered by createdAt and id
+     * @return metadata ordered by upload time
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "100"))
+    @Query(SELECT_METADATA + ORDER_BY_LISTING)
+    Stream<UserGalleryMetadata> streamMetadataByUserId(@Param("userId") UUID userId, Pageable page);
+
+    /**
+     * Description: Next page of the gallery metadata, seeking past the last row of the previous page
+     * on the (user_id, created_at, id) index instead of skipping an offset.
+     * @param userId
+     * @param createdAt createdAt of the last row already returned
+     * @param id id of the last row already returned
+     * @param page only the page size is used
+     * @return metadata ordered by upload time
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "100"))
+    @Query(SELECT_METADATA + " and (g.createdAt > :createdAt or (g.createdAt = :createdAt and g.id > :id))"
+            + ORDER_BY_LISTING)
+    Stream<UserGalleryMetadata> streamMetadataByUserIdAfter(@Param("userId") UUID userId,
+            @Param("createdAt") Instant createdAt, @Param("id") UUID id, Pageable page);
+
+    /**
+     * Description: Lock all gallery rows of a user and read their ids and storage keys in one query. Only the
+     * locked ids are deleted afterwards, so each deleted row releases its content reference exactly once.
+     * @param userId
+     * @return id and storage key of each row, the key is null for content not moved to the store yet
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select g.id as id, g.storageKey as storageKey from UserGallery g where g.user.id = :userId")
+    List<UserGalleryKey> lockKeysByUserId(@Param("userId") UUID userId);
+
+    /**
+     * Description: Lock the given gallery rows of a user and read their ids and storage keys, ids of other users
+     * are ignored.
+     * @param userId
+     * @param ids gallery ids
+     * @return id and storage key of each row, the key is null for content not moved to the store yet
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select g.id as id, g.storageKey as storageKey from UserGallery g where g.user.id = :userId"
+            + " and g.id in :ids")
+    List<UserGalleryKey> lockKeysByUserIdAndIdIn(@Param("userId") UUID userId, @Param("ids") Collection<UUID> ids);
+
+    /**
+     * Description: Delete the given gallery rows of a user with one statement, ids of other users are ignored.
+     * @param userId
+     * @param ids gallery ids
+     * @return number of rows deleted
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from UserGallery g where g.user.id = :userId and g.id in :ids")
+    int deleteByUserIdAndIdIn(@Param("userId") UUID userId, @Param("ids") Collection<UUID> ids);
 }
@@ -2,7 +2,11 @@ package com.synchrony.userapp.repository;
 
 import com.synchrony.userapp.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 import java.util.UUID;
@@ -12,7 +16,16 @@ public interface UserRepository  extends JpaRepository<User, UUID> {
 
     Optional<User> findByEmail(String email);
 
-    Optional<User>  findByEmailAndPassword(String email, String password);
-
     Optional<User> findByIdAndEmail(String userId, String userNameFromJwtToken);
+
+    /**
+     * Description: Delete the user row with one statement, unlike deleteById it is not loaded first.
+     * Gallery rows referencing the user have to be deleted before.
+     * @param userId
+     * @return number of rows deleted
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from User u where u.id = :userId")
+    int deleteUser(@Param("userId") UUID userId);
 }
@@ -1,13 +1,24 @@
 package com.synchrony.userapp.service;
 
+import com.synchrony.userapp.exception.AuthenticationBusyException;
 import com.synchrony.userapp.exception.ImageNotFoundException;
+import com.synchrony.userapp.exception.InvalidCursorException;
+import com.synchrony.userapp.exception.InvalidTokenException;
 import com.synchrony.userapp.exception.RecordAlreadyExistsException;
 import com.synchrony.userapp.exception.RecordNotFoundException;
+import com.synchrony.userapp.exception.UnsupportedImageTypeException;
+import com.synchrony.userapp.exception.UploadLimitExceededException;
+import com.synchrony.userapp.model.ImageDataQuery;
+import com.synchrony.userapp.model.ImageDownload;
+import com.synchrony.userapp.model.ImageUploadResult;
+import com.synchrony.userapp.model.TokenResponse;
 import com.synchrony.userapp.model.UserModel;
-import org.json.simple.JSONArray;
+import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.UUID;
 
 public interface UserService {
@@ -15,18 +26,36 @@ public interface UserService {
     /**
      * Decription: interface is to register User in db.
      * @param userModel
-     * @return token
+     * @return access and refresh token
      * @throws RecordAlreadyExistsException
+     * @throws AuthenticationBusyException
      */
-   String registerUser(UserModel userModel) throws RecordAlreadyExistsException;
+   TokenResponse registerUser(UserModel userModel) throws RecordAlreadyExistsException, AuthenticationBusyException;
 
     /**
      * Description: interface is to validate loggedIn user.
      * @param userModel
-     * @return token
+     * @return access and refresh token
      * @throws RecordNotFoundException
+     * @throws AuthenticationBusyException
      */
-   String login(UserModel userModel) throws RecordNotFoundException;
+   TokenResponse login(UserModel userModel) throws RecordNotFoundException, AuthenticationBusyException;
+
+    /**
+     * Description: interface is to exchange a refresh token for a new token pair, without the password.
+     * @param refreshToken
+     * @return access and refresh token
+     * @throws InvalidTokenException
+     */
+   TokenResponse refreshToken(String refreshToken) throws InvalidTokenException;
+
+    /**
+     * Description: interface is to revoke the access token of the loggedIn user and its refresh token.
+     * @param accessToken
+     * @param refreshToken may be null
+     * @throws InvalidTokenException
+     */
+   void revokeTokens(String accessToken, String refreshToken) throws InvalidTokenException;
 
     /**
      * Description: Interface is to save image uploaded by user.
@@ -34,15 +63,40 @@ public interface UserService {
      * @param file
      * @return Boolean obj
      * @throws IOException
+     * @throws UploadLimitExceededException
+     * @throws UnsupportedImageTypeException
      */
-   Boolean uploadImage(String userName, MultipartFile file) throws IOException, RecordNotFoundException;
+   Boolean uploadImage(String userName, MultipartFile file)
+           throws IOException, RecordNotFoundException, UploadLimitExceededException, UnsupportedImageTypeException;
 
     /**
-     * Description: Interface is to fetch User and image Data.
+     * Description: Interface is to save several images uploaded by user in one request.
      * @param userName
-     * @return  JSONArray
+     * @param files
+     * @return result per file
+     * @throws RecordNotFoundException
+     */
+   List<ImageUploadResult> uploadImages(String userName, List<MultipartFile> files) throws RecordNotFoundException;
+
+    /**
+     * Description: Interface is to resolve one page of User and image Data.
+     * @param userName
+     * @param limit page size, capped by app.image.page.max-size
+     * @param cursor nextCursor of the previous page, null for the first page
+     * @return  ImageDataQuery to pass to writeImagesData
+     * @throws RecordNotFoundException
+     * @throws InvalidCursorException
+     */
+  ImageDataQuery getImagesData(String userName, Integer limit, String cursor)
+          throws RecordNotFoundException, InvalidCursorException;
+
+    /**
+     * Description: Interface is to stream the resolved page of User and image Data as JSON.
+     * @param query
+     * @param out
+     * @throws IOException
      */
-  JSONArray getImagesData(String userName) throws RecordNotFoundException;
+  void writeImagesData(ImageDataQuery query, OutputStream out) throws IOException;
 
     /**
      * Description: Interface is to  delete image based on userGallery Id.
@@ -52,10 +106,36 @@ public interface UserService {
     void deleteImage(UUID imageId) throws RecordNotFoundException;
 
     /**
-     * Description: Interface is to fetch image based on userGallery Id.
+     * Description: Interface is to delete several images of the loggedIn user at once.
+     * @param userName
+     * @param imageIds userGallery Ids, ids of other users are ignored
+     * @return number of images deleted
+     * @throws RecordNotFoundException
+     */
+    int deleteImages(String userName, List<UUID> imageIds) throws RecordNotFoundException;
+
+    /**
+     * Description: Interface is to delete the loggedIn user together with all of its images.
+     * @param userName
+     * @return number of images deleted
+     * @throws RecordNotFoundException
+     */
+    int deleteAccount(String userName) throws RecordNotFoundException;
+
+    /**
+     * Description: Interface is to resolve the image to serve for a userGallery Id, without reading it.
      * @param imageId
-     * @return byte[]
+     * @param size longest side wanted, null for the original
+     * @return ImageDownload to pass to getImage
+     * @throws RecordNotFoundException
+     */
+    ImageDownload findImage(UUID imageId, Integer size) throws RecordNotFoundException;
+
+    /**
+     * Description: Interface is to fetch image content.
+     * @param download resolved by findImage
+     * @return Resource streaming the image content
      * @throws RecordNotFoundException
      */
-    byte[] getImage(UUID imageId) throws RecordNotFoundException;
+    Resource getImage(ImageDownload download) throws RecordNotFoundException;
 }
@@ -0,0 +1,124 @@
+package com.synchrony.userapp.service.implemetation;
+
+import com.synchrony.userapp.config.ImageCleanupConfiguration;
+import com.synchrony.userapp.model.ImagesDeletedEvent;
+import com.synchrony.userapp.storage.ImageContentCache;
+import com.synchrony.userapp.storage.ImageContentRegistry;
+import com.synchrony.userapp.storage.ReleasedReferences;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Releases the stored content of bulk deleted gallery rows.<br>
+ * The releases are queued in the {@code image_release} table with the delete, and drained on the bounded
+ * {@link ImageCleanupConfiguration#IMAGE_CLEANUP_EXECUTOR} pool once the delete is committed, so deleting
+ * thousands of images answers as soon as the rows are gone. References are dropped
+ * {@code app.image.cleanup.batch-size} at a time, one transaction per batch, and only after that commit the
+ * content whose last reference went away is removed, evicted from the content cache and loses its variants.<br>
+ * A batch which fails stays queued, and content which cannot be removed stays registered without references.
+ * Both are picked up by the sweep every {@code app.image.cleanup.sweep-interval-ms}, which also drains
+ * releases left behind by a restart.
+ */
+@Component
+@Slf4j
+public class ImageCleanupService {
+
+    @Autowired
+    private ImageContentRegistry imageContentRegistry;
+
+    @Autowired
+    private ImageContentCache imageContentCache;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    @Qualifier(ImageCleanupConfiguration.IMAGE_CLEANUP_EXECUTOR)
+    private TaskExecutor imageCleanupExecutor;
+
+    @Value("${app.image.cleanup.batch-size}")
+    private int batchSize;
+
+    @Value("${app.image.cleanup.sweep-interval-ms}")
+    private long sweepIntervalMs;
+
+    /**
+     * Description: Drain the release queued with the delete.
+     * @param event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onImagesDeleted(final ImagesDeletedEvent event) {
+        imageCleanupExecutor.execute(() -> releaseImages(event.getReleaseId()));
+    }
+
+    /**
+     * Description: Drop the queued references of one release in batches and remove the content left without any.
+     * @param releaseId of the queued release
+     */
+    public void releaseImages(final String releaseId) {
+        drain("release " + releaseId, limit -> imageContentRegistry.releaseQueued(releaseId, limit));
+    }
+
+    /**
+     * Description: Drain the releases queued longer than a sweep interval ago, which were not drained after
+     * their commit, then retry the removal of content left without references.
+     */
+    @Scheduled(fixedDelayString = "${app.image.cleanup.sweep-interval-ms}",
+            initialDelayString = "${app.image.cleanup.sweep-interval-ms}")
+    public void sweep() {
+        Instant queuedBefore = Instant.now().minusMillis(sweepIntervalMs);
+        drain("releases queued before " + queuedBefore,
+                limit -> imageContentRegistry.releaseQueuedBefore(queuedBefore, limit));
+        String after = "";
+        try {
+            for (List<String> unreferenced = imageContentRegistry.findUnreferenced(after, batchSize);
+                    !unreferenced.isEmpty(); unreferenced = imageContentRegistry.findUnreferenced(after, batchSize)) {
+                removeContents(unreferenced);
+                after = unreferenced.get(unreferenced.size() - 1);
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not sweep stored images without references", e);
+        }
+    }
+
+    private void drain(final String description, final IntFunction<ReleasedReferences> nextBatch) {
+        int released = 0;
+        int removed = 0;
+        try {
+            for (ReleasedReferences batch = nextBatch.apply(batchSize); batch.getReleased() > 0;
+                    batch = nextBatch.apply(batchSize)) {
+                released += batch.getReleased();
+                removed += removeContents(batch.getUnreferenced());
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not drain {}, the rest stays queued for the next sweep", description, e);
+        }
+        if (released > 0) {
+            log.info("Released {} deleted images of {}, {} stored contents removed", released, description, removed);
+        }
+    }
+
+    private int removeContents(final List<String> unreferenced) {
+        List<String> removed = imageContentRegistry.removeUnreferenced(unreferenced);
+        removed.forEach(imageContentCache::invalidate);
+        try {
+            String variantRelease = imageVariantService.deleteAllVariants(removed);
+            if (variantRelease != null) {
+                releaseImages(variantRelease);
+            }
+        } catch (RuntimeException e) {
+            log.error("Could not delete the variants of {} removed images", removed.size(), e);
+        }
+        return removed.size();
+    }
+}
@@ -0,0 +1,236 @@
+package com.synchrony.userapp.service.implemetation;
+
+import com.synchrony.userapp.config.ImageVariantConfiguration;
+import com.synchrony.userapp.entity.ImageVariant;
+import com.synchrony.userapp.model.ImageUploadedEvent;
+import com.synchrony.userapp.repository.ImageVariantRepository;
+import com.synchrony.userapp.storage.ImageContentCache;
+import com.synchrony.userapp.storage.ImageContentRegistry;
+import com.synchrony.userapp.storage.ImageStore;
+import com.synchrony.userapp.storage.StoredImage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Generates the resized variants configured with {@code app.image.variant.sizes} for every upload.<br>
+ * Generation runs on the bounded {@link ImageVariantConfiguration#IMAGE_VARIANT_EXECUTOR} pool once the
+ * upload is committed. Images no larger than a size get no variant for it, the original is served instead.
+ */
+@Component
+@Slf4j
+public class ImageVariantService {
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private ImageContentRegistry imageContentRegistry;
+
+    @Autowired
+    private ImageContentCache imageContentCache;
+
+    @Autowired
+    private ImageVariantRepository imageVariantRepository;
+
+    @Autowired
+    @Qualifier(ImageVariantConfiguration.IMAGE_VARIANT_EXECUTOR)
+    private TaskExecutor imageVariantExecutor;
+
+    @Value("${app.image.variant.sizes}")
+    private int[] sizes;
+
+    @Value("${app.image.variant.max-pixels}")
+    private long maxPixels;
+
+    /**
+     * Description: Queue variant generation for a saved upload.
+     * @param event
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onImageUploaded(final ImageUploadedEvent event) {
+        imageVariantExecutor.execute(() -> generateVariants(event.getStorageKey()));
+    }
+
+    /**
+     * Description: Find the variant to serve for a requested size.
+     * @param sourceKey storage key of the original
+     * @param size requested size of the longer side
+     * @return smallest variant covering the size, empty when the original has to be served
+     */
+    public Optional<ImageVariant> findVariant(final String sourceKey, final int size) {
+        return imageVariantRepository
+                .findFirstBySourceKeyAndMaxDimensionGreaterThanEqualOrderByMaxDimensionAsc(sourceKey, size);
+    }
+
+    /**
+     * Description: Remove the variants of stored content which is gone.
+     * @param sourceKey storage key of the original
+     */
+    public void deleteVariants(final String sourceKey) {
+        List<ImageVariant> variants = imageVariantRepository.findBySourceKey(sourceKey);
+        if (variants.isEmpty()) {
+            return;
+        }
+        imageVariantRepository.deleteAll(variants);
+        for (ImageVariant variant : variants) {
+            if (imageContentRegistry.release(variant.getStorageKey())) {
+                imageContentCache.invalidate(variant.getStorageKey());
+            }
+        }
+    }
+
+    /**
+     * Description: Remove the variants of many originals which are gone, with one query for their storage keys
+     * and one delete, and queue the release of their contents in the same transaction.
+     * @param sourceKeys storage keys of the originals
+     * @return id of the queued release, null when there were no variants
+     */
+    @Transactional
+    public String deleteAllVariants(final Collection<String> sourceKeys) {
+        if (sourceKeys.isEmpty()) {
+            return null;
+        }
+        List<String> variantKeys = imageVariantRepository.findStorageKeysBySourceKeyIn(sourceKeys);
+        if (variantKeys.isEmpty()) {
+            return null;
+        }
+        imageVariantRepository.deleteBySourceKeyIn(sourceKeys);
+        return imageContentRegistry.queueRelease(variantKeys);
+    }
+
+    /**
+     * Description: Decode the original once and store a variant for each configured size below its size.
+     * Content shared by several uploads is only processed for the first one.
+     * Images with more pixels than {@code app.image.variant.max-pixels} are not decoded at all, a small file
+     * can declare dimensions whose decoded raster would not fit on the heap.
+     * @param sourceKey storage key of the original
+     */
+    public void generateVariants(final String sourceKey) {
+        if (sizes.length == 0 || imageVariantRepository.existsBySourceKey(sourceKey)) {
+            return;
+        }
+        BufferedImage original;
+        try (InputStream in = imageStore.load(sourceKey).getInputStream();
+             ImageInputStream image = ImageIO.createImageInputStream(in)) {
+            original = decode(sourceKey, image);
+        } catch (IOException e) {
+            log.warn("Cannot read image {} for variants", sourceKey, e);
+            return;
+        }
+        if (original == null) {
+            return;
+        }
+        boolean alpha = original.getColorModel().hasAlpha();
+        int longest = Math.max(original.getWidth(), original.getHeight());
+        for (int size : sizes) {
+            if (size >= longest) {
+                continue;
+            }
+            try {
+                saveVariant(sourceKey, size, resize(original, size, alpha), alpha ? "png" : "jpeg");
+            } catch (IOException | DataIntegrityViolationException e) {
+                log.warn("Cannot store {}px variant of {}", size, sourceKey, e);
+            }
+        }
+    }
+
+    /**
+     * Description: Read the dimensions from the header and decode the pixels only when they are within the cap.
+     * @return decoded image, null when the content is not a readable image or is too large
+     */
+    private BufferedImage decode(final String sourceKey, final ImageInputStream image) throws IOException {
+        Iterator<ImageReader> readers = image == null ? Collections.emptyIterator() : ImageIO.getImageReaders(image);
+        if (!readers.hasNext()) {
+            log.info("No variants for {}, content is not a readable image", sourceKey);
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(image, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            if ((long) width * height > maxPixels) {
+                log.warn("No variants for {}, {}x{} exceeds {} pixels", sourceKey, width, height, maxPixels);
+                return null;
+            }
+            return reader.read(0);
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private void saveVariant(final String sourceKey, final int size, final BufferedImage resized,
+            final String format) throws IOException {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        if (!ImageIO.write(resized, format, encoded)) {
+            throw new IOException("No image writer for " + format);
+        }
+        StoredImage stored = imageStore.store(new ByteArrayInputStream(encoded.toByteArray()));
+        imageContentRegistry.reference(stored);
+        ImageVariant variant = new ImageVariant();
+        variant.setSourceKey(sourceKey);
+        variant.setMaxDimension(size);
+        variant.setStorageKey(stored.getStorageKey());
+        variant.setContentType("image/" + format);
+        variant.setContentSize(stored.getSize());
+        try {
+            imageVariantRepository.save(variant);
+        } catch (DataIntegrityViolationException e) {
+            // generated concurrently for a duplicate upload
+            imageContentRegistry.release(stored.getStorageKey());
+            throw e;
+        }
+    }
+
+    /**
+     * Description: Scale down in halving steps before the final step, a single bilinear pass over a
+     * large ratio skips most source pixels and aliases badly.
+     */
+    private static BufferedImage resize(final BufferedImage original, final int size, final boolean alpha) {
+        int longest = Math.max(original.getWidth(), original.getHeight());
+        int width = Math.max(1, (int) Math.round((double) original.getWidth() * size / longest));
+        int height = Math.max(1, (int) Math.round((double) original.getHeight() * size / longest));
+        BufferedImage current = original;
+        int currentWidth = original.getWidth();
+        int currentHeight = original.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage step = new BufferedImage(currentWidth, currentHeight,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = step;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+}
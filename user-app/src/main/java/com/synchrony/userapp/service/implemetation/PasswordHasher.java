@@ -0,0 +1,110 @@
+package com.synchrony.userapp.service.implemetation;
+
+import com.synchrony.userapp.config.PasswordHashingConfiguration;
+import com.synchrony.userapp.exception.AuthenticationBusyException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * Runs BCrypt hashing and verification on the bounded password hashing pool.<br>
+ * Callers wait at most {@code app.security.password-hashing.timeout-ms}, when the pool is saturated
+ * they fail right away with {@link AuthenticationBusyException} instead of queueing without limit.
+ */
+@Component
+public class PasswordHasher {
+
+    private static final Pattern BCRYPT_HASH = Pattern.compile("\\$2[aby]?\\$\\d\\d\\$[./0-9A-Za-z]{53}");
+
+    @Autowired
+    private BCryptPasswordEncoder passwordEncoder;
+
+    @Autowired
+    @Qualifier(PasswordHashingConfiguration.PASSWORD_HASHING_EXECUTOR)
+    private AsyncTaskExecutor passwordHashingExecutor;
+
+    @Value("${app.security.password-hashing.timeout-ms}")
+    private long timeoutMs;
+
+    /**
+     * Hash checked when the user does not exist, so unknown emails take as long as wrong passwords.
+     */
+    private String unknownUserHash;
+
+    @PostConstruct
+    public void init() {
+        unknownUserHash = passwordEncoder.encode("unknown-user");
+    }
+
+    /**
+     * Description: Hash a password for storage.
+     * @param rawPassword
+     * @return BCrypt hash with the configured cost
+     * @throws AuthenticationBusyException
+     */
+    public String hash(final String rawPassword) throws AuthenticationBusyException {
+        return run(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Description: Verify a password, a null hash stands for an unknown user and never matches.
+     * @param rawPassword
+     * @param encodedPassword stored hash
+     * @return true if the password matches
+     * @throws AuthenticationBusyException
+     */
+    public boolean matches(final String rawPassword, final String encodedPassword) throws AuthenticationBusyException {
+        if (encodedPassword == null) {
+            run(() -> passwordEncoder.matches(rawPassword, unknownUserHash));
+            return false;
+        }
+        return run(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Description: Whether a stored password predates hashing or was hashed with a lower cost,
+     * such passwords are re-hashed on the next successful login.
+     * @param encodedPassword stored password
+     * @return true if it should be replaced
+     */
+    public boolean needsRehash(final String encodedPassword) {
+        return !isHash(encodedPassword) || passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    public boolean isHash(final String encodedPassword) {
+        return encodedPassword != null && BCRYPT_HASH.matcher(encodedPassword).matches();
+    }
+
+    private <T> T run(final Callable<T> task) throws AuthenticationBusyException {
+        Future<T> result;
+        try {
+            result = passwordHashingExecutor.submit(task);
+        } catch (TaskRejectedException e) {
+            throw new AuthenticationBusyException("Too many login attempts in progress, try again later");
+        }
+        try {
+            return result.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            throw new AuthenticationBusyException("Too many login attempts in progress, try again later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(true);
+            throw new AuthenticationBusyException("Interrupted while verifying the password");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.synchrony.userapp.service.implemetation;
+
+import com.synchrony.userapp.config.CacheConfiguration;
+import com.synchrony.userapp.model.AccountDeletedEvent;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Evicts the cached principal of a deleted account once the delete is committed.<br>
+ * Evicting before the commit would let a request in between load the principal of the
+ * account still in the db and cache it again for the whole cache expiry.
+ */
+@Component
+public class PrincipalCacheEvictor {
+
+    /**
+     * Description: Evict the principal of the deleted account, tokens still held by the client stop authenticating.
+     * @param event
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    @CacheEvict(cacheNames = CacheConfiguration.PRINCIPAL_CACHE, key = "#event.userName")
+    public void onAccountDeleted(final AccountDeletedEvent event) {
+        // the cache eviction is all there is to do
+    }
+}
@@ -0,0 +1,45 @@
+package com.synchrony.userapp.service.implemetation;
+
+import com.synchrony.userapp.exception.UploadLimitExceededException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of uploads copied to the image store at the same time, each one holds
+ * its own copy buffer and store connection or file handle while it runs.
+ */
+@Component
+public class UploadLimiter {
+
+    private final Semaphore permits;
+
+    private final long acquireTimeoutMs;
+
+    public UploadLimiter(@Value("${app.image.upload.max-concurrent:16}") final int maxConcurrent,
+            @Value("${app.image.upload.acquire-timeout-ms:2000}") final long acquireTimeoutMs) {
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    /**
+     * Description: Wait for an upload slot, release it with {@link #release()} once the copy is done.
+     * @throws UploadLimitExceededException if no slot frees up within the timeout
+     */
+    public void acquire() throws UploadLimitExceededException {
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new UploadLimitExceededException("Too many uploads in progress, try again later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UploadLimitExceededException("Upload interrupted while waiting for a slot");
+        }
+    }
+
+    public void release() {
+        permits.release();
+    }
+}
@@ -1,33 +1,80 @@
 package com.synchrony.userapp.service.implemetation;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.synchrony.userapp.config.CacheConfiguration;
 import com.synchrony.userapp.config.JwtUtils;
+import com.synchrony.userapp.config.TokenRevocationList;
 import com.synchrony.userapp.entity.User;
 import com.synchrony.userapp.entity.UserGallery;
+import com.synchrony.userapp.exception.AuthenticationBusyException;
 import com.synchrony.userapp.exception.ImageNotFoundException;
+import com.synchrony.userapp.exception.InvalidCursorException;
+import com.synchrony.userapp.exception.InvalidTokenException;
 import com.synchrony.userapp.exception.RecordAlreadyExistsException;
 import com.synchrony.userapp.exception.RecordNotFoundException;
+import com.synchrony.userapp.exception.UnsupportedImageTypeException;
+import com.synchrony.userapp.exception.UploadLimitExceededException;
+import com.synchrony.userapp.metrics.ImageMetrics;
+import com.synchrony.userapp.model.AccountDeletedEvent;
+import com.synchrony.userapp.model.ImageDataCursor;
+import com.synchrony.userapp.model.ImageDataQuery;
+import com.synchrony.userapp.model.ImageDownload;
+import com.synchrony.userapp.model.ImageUploadedEvent;
+import com.synchrony.userapp.model.ImagesDeletedEvent;
+import com.synchrony.userapp.model.ImageUploadResult;
 import com.synchrony.userapp.model.MyUserDetails;
+import com.synchrony.userapp.model.TokenResponse;
+import com.synchrony.userapp.model.UserGalleryKey;
+import com.synchrony.userapp.model.UserGalleryMetadata;
 import com.synchrony.userapp.model.UserModel;
 import com.synchrony.userapp.repository.UserGalleryRepository;
 import com.synchrony.userapp.repository.UserRepository;
 import com.synchrony.userapp.service.UserService;
+import com.synchrony.userapp.storage.ImageContentCache;
+import com.synchrony.userapp.storage.ImageContentRegistry;
+import com.synchrony.userapp.storage.ImageProbe;
+import com.synchrony.userapp.storage.ImageStore;
+import com.synchrony.userapp.storage.StoredImage;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.awt.Dimension;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -39,152 +86,622 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     @Autowired
     private JwtUtils jwtUtils;
 
+    @Autowired
+    private TokenRevocationList tokenRevocationList;
+
     @Autowired
     private UserGalleryRepository userGalleryRepository;
 
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private ImageMetrics imageMetrics;
+
+    @Autowired
+    private UploadLimiter uploadLimiter;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private ImageContentRegistry imageContentRegistry;
+
+    @Autowired
+    private ImageVariantService imageVariantService;
+
+    @Autowired
+    private ImageContentCache imageContentCache;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
     /**
-     * Decsription: This Service is to persist user data in db.
+     * Ids per IN list of a bulk delete.
+     */
+    private static final int DELETE_CHUNK_SIZE = 1000;
+
+    private static final String ADMIN_ROLE = "ROLE_ADMIN";
+
+    @Value("${app.security.admin-emails:}")
+    private String[] adminEmails;
+
+    @Value("${app.image.page.default-size}")
+    private int defaultPageSize;
+
+    @Value("${app.image.page.max-size}")
+    private int maxPageSize;
+
+    /**
+     * Decsription: This Service is to persist user data in db, the password is stored as a BCrypt hash.
      * @param userModel
-     * @return token
-     * @throws RecordAlreadyExistsException
+     * @return access and refresh token
+     * @throws RecordAlreadyExistsException also when a concurrent registration takes the email first
+     * @throws AuthenticationBusyException if the password hashing pool is saturated
      */
     @Override
-    public String registerUser(UserModel userModel) throws RecordAlreadyExistsException {
+    @Timed("user.service")
+    public TokenResponse registerUser(UserModel userModel) throws RecordAlreadyExistsException, AuthenticationBusyException {
         Optional<User> userDetails = userRepository.findByEmail(userModel.getEmail());
         if (userDetails.isPresent()) {
             throw new RecordAlreadyExistsException("User Already Registered With given emailId");
         }
         User user = new User();
         BeanUtils.copyProperties(userModel, user);
-        user = userRepository.save(user);
+        user.setPassword(passwordHasher.hash(userModel.getPassword()));
+        try {
+            user = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            // a concurrent registration won the unique email index
+            throw new RecordAlreadyExistsException("User Already Registered With given emailId");
+        }
         return getToken(new MyUserDetails(user.getEmail(), user.getPassword()));
     }
 
     /**
-     * Dscription : This method is to validate loggedIn user
+     * Dscription : This method is to validate loggedIn user, the user is fetched by email and the
+     * password verified against its hash on the password hashing pool. Passwords stored before hashing
+     * or with a lower cost are re-hashed once they have been verified. The re-hash is best effort, when the
+     * hashing pool is saturated the login still succeeds and the password is re-hashed on a later login.
      * @param userModel
-     * @return token
+     * @return access and refresh token
      * @throws RecordNotFoundException
+     * @throws AuthenticationBusyException if the password hashing pool is saturated
      */
     @Override
-    public String login(UserModel userModel) throws RecordNotFoundException {
-        User user = userRepository.findByEmailAndPassword(userModel.getEmail(), userModel.getPassword())
-                .orElseThrow(() -> new RecordNotFoundException("User not found"));
+    @Timed("user.service")
+    public TokenResponse login(UserModel userModel) throws RecordNotFoundException, AuthenticationBusyException {
+        Optional<User> found = userRepository.findByEmail(userModel.getEmail());
+        String storedPassword = found.map(User::getPassword).orElse(null);
+        boolean matches;
+        if (storedPassword == null || passwordHasher.isHash(storedPassword)) {
+            matches = passwordHasher.matches(userModel.getPassword(), storedPassword);
+        } else {
+            matches = userModel.getPassword() != null && MessageDigest.isEqual(
+                    storedPassword.getBytes(StandardCharsets.UTF_8),
+                    userModel.getPassword().getBytes(StandardCharsets.UTF_8));
+        }
+        if (!matches) {
+            throw new RecordNotFoundException("User not found");
+        }
+        User user = found.get();
+        if (passwordHasher.needsRehash(storedPassword)) {
+            try {
+                user.setPassword(passwordHasher.hash(userModel.getPassword()));
+                userRepository.save(user);
+            } catch (AuthenticationBusyException e) {
+                log.warn("Password of {} not re-hashed, retried on the next login: {}",
+                        user.getEmail(), e.getMessage());
+            }
+        }
         return getToken(new MyUserDetails(user.getEmail(), user.getPassword()));
     }
 
     /**
      * Description:Locates the user based on the username from DB for Authentication.
+     * Principals are cached, so authenticated requests skip the db once the user is known.
+     * Users listed in app.security.admin-emails get ROLE_ADMIN.
      * @param username the username identifying the user whose data is required.
      * @return UserDetails
      */
     @Override
+    @Cacheable(cacheNames = CacheConfiguration.PRINCIPAL_CACHE, key = "#username")
+    @Timed("user.service")
     public UserDetails loadUserByUsername(String username) {
         User user = userRepository.findByEmail(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-        return new MyUserDetails(user.getEmail(), user.getPassword());
+        return new MyUserDetails(user.getEmail(), user.getPassword(), authoritiesOf(user.getEmail()));
+    }
+
+    private List<GrantedAuthority> authoritiesOf(final String email) {
+        if (adminEmails != null) {
+            for (String adminEmail : adminEmails) {
+                if (adminEmail.trim().equalsIgnoreCase(email)) {
+                    return Collections.singletonList(new SimpleGrantedAuthority(ADMIN_ROLE));
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Description: This method is to issue a new token pair for a refresh token. Only the signature,
+     * the revocation list and the user row are checked, the password hashing pool is not involved.
+     * The refresh token is rotated, it is revoked here so a replayed copy is refused. A replayed copy
+     * means the token leaked, so the whole family issued from the same login is revoked with it.
+     * @param refreshToken
+     * @return access and refresh token
+     * @throws InvalidTokenException if the token is not a valid, unrevoked refresh token
+     */
+    @Override
+    @Timed("user.service")
+    public TokenResponse refreshToken(final String refreshToken) throws InvalidTokenException {
+        Claims claims = verifyToken(refreshToken);
+        if (!jwtUtils.isRefreshToken(claims) || claims.getId() == null) {
+            throw new InvalidTokenException("Not a refresh token");
+        }
+        // tokens issued before families existed start their own family
+        String familyId = jwtUtils.getFamilyId(claims) != null ? jwtUtils.getFamilyId(claims) : claims.getId();
+        if (tokenRevocationList.isRevokedInStore(familyId)) {
+            throw new InvalidTokenException("Refresh token has been revoked");
+        }
+        if (!tokenRevocationList.revoke(claims.getId(), claims.getExpiration())) {
+            log.warn("Refresh token of {} replayed, revoking its token family", claims.getSubject());
+            revokeFamily(familyId);
+            throw new InvalidTokenException("Refresh token has been revoked");
+        }
+        User user = userRepository.findByEmail(claims.getSubject())
+                .orElseThrow(() -> new InvalidTokenException("User not found"));
+        return getToken(new MyUserDetails(user.getEmail(), user.getPassword()), familyId);
     }
 
     /**
-     * Description : This method is to generate Token.
+     * A family lives as long as the refresh tokens it may still hold.
+     */
+    private void revokeFamily(final String familyId) {
+        if (familyId != null) {
+            tokenRevocationList.revoke(familyId, new Date(System.currentTimeMillis() + jwtUtils.getRefreshExpirationMs()));
+        }
+    }
+
+    /**
+     * Description: This method is to revoke the access token of the loggedIn user, together with
+     * its refresh token and token family when one is given. Revoked tokens are refused until they expire.
+     * @param accessToken
+     * @param refreshToken may be null
+     * @throws InvalidTokenException if the refresh token is invalid or belongs to another user
+     */
+    @Override
+    @Timed("user.service")
+    public void revokeTokens(final String accessToken, final String refreshToken) throws InvalidTokenException {
+        Claims access = verifyToken(accessToken);
+        if (refreshToken != null) {
+            Claims refresh = verifyToken(refreshToken);
+            if (!jwtUtils.isRefreshToken(refresh) || !refresh.getSubject().equals(access.getSubject())) {
+                throw new InvalidTokenException("Not a refresh token of the loggedIn user");
+            }
+            tokenRevocationList.revoke(refresh.getId(), refresh.getExpiration());
+            revokeFamily(jwtUtils.getFamilyId(refresh));
+        }
+        if (access.getId() != null) {
+            tokenRevocationList.revoke(access.getId(), access.getExpiration());
+        }
+    }
+
+    private Claims verifyToken(final String token) throws InvalidTokenException {
+        if (token == null) {
+            throw new InvalidTokenException("Token is missing");
+        }
+        try {
+            return jwtUtils.parseAndVerify(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            throw new InvalidTokenException("Invalid token");
+        }
+    }
+
+    /**
+     * Description : This method is to generate a short lived access token and a refresh token
+     * starting a new token family.
      * @param user
      * @return token
      */
-    public String getToken(UserDetails user) {
-        return jwtUtils.generateJwtToken(user);
+    public TokenResponse getToken(UserDetails user) {
+        return getToken(user, UUID.randomUUID().toString());
+    }
+
+    private TokenResponse getToken(final UserDetails user, final String familyId) {
+        return new TokenResponse(jwtUtils.generateJwtToken(user, familyId), jwtUtils.generateRefreshToken(user, familyId),
+                TimeUnit.MILLISECONDS.toSeconds(jwtUtils.getJwtExpirationMs()));
     }
 
     /**
-     * Description: This method is to persist uploaded images in db.
+     * Description: This method is to persist uploaded images, the content is streamed to the image store
+     * in chunks and the db keeps the storage key, size and digest taken while copying. Content which is
+     * already stored is shared instead of kept twice. The type is sniffed from the leading bytes, the
+     * client supplied content type is ignored.
      * @param userName
      * @param image
      * @return Boolean flag
      * @throws IOException
      * @throws  RecordNotFoundException
+     * @throws UploadLimitExceededException if too many uploads are already in progress
+     * @throws UnsupportedImageTypeException if the content is not a JPEG, PNG or GIF image
      */
     @Override
+    @Timed("user.service")
     public Boolean uploadImage(final String userName, final MultipartFile image)
-            throws IOException, RecordNotFoundException {
+            throws IOException, RecordNotFoundException, UploadLimitExceededException, UnsupportedImageTypeException {
         User user = userRepository.findByEmail(userName).orElseThrow(() -> new RecordNotFoundException("User not found"));;
-        UserGallery gallery = new UserGallery();
-        gallery.setUser(user);
-        gallery.setFileName(image.getOriginalFilename());
-        gallery.setImage(image.getBytes());
+        UserGallery gallery = storeImage(user, image);
         try {
             userGalleryRepository.save(gallery);
+            imageMetrics.recordUpload(gallery.getFileSize());
+            eventPublisher.publishEvent(new ImageUploadedEvent(gallery.getStorageKey(), gallery.getContentType()));
             return true;
         } catch (Exception e) {
             log.error("Error" + e);
+            imageContentRegistry.release(gallery.getStorageKey());
             return false;
         }
 
     }
 
     /**
-     * Description: This method is to fetch user and gallery data based on loggedIn user.
+     * Description: This method is to persist several uploaded images for one user. The user is resolved once,
+     * every image is streamed to the image store and the gallery rows are written together by one
+     * saveAll, so Hibernate sends them as a single JDBC batch in one transaction.
+     * An image that cannot be stored is reported in its result, its content reference is given back
+     * and the other images are still saved.
+     * @param userName
+     * @param images
+     * @return result per image, in request order
+     * @throws RecordNotFoundException
+     */
+    @Override
+    @Timed("user.service")
+    public List<ImageUploadResult> uploadImages(final String userName, final List<MultipartFile> images)
+            throws RecordNotFoundException {
+        User user = userRepository.findByEmail(userName).orElseThrow(() -> new RecordNotFoundException("User not found"));
+        List<ImageUploadResult> results = new ArrayList<>(images.size());
+        List<UserGallery> galleries = new ArrayList<>(images.size());
+        for (MultipartFile image : images) {
+            if (image.isEmpty()) {
+                results.add(ImageUploadResult.failed(image.getOriginalFilename(), "No image Found"));
+                continue;
+            }
+            try {
+                UserGallery gallery = storeImage(user, image);
+                galleries.add(gallery);
+                results.add(ImageUploadResult.uploaded(image.getOriginalFilename(), null));
+            } catch (IOException | UploadLimitExceededException | UnsupportedImageTypeException e) {
+                log.error("Error storing " + image.getOriginalFilename() + " " + e);
+                results.add(ImageUploadResult.failed(image.getOriginalFilename(), e.getMessage()));
+            } catch (RuntimeException e) {
+                log.error("Error storing " + image.getOriginalFilename(), e);
+                results.add(ImageUploadResult.failed(image.getOriginalFilename(), "Image could not be saved"));
+            }
+        }
+        if (galleries.isEmpty()) {
+            return results;
+        }
+        try {
+            userGalleryRepository.saveAll(galleries);
+        } catch (Exception e) {
+            log.error("Error" + e);
+            for (UserGallery gallery : galleries) {
+                imageContentRegistry.release(gallery.getStorageKey());
+            }
+            for (ImageUploadResult result : results) {
+                if (result.isUploaded()) {
+                    result.setUploaded(false);
+                    result.setMessage("Image could not be saved");
+                }
+            }
+            return results;
+        }
+        Iterator<UserGallery> saved = galleries.iterator();
+        for (ImageUploadResult result : results) {
+            if (result.isUploaded()) {
+                UserGallery gallery = saved.next();
+                result.setGalleryId(gallery.getId());
+                imageMetrics.recordUpload(gallery.getFileSize());
+                eventPublisher.publishEvent(new ImageUploadedEvent(gallery.getStorageKey(), gallery.getContentType()));
+            }
+        }
+        return results;
+    }
+
+    private UserGallery storeImage(final User user, final MultipartFile image)
+            throws IOException, UploadLimitExceededException, UnsupportedImageTypeException {
+        StoredImage stored;
+        String contentType;
+        try (InputStream content = new BufferedInputStream(image.getInputStream())) {
+            contentType = ImageProbe.sniffContentType(content);
+            if (contentType == null) {
+                throw new UnsupportedImageTypeException("Unsupported image type, expected JPEG, PNG or GIF");
+            }
+            uploadLimiter.acquire();
+            try {
+                stored = imageStore.store(content);
+            } finally {
+                uploadLimiter.release();
+            }
+        }
+        try {
+            imageContentRegistry.reference(stored);
+        } catch (IOException | RuntimeException e) {
+            imageStore.discard(stored);
+            throw e;
+        }
+        try {
+            Dimension dimensions = readDimensions(stored.getStorageKey(), contentType);
+            UserGallery gallery = new UserGallery();
+            gallery.setUser(user);
+            gallery.setFileName(image.getOriginalFilename());
+            gallery.setFileSize(stored.getSize());
+            gallery.setContentType(contentType);
+            gallery.setStorageKey(stored.getStorageKey());
+            gallery.setContentHash(stored.getSha256());
+            if (dimensions != null) {
+                gallery.setWidth(dimensions.width);
+                gallery.setHeight(dimensions.height);
+            }
+            return gallery;
+        } catch (RuntimeException e) {
+            imageContentRegistry.release(stored.getStorageKey());
+            throw e;
+        }
+    }
+
+    private Dimension readDimensions(final String storageKey, final String contentType) {
+        try {
+            return ImageProbe.readDimensions(imageStore.load(storageKey), contentType);
+        } catch (IOException e) {
+            log.warn("Cannot read dimensions of {}", storageKey, e);
+            return null;
+        }
+    }
+
+    /**
+     * Description: This method is to resolve the loggedIn user and the requested page of gallery data,
+     * so a missing user or a bad cursor fails before any of the response is written.
      * @param userName
-     * @return JSONArray
+     * @param limit page size
+     * @param cursor position after the previous page
+     * @return ImageDataQuery
      * @throws RecordNotFoundException
-     * @throws ImageNotFoundException
+     * @throws InvalidCursorException
      */
     @Override
-    public JSONArray getImagesData(final String userName) throws RecordNotFoundException {
+    @Timed("user.service")
+    public ImageDataQuery getImagesData(final String userName, final Integer limit, final String cursor)
+            throws RecordNotFoundException, InvalidCursorException {
         User user = userRepository.findByEmail(userName).orElseThrow(() -> new RecordNotFoundException("User not found"));;
-        List<UserGallery> userGalleries = userGalleryRepository.findByUserId(user.getId());
-        JSONArray userImages = new JSONArray();
-        log.debug("Grouping data based on userId");
-        Map<UUID, List<UserGallery>> userGallerymap = userGalleries.stream()
-                .collect(Collectors.groupingBy(g -> g.getUser()
-                        .getId()));
-        for (Map.Entry<UUID, List<UserGallery>> entry : userGallerymap.entrySet()) {
-            JSONObject userObj = new JSONObject();
-            userObj.put("userId", entry.getValue()
-                    .get(0)
-                    .getUser()
-                    .getId());
-            userObj.put("email", entry.getValue()
-                    .get(0)
-                    .getUser()
-                    .getEmail());
-            JSONArray galleries = new JSONArray();
-            entry.getValue()
-                    .stream()
-                    .forEach(m -> {
-                        JSONObject obj = new JSONObject();
-                        obj.put("galleryId", m.getId());
-                        obj.put("fileName", m.getFileName());
-                        galleries.add(obj);
-                    });
-            userObj.put("imageData", galleries);
-            userImages.add(userObj);
-        }
-        return userImages;
-    }
-
-    /**
-     * Description: This method is to download image from db based on userGalleryId.
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        return new ImageDataQuery(user.getId(), user.getEmail(), pageSize,
+                cursor == null ? null : ImageDataCursor.decode(cursor));
+    }
+
+    /**
+     * Description: This method is to write one page of gallery data as JSON while the rows are read.
+     * Only the metadata columns are queried and pages are read with a keyset seek,
+     * so later pages cost the same as the first one.
+     * @param query resolved by getImagesData
+     * @param out response body
+     * @throws IOException
+     */
+    @Override
+    @Transactional(readOnly = true)
+    @Timed("user.service")
+    public void writeImagesData(final ImageDataQuery query, final OutputStream out) throws IOException {
+        int pageSize = query.getPageSize();
+        // one extra row tells whether another page follows
+        Pageable page = PageRequest.of(0, pageSize + 1);
+        ImageDataCursor cursor = query.getCursor();
+        try (Stream<UserGalleryMetadata> rows = cursor == null
+                ? userGalleryRepository.streamMetadataByUserId(query.getUserId(), page)
+                : userGalleryRepository.streamMetadataByUserIdAfter(query.getUserId(),
+                        cursor.getCreatedAt(), cursor.getId(), page);
+             JsonGenerator json = JSON_FACTORY.createGenerator(out)) {
+            Iterator<UserGalleryMetadata> galleries = rows.iterator();
+            json.writeStartArray();
+            if (galleries.hasNext()) {
+                json.writeStartObject();
+                json.writeStringField("userId", query.getUserId().toString());
+                json.writeStringField("email", query.getEmail());
+                json.writeArrayFieldStart("imageData");
+                UserGalleryMetadata last = null;
+                int written = 0;
+                while (written < pageSize && galleries.hasNext()) {
+                    last = galleries.next();
+                    writeImageData(json, last);
+                    written++;
+                }
+                json.writeEndArray();
+                json.writeStringField("nextCursor", galleries.hasNext()
+                        ? ImageDataCursor.after(last).encode()
+                        : null);
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+        }
+    }
+
+    private static void writeImageData(final JsonGenerator json, final UserGalleryMetadata gallery)
+            throws IOException {
+        json.writeStartObject();
+        json.writeStringField("galleryId", gallery.getId().toString());
+        json.writeStringField("fileName", gallery.getFileName());
+        if (gallery.getFileSize() == null) {
+            json.writeNullField("fileSize");
+        } else {
+            json.writeNumberField("fileSize", gallery.getFileSize());
+        }
+        json.writeStringField("contentType", gallery.getContentType());
+        writeNumberOrNull(json, "width", gallery.getWidth());
+        writeNumberOrNull(json, "height", gallery.getHeight());
+        json.writeStringField("createdAt", gallery.getCreatedAt() == null ? null : gallery.getCreatedAt().toString());
+        json.writeEndObject();
+    }
+
+    private static void writeNumberOrNull(final JsonGenerator json, final String field, final Integer value)
+            throws IOException {
+        if (value == null) {
+            json.writeNullField(field);
+        } else {
+            json.writeNumberField(field, value);
+        }
+    }
+
+    /**
+     * Description: This method is to resolve which content to serve for a userGalleryId, only the gallery
+     * row and variant metadata are read, so conditional requests are answered without touching the content.
      * @param imageId
-     * @return byte[]
+     * @param size longest side the client renders, the smallest variant covering it is served;
+     *             null or no such variant serves the original
+     * @return ImageDownload to pass to getImage
      * @throws RecordNotFoundException
      */
     @Override
-    public byte[] getImage(final UUID imageId) throws RecordNotFoundException {
+    @Timed("user.service")
+    public ImageDownload findImage(final UUID imageId, final Integer size) throws RecordNotFoundException {
         UserGallery gallery = userGalleryRepository.findById(imageId).
         orElseThrow(() -> new RecordNotFoundException("No record found with id: " + imageId));
-        return gallery.getImage();
+        ImageDownload download = new ImageDownload(imageId, gallery.getStorageKey(), gallery.getContentType(),
+                gallery.getCreatedAt());
+        if (size != null) {
+            imageVariantService.findVariant(gallery.getStorageKey(), size).ifPresent(variant -> {
+                download.setStorageKey(variant.getStorageKey());
+                download.setContentType(variant.getContentType());
+            });
+        }
+        return download;
     }
 
     /**
-     * Description: This method is to delete record in db based on  userGalleryId.
+     * Description: This method is to download image from the image store.
+     * Hot images are served from the in-memory content cache, others are streamed from the store
+     * when the response is written.
+     * @param download resolved by findImage
+     * @return Resource streaming the image
+     * @throws RecordNotFoundException
+     */
+    @Override
+    @Timed("user.service")
+    public Resource getImage(final ImageDownload download) throws RecordNotFoundException {
+        try {
+            Resource image = imageContentCache.load(download.getStorageKey());
+            imageMetrics.recordDownload(image.contentLength());
+            return image;
+        } catch (IOException e) {
+            log.error("Image content missing for id: {}", download.getImageId(), e);
+            throw new RecordNotFoundException("No image found with id: " + download.getImageId());
+        }
+    }
+
+    /**
+     * Description: This method is to delete record in db based on  userGalleryId,
+     * the stored content is removed once no other record references it.
      * @param imageId
      * @throws RecordNotFoundException
      */
+    @Timed("user.service")
     public void deleteImage(final UUID imageId) throws RecordNotFoundException {
-        try {
-            userGalleryRepository.deleteById(imageId);
-        } catch (Exception e) {
-            throw new RecordNotFoundException("No record found with id: " + imageId);
+        UserGallery gallery = userGalleryRepository.findById(imageId)
+                .orElseThrow(() -> new RecordNotFoundException("No record found with id: " + imageId));
+        userGalleryRepository.delete(gallery);
+        if (imageContentRegistry.release(gallery.getStorageKey())) {
+            imageContentCache.invalidate(gallery.getStorageKey());
+            imageVariantService.deleteVariants(gallery.getStorageKey());
         }
     }
 
+    /**
+     * Description: This method is to delete several images of the loggedIn user with set-based deletes.
+     * Per chunk of ids the rows are locked and their ids and storage keys read with one query, then exactly
+     * the locked ids are deleted with another, so no gallery entity is loaded. The stored content is released
+     * in batches after the commit.
+     * @param userName
+     * @param imageIds userGallery Ids, ids of other users are ignored
+     * @return number of images deleted
+     * @throws RecordNotFoundException
+     */
+    @Override
+    @Transactional
+    @Timed("user.service")
+    public int deleteImages(final String userName, final List<UUID> imageIds) throws RecordNotFoundException {
+        User user = userRepository.findByEmail(userName).orElseThrow(() -> new RecordNotFoundException("User not found"));
+        List<UUID> ids = new ArrayList<>(new LinkedHashSet<>(imageIds));
+        List<String> storageKeys = new ArrayList<>();
+        int deleted = 0;
+        for (int from = 0; from < ids.size(); from += DELETE_CHUNK_SIZE) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + DELETE_CHUNK_SIZE, ids.size()));
+            deleted += deleteLocked(user.getId(),
+                    userGalleryRepository.lockKeysByUserIdAndIdIn(user.getId(), chunk), storageKeys);
+        }
+        publishDeleted(storageKeys);
+        return deleted;
+    }
+
+    /**
+     * Description: This method is to delete the loggedIn user, its gallery rows are locked and deleted by their
+     * ids and the stored content is released in batches after the commit. Rows an upload commits after the lock
+     * are picked up by locking again until none is left. An upload still uncommitted when the user row is deleted
+     * makes that delete fail on the foreign key, the whole deletion is rolled back and nothing is released.
+     * The cached principal is evicted after the commit, by the {@link PrincipalCacheEvictor}.
+     * @param userName
+     * @return number of images deleted
+     * @throws RecordNotFoundException
+     */
+    @Override
+    @Transactional
+    @Timed("user.service")
+    public int deleteAccount(final String userName) throws RecordNotFoundException {
+        User user = userRepository.findByEmail(userName).orElseThrow(() -> new RecordNotFoundException("User not found"));
+        List<String> storageKeys = new ArrayList<>();
+        int deleted = 0;
+        List<UserGalleryKey> locked = userGalleryRepository.lockKeysByUserId(user.getId());
+        while (!locked.isEmpty()) {
+            for (int from = 0; from < locked.size(); from += DELETE_CHUNK_SIZE) {
+                deleted += deleteLocked(user.getId(),
+                        locked.subList(from, Math.min(from + DELETE_CHUNK_SIZE, locked.size())), storageKeys);
+            }
+            locked = userGalleryRepository.lockKeysByUserId(user.getId());
+        }
+        userRepository.deleteUser(user.getId());
+        publishDeleted(storageKeys);
+        eventPublisher.publishEvent(new AccountDeletedEvent(userName));
+        return deleted;
+    }
+
+    /**
+     * The deleted rows and the released keys both come from the locked rows, a row matching the ids but
+     * inserted after the lock is neither deleted nor released.
+     */
+    private int deleteLocked(final UUID userId, final List<UserGalleryKey> locked, final List<String> storageKeys) {
+        if (locked.isEmpty()) {
+            return 0;
+        }
+        List<UUID> ids = new ArrayList<>(locked.size());
+        for (UserGalleryKey row : locked) {
+            ids.add(row.getId());
+            if (row.getStorageKey() != null) {
+                storageKeys.add(row.getStorageKey());
+            }
+        }
+        return userGalleryRepository.deleteByUserIdAndIdIn(userId, ids);
+    }
+
+    /**
+     * The releases are queued in the transaction of the delete, so they are not lost if the application
+     * stops before the cleanup after the commit is done.
+     */
+    private void publishDeleted(final List<String> storageKeys) {
+        if (!storageKeys.isEmpty()) {
+            eventPublisher.publishEvent(new ImagesDeletedEvent(imageContentRegistry.queueRelease(storageKeys)));
+        }
+    }
 }
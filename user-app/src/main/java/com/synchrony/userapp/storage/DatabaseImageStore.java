@@ -0,0 +1,74 @@
+package com.synchrony.userapp.storage;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Keeps images in the {@code image_blob} table, apart from the gallery metadata.<br>
+ * Content is written and read as JDBC streams and never loaded into an entity. Uploads are
+ * staged as a row under a random key and published by re-keying that row to the digest.
+ */
+@Component
+@ConditionalOnProperty(name = "app.image.store", havingValue = "database")
+public class DatabaseImageStore implements ImageStore {
+
+    private static final String CONTENT_QUERY = "select content from image_blob where storage_key = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Override
+    public StoredImage store(final InputStream content) {
+        String stagingKey = UUID.randomUUID().toString().replace("-", "");
+        HashingInputStream hashing = new HashingInputStream(content);
+        jdbcTemplate.update("insert into image_blob (storage_key, content) values (?, ?)", ps -> {
+            ps.setString(1, stagingKey);
+            ps.setBinaryStream(2, hashing);
+        });
+        return new StoredImage(stagingKey, hashing.getCount(), hashing.getSha256());
+    }
+
+    @Override
+    public void publish(final StoredImage staged) {
+        Integer stored = jdbcTemplate.queryForObject(
+                "select count(*) from image_blob where storage_key = ?", Integer.class, staged.getStorageKey());
+        if (stored != null && stored > 0) {
+            discard(staged);
+            return;
+        }
+        jdbcTemplate.update("update image_blob set storage_key = ? where storage_key = ?",
+                staged.getStorageKey(), staged.getStagingKey());
+    }
+
+    @Override
+    public void discard(final StoredImage staged) {
+        delete(staged.getStagingKey());
+    }
+
+    @Override
+    public Resource load(final String storageKey) throws FileNotFoundException {
+        List<Long> length = jdbcTemplate.queryForList(
+                "select octet_length(content) from image_blob where storage_key = ?", Long.class, storageKey);
+        if (length.isEmpty() || length.get(0) == null) {
+            throw new FileNotFoundException("No image stored for key " + storageKey);
+        }
+        return new JdbcBlobResource(dataSource, CONTENT_QUERY, storageKey, length.get(0));
+    }
+
+    @Override
+    public void delete(final String storageKey) {
+        jdbcTemplate.update("delete from image_blob where storage_key = ?", storageKey);
+    }
+}
@@ -0,0 +1,23 @@
+package com.synchrony.userapp.storage;
+
+import com.synchrony.userapp.model.DedupReport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint {@code /actuator/dedup} reporting the storage saved by deduplication.
+ */
+@Component
+@Endpoint(id = "dedup")
+public class DedupReportEndpoint {
+
+    @Autowired
+    private ImageContentRegistry imageContentRegistry;
+
+    @ReadOperation
+    public DedupReport report() {
+        return imageContentRegistry.report();
+    }
+}
@@ -0,0 +1,121 @@
+package com.synchrony.userapp.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps images as plain files below {@code app.image.store-path}.<br>
+ * Files are sharded in two directory levels taken from the key, e.g. {@code 3f/2a/3f2a...},
+ * so no single directory grows past a few thousand entries. Uploads are staged in the
+ * {@code staging} directory of the same tree, so publishing them is an atomic rename.
+ */
+@Component
+@ConditionalOnProperty(name = "app.image.store", havingValue = "filesystem", matchIfMissing = true)
+@Slf4j
+public class FileSystemImageStore implements ImageStore {
+
+    private static final Pattern STORAGE_KEY = Pattern.compile("[0-9a-f]{32,64}");
+
+    private static final int SHARD_LENGTH = 2;
+
+    private static final String STAGING_DIRECTORY = "staging";
+
+    @Value("${app.image.store-path}")
+    private String storePath;
+
+    /**
+     * Description: Write the content to a staging file, the digest is only known once it is complete.
+     * @param content stream of the image
+     * @return staged image
+     * @throws IOException
+     */
+    @Override
+    public StoredImage store(final InputStream content) throws IOException {
+        String stagingKey = UUID.randomUUID().toString().replace("-", "");
+        Path staged = resolveStaged(stagingKey);
+        Files.createDirectories(staged.getParent());
+        HashingInputStream hashing = new HashingInputStream(content);
+        try {
+            Files.copy(hashing, staged);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(staged);
+            throw e;
+        }
+        return new StoredImage(stagingKey, hashing.getCount(), hashing.getSha256());
+    }
+
+    /**
+     * Description: Move the staging file in place, so readers never see a partially written image.
+     * @param staged
+     * @throws IOException
+     */
+    @Override
+    public void publish(final StoredImage staged) throws IOException {
+        Path source = resolveStaged(staged.getStagingKey());
+        Path target = resolve(staged.getStorageKey());
+        if (Files.isRegularFile(target)) {
+            Files.deleteIfExists(source);
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void discard(final StoredImage staged) throws IOException {
+        Files.deleteIfExists(resolveStaged(staged.getStagingKey()));
+    }
+
+    /**
+     * Description: Resolve the image file, reads go through a FileChannel backed stream.
+     * @param storageKey
+     * @return Resource of the image file
+     * @throws IOException if the file does not exist
+     */
+    @Override
+    public Resource load(final String storageKey) throws IOException {
+        Path image = resolve(storageKey);
+        if (!Files.isRegularFile(image)) {
+            throw new FileNotFoundException("No image stored for key " + storageKey);
+        }
+        return new FileSystemResource(image);
+    }
+
+    @Override
+    public void delete(final String storageKey) throws IOException {
+        if (!Files.deleteIfExists(resolve(storageKey))) {
+            log.warn("No image stored for key {}", storageKey);
+        }
+    }
+
+    private Path resolveStaged(final String stagingKey) {
+        if (stagingKey == null || !STORAGE_KEY.matcher(stagingKey).matches()) {
+            throw new IllegalArgumentException("Invalid staging key " + stagingKey);
+        }
+        return Paths.get(storePath, STAGING_DIRECTORY, stagingKey);
+    }
+
+    private Path resolve(final String storageKey) {
+        if (storageKey == null || !STORAGE_KEY.matcher(storageKey).matches()) {
+            throw new IllegalArgumentException("Invalid storage key " + storageKey);
+        }
+        return Paths.get(storePath,
+                storageKey.substring(0, SHARD_LENGTH),
+                storageKey.substring(SHARD_LENGTH, 2 * SHARD_LENGTH),
+                storageKey);
+    }
+}
@@ -0,0 +1,192 @@
+package com.synchrony.userapp.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Keeps the content of frequently downloaded images in direct buffers, in front of the {@link ImageStore}.<br>
+ * A content is only buffered when it is requested again: the first miss streams from the store and records the
+ * key in a key-only cache bounded by {@code app.image.cache.admission-keys}, so one-off downloads never allocate
+ * a buffer nor read the content twice. The content cache is weighted by content size and bounded by
+ * {@code app.image.cache.max-size}, Caffeine's W-TinyLFU policy keeps hot images such as profile pictures.
+ * Contents larger than {@code app.image.cache.max-entry-size}, or of unknown length, are always streamed from the store.
+ * Entries are keyed by storage key, which is the content digest, so they never go stale and only
+ * have to be dropped when the content is deleted. Hit ratio is published as {@code cache.gets{cache=images}}.
+ * Direct memory is released when evicted buffers are collected, {@code -XX:MaxDirectMemorySize}
+ * has to leave room above the budget.
+ */
+@Component
+public class ImageContentCache {
+
+    public static final String IMAGE_CACHE = "images";
+
+    private final ImageStore imageStore;
+
+    private final long maxEntrySize;
+
+    private final Cache<String, ByteBuffer> cache;
+
+    private final Cache<String, Boolean> requested;
+
+    public ImageContentCache(final ImageStore imageStore, final MeterRegistry registry,
+            @Value("${app.image.cache.max-size}") final DataSize maxSize,
+            @Value("${app.image.cache.max-entry-size}") final DataSize maxEntrySize,
+            @Value("${app.image.cache.admission-keys}") final long admissionKeys) {
+        this.imageStore = imageStore;
+        // a cached content is a single buffer, which cannot hold more than Integer.MAX_VALUE bytes
+        this.maxEntrySize = Math.min(Math.min(maxEntrySize.toBytes(), maxSize.toBytes()), Integer.MAX_VALUE);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .<String, ByteBuffer>weigher((key, content) -> content.capacity())
+                .recordStats()
+                .build();
+        this.requested = Caffeine.newBuilder()
+                .maximumSize(admissionKeys)
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, IMAGE_CACHE);
+        Gauge.builder("image.cache.size", cache, c -> c.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L))
+                .description("Bytes of image content held by the cache")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Description: Resolve the content, served from memory when cached. A miss streams from the store unless
+     * the key was requested before, then the content is read into a buffer and cached.
+     * @param storageKey of published content
+     * @return Resource over the cached buffer or streaming from the store
+     * @throws IOException if no content is stored for the key
+     */
+    public Resource load(final String storageKey) throws IOException {
+        ByteBuffer cached = cache.getIfPresent(storageKey);
+        if (cached != null) {
+            return new ByteBufferResource(storageKey, cached);
+        }
+        Resource stored = imageStore.load(storageKey);
+        long length = stored.contentLength();
+        if (length < 0 || length > maxEntrySize) {
+            return stored;
+        }
+        if (requested.asMap().remove(storageKey) == null) {
+            requested.put(storageKey, Boolean.TRUE);
+            return stored;
+        }
+        try {
+            return new ByteBufferResource(storageKey, cache.get(storageKey, key -> read(stored, (int) length)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Description: Drop deleted content.
+     * @param storageKey of the deleted content
+     */
+    public void invalidate(final String storageKey) {
+        cache.invalidate(storageKey);
+        requested.invalidate(storageKey);
+    }
+
+    private static ByteBuffer read(final Resource stored, final int length) {
+        ByteBuffer content = ByteBuffer.allocateDirect(length);
+        try (ReadableByteChannel channel = Channels.newChannel(stored.getInputStream())) {
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                // fill up to the stored length
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        content.flip();
+        return content.asReadOnlyBuffer();
+    }
+
+    /**
+     * Resource over a cached buffer, every stream reads its own view so downloads never interfere.
+     */
+    private static final class ByteBufferResource extends AbstractResource {
+
+        private final String storageKey;
+
+        private final ByteBuffer content;
+
+        private ByteBufferResource(final String storageKey, final ByteBuffer content) {
+            this.storageKey = storageKey;
+            this.content = content;
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return content.remaining();
+        }
+
+        @Override
+        public String getDescription() {
+            return "Cached image [" + storageKey + "]";
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteBufferInputStream(content.duplicate());
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(final ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(final long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
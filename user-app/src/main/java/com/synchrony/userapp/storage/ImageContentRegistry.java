@@ -0,0 +1,283 @@
+package com.synchrony.userapp.storage;
+
+import com.synchrony.userapp.metrics.ImageMetrics;
+import com.synchrony.userapp.model.DedupReport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Reference counts of the content-addressed images in the {@link ImageStore}.<br>
+ * Publishing new content and deleting content whose last reference is gone both happen while
+ * the {@code image_content} row is locked by the reference count update, so an upload can
+ * never reuse content which a concurrent delete is about to remove.<br>
+ * Bulk deletes queue their releases in the {@code image_release} table within their own transaction,
+ * the counts are dropped after the commit and the content is removed only once that is committed too.
+ */
+@Component
+@Slf4j
+public class ImageContentRegistry {
+
+    private static final int REFERENCE_ATTEMPTS = 3;
+
+    private static final RowMapper<Object[]> QUEUED_REFERENCE =
+            (rs, rowNum) -> new Object[] {rs.getLong(1), rs.getString(2)};
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private ImageMetrics imageMetrics;
+
+    /**
+     * Description: Count one more reference to the staged content, publishing it when it is new
+     * and dropping the staged copy otherwise.
+     * @param staged returned by {@link ImageStore#store(java.io.InputStream)}
+     * @return true if the content was not stored before
+     * @throws IOException if the content cannot be published, or concurrent uploads of the same content
+     * kept winning the insert of its row
+     */
+    public boolean reference(final StoredImage staged) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Boolean created = transactionTemplate.execute(status -> referenceOnce(staged));
+                imageMetrics.recordContent(Boolean.TRUE.equals(created), staged.getSize());
+                return Boolean.TRUE.equals(created);
+            } catch (DuplicateKeyException e) {
+                // a concurrent upload inserted the same content first, the next attempt counts on its row
+                if (attempt == REFERENCE_ATTEMPTS) {
+                    imageStore.discard(staged);
+                    throw new IOException("Could not reference content " + staged.getSha256()
+                            + " after " + REFERENCE_ATTEMPTS + " attempts", e);
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private boolean referenceOnce(final StoredImage staged) {
+        try {
+            int updated = jdbcTemplate.update(
+                    "update image_content set ref_count = ref_count + 1 where content_hash = ?", staged.getSha256());
+            if (updated > 0) {
+                imageStore.discard(staged);
+                return false;
+            }
+            jdbcTemplate.update("insert into image_content (content_hash, content_size, ref_count, created_at)"
+                    + " values (?, ?, 1, ?)", staged.getSha256(), staged.getSize(), Timestamp.from(Instant.now()));
+            imageStore.publish(staged);
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Description: Drop one reference to the content, it is deleted from the store with the last one.
+     * Keys without a registry row predate deduplication and are never shared, they are deleted right away.
+     * @param storageKey of the gallery row going away
+     * @return true if this was the last reference and the content is gone
+     */
+    public boolean release(final String storageKey) {
+        try {
+            return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                int updated = jdbcTemplate.update("update image_content set ref_count = ref_count - 1"
+                        + " where content_hash = ? and ref_count > 0", storageKey);
+                int deleted = jdbcTemplate.update(
+                        "delete from image_content where content_hash = ? and ref_count = 0", storageKey);
+                if (updated == 0 || deleted > 0) {
+                    deleteContent(storageKey);
+                    return true;
+                }
+                return false;
+            }));
+        } catch (UncheckedIOException e) {
+            log.error("Could not remove stored image {}", storageKey, e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * Description: Queue the references dropped by deleted gallery rows, joining the transaction of the delete.
+     * The queue is drained by {@link #releaseQueued(String, int)} once that transaction commits, or by
+     * {@link #releaseQueuedBefore(Instant, int)} when the application stops before it could.
+     * @param storageKeys of the deleted rows, once per row
+     * @return id of the queued release
+     */
+    public String queueRelease(final Collection<String> storageKeys) {
+        String releaseId = UUID.randomUUID().toString();
+        Timestamp queuedAt = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate("insert into image_release (release_id, storage_key, created_at) values (?, ?, ?)",
+                storageKeys.stream().map(storageKey -> new Object[] {releaseId, storageKey, queuedAt})
+                        .collect(Collectors.toList()));
+        return releaseId;
+    }
+
+    /**
+     * Description: Drop up to limit queued references of one release in one transaction.
+     * @param releaseId returned by {@link #queueRelease(Collection)}
+     * @param limit queued references at most
+     * @return ReleasedReferences, nothing released once the release is drained
+     */
+    public ReleasedReferences releaseQueued(final String releaseId, final int limit) {
+        return transactionTemplate.execute(status -> releaseClaimed(jdbcTemplate.query(
+                "select id, storage_key from image_release where release_id = ? order by id fetch first ? rows only",
+                QUEUED_REFERENCE, releaseId, limit)));
+    }
+
+    /**
+     * Description: Drop up to limit references queued before the given instant, whatever their release.
+     * @param queuedBefore releases queued later are left to their own drain
+     * @param limit queued references at most
+     * @return ReleasedReferences, nothing released once no such reference is queued
+     */
+    public ReleasedReferences releaseQueuedBefore(final Instant queuedBefore, final int limit) {
+        return transactionTemplate.execute(status -> releaseClaimed(jdbcTemplate.query(
+                "select id, storage_key from image_release where created_at < ? order by id fetch first ? rows only",
+                QUEUED_REFERENCE, Timestamp.from(queuedBefore), limit)));
+    }
+
+    /**
+     * Queued rows are claimed by deleting them, a row already claimed by a concurrent drain deletes nothing
+     * and its reference is not dropped twice.
+     */
+    private ReleasedReferences releaseClaimed(final List<Object[]> queued) {
+        int[] claimed = jdbcTemplate.batchUpdate("delete from image_release where id = ?",
+                queued.stream().map(row -> new Object[] {row[0]}).collect(Collectors.toList()));
+        List<String> released = new ArrayList<>(queued.size());
+        for (int i = 0; i < queued.size(); i++) {
+            if (claimed[i] > 0) {
+                released.add((String) queued.get(i)[1]);
+            }
+        }
+        return new ReleasedReferences(released.size(), releaseAll(released));
+    }
+
+    /**
+     * Description: Drop many references in one transaction, the counts are decremented with one JDBC batch.
+     * Nothing is removed from the store here, rows left without references stay behind with a count of 0
+     * until {@link #removeUnreferenced(Collection)} removes them with their content after the commit.
+     * An upload of the same content in between counts on the row again and keeps the content.
+     * Keys without a registry row predate deduplication and are never shared, they get such a row.
+     * @param released storage keys, once per reference dropped, keys shared by several rows repeat
+     * @return storage keys left without references
+     */
+    public List<String> releaseAll(final Collection<String> released) {
+        if (released.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<String, Integer> references = new LinkedHashMap<>();
+        released.forEach(storageKey -> references.merge(storageKey, 1, Integer::sum));
+        List<String> storageKeys = new ArrayList<>(references.keySet());
+        List<Object[]> decrements = new ArrayList<>(storageKeys.size());
+        for (String storageKey : storageKeys) {
+            decrements.add(new Object[] {references.get(storageKey), storageKey});
+        }
+        return transactionTemplate.execute(status -> {
+            int[] updated = jdbcTemplate.batchUpdate("update image_content"
+                    + " set ref_count = greatest(ref_count - ?, 0) where content_hash = ?", decrements);
+            Timestamp now = Timestamp.from(Instant.now());
+            List<Object[]> legacy = new ArrayList<>();
+            for (int i = 0; i < storageKeys.size(); i++) {
+                if (updated[i] == 0) {
+                    legacy.add(new Object[] {storageKeys.get(i), now});
+                }
+            }
+            jdbcTemplate.batchUpdate("insert into image_content (content_hash, content_size, ref_count, created_at)"
+                    + " values (?, 0, 0, ?)", legacy);
+            return jdbcTemplate.queryForList("select content_hash from image_content where ref_count = 0"
+                    + " and content_hash in (" + String.join(", ", Collections.nCopies(storageKeys.size(), "?"))
+                    + ")", String.class, storageKeys.toArray());
+        });
+    }
+
+    /**
+     * Description: Remove the rows left without references together with their content, one transaction
+     * per key and outside of any caller transaction. A key whose content cannot be removed is logged and
+     * keeps its row for {@link #findUnreferenced(String, int)}, the other keys are still removed.
+     * @param storageKeys returned by {@link #releaseAll(Collection)}
+     * @return storage keys whose content is gone
+     */
+    public List<String> removeUnreferenced(final Collection<String> storageKeys) {
+        List<String> removed = new ArrayList<>(storageKeys.size());
+        for (String storageKey : storageKeys) {
+            try {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> removeOnce(storageKey)))) {
+                    removed.add(storageKey);
+                }
+            } catch (RuntimeException e) {
+                log.error("Could not remove stored image {}", storageKey, e);
+            }
+        }
+        return removed;
+    }
+
+    private boolean removeOnce(final String storageKey) {
+        if (jdbcTemplate.update("delete from image_content where content_hash = ? and ref_count = 0",
+                storageKey) == 0) {
+            // referenced again by an upload since it was released
+            return false;
+        }
+        deleteContent(storageKey);
+        return true;
+    }
+
+    /**
+     * Description: Page through the rows left without references, in key order.
+     * @param after last key of the previous page, empty for the first page
+     * @param limit keys at most
+     * @return storage keys whose content still has to be removed
+     */
+    public List<String> findUnreferenced(final String after, final int limit) {
+        return jdbcTemplate.queryForList("select content_hash from image_content where ref_count = 0"
+                + " and content_hash > ? order by content_hash fetch first ? rows only", String.class, after, limit);
+    }
+
+    /**
+     * Description: Summarize how much storage the shared contents save.
+     * @return DedupReport
+     */
+    public DedupReport report() {
+        return jdbcTemplate.queryForObject("select coalesce(sum(ref_count), 0), count(*),"
+                + " coalesce(sum(content_size * ref_count), 0), coalesce(sum(content_size), 0) from image_content"
+                + " where ref_count > 0",
+                (rs, rowNum) -> {
+                    long logicalBytes = rs.getLong(3);
+                    long storedBytes = rs.getLong(4);
+                    double ratio = storedBytes == 0 ? 1.0 : (double) logicalBytes / storedBytes;
+                    return new DedupReport(rs.getLong(1), rs.getLong(2), logicalBytes, storedBytes, ratio);
+                });
+    }
+
+    private void deleteContent(final String storageKey) {
+        try {
+            imageStore.delete(storageKey);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
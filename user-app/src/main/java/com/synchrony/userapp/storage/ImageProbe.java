@@ -0,0 +1,102 @@
+package com.synchrony.userapp.storage;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * Identifies image content from its leading bytes and reads its dimensions from the header alone.
+ */
+public final class ImageProbe {
+
+    /**
+     * Longest signature checked, the number of bytes which has to be readable again after sniffing.
+     */
+    public static final int SIGNATURE_LENGTH = 8;
+
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private static final byte[] GIF87A = {'G', 'I', 'F', '8', '7', 'a'};
+
+    private static final byte[] GIF89A = {'G', 'I', 'F', '8', '9', 'a'};
+
+    private ImageProbe() {
+    }
+
+    /**
+     * Description: Detect the image type from the magic bytes, the stream is reset to where it was.
+     * @param content stream supporting mark, e.g. a BufferedInputStream
+     * @return image/jpeg, image/png or image/gif, null for anything else
+     * @throws IOException
+     */
+    public static String sniffContentType(final InputStream content) throws IOException {
+        byte[] header = new byte[SIGNATURE_LENGTH];
+        content.mark(SIGNATURE_LENGTH);
+        int length = 0;
+        try {
+            int n;
+            while (length < header.length && (n = content.read(header, length, header.length - length)) > 0) {
+                length += n;
+            }
+        } finally {
+            content.reset();
+        }
+        if (startsWith(header, length, JPEG)) {
+            return MediaType.IMAGE_JPEG_VALUE;
+        }
+        if (startsWith(header, length, PNG)) {
+            return MediaType.IMAGE_PNG_VALUE;
+        }
+        if (startsWith(header, length, GIF87A) || startsWith(header, length, GIF89A)) {
+            return MediaType.IMAGE_GIF_VALUE;
+        }
+        return null;
+    }
+
+    /**
+     * Description: Read width and height of the first frame without decoding any pixels.
+     * @param content stored image
+     * @param contentType as returned by sniffContentType
+     * @return dimensions, null when the header cannot be read
+     */
+    public static Dimension readDimensions(final Resource content, final String contentType) {
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByMIMEType(contentType);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        try (InputStream in = content.getInputStream();
+             ImageInputStream image = ImageIO.createImageInputStream(in)) {
+            if (image == null) {
+                return null;
+            }
+            reader.setInput(image, true, true);
+            return new Dimension(reader.getWidth(0), reader.getHeight(0));
+        } catch (IOException e) {
+            return null;
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static boolean startsWith(final byte[] header, final int length, final byte[] signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (header[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
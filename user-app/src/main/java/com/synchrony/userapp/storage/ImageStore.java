@@ -0,0 +1,54 @@
+package com.synchrony.userapp.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Storage backend for the binary content of user gallery images.<br>
+ * Content is addressed by its SHA-256, identical images are kept once. An upload is first
+ * staged with {@link #store(InputStream)}, which yields the digest, and then either
+ * published under its digest or discarded when that content is already stored.
+ * The backend is selected with the {@code app.image.store} property.
+ */
+public interface ImageStore {
+
+    /**
+     * Description: Stage the image content, copying it in fixed size chunks.
+     * @param content stream of the image, read until exhausted but not closed
+     * @return staged image with the size and digest of the content
+     * @throws IOException if the content cannot be written
+     */
+    StoredImage store(InputStream content) throws IOException;
+
+    /**
+     * Description: Make staged content loadable under its storage key, the digest.
+     * Publishing content which is already stored just drops the staged copy.
+     * @param staged returned by store
+     * @throws IOException if the content cannot be moved in place
+     */
+    void publish(StoredImage staged) throws IOException;
+
+    /**
+     * Description: Drop staged content which is not going to be published.
+     * @param staged returned by store
+     * @throws IOException if the staged content cannot be removed
+     */
+    void discard(StoredImage staged) throws IOException;
+
+    /**
+     * Description: Resolve the stored content without reading it.
+     * @param storageKey of published content
+     * @return Resource streaming the stored content
+     * @throws IOException if no content is stored for the key
+     */
+    Resource load(String storageKey) throws IOException;
+
+    /**
+     * Description: Remove the stored content, unknown keys are ignored.
+     * @param storageKey of published content
+     * @throws IOException if the content cannot be removed
+     */
+    void delete(String storageKey) throws IOException;
+}
@@ -0,0 +1,127 @@
+package com.synchrony.userapp.storage;
+
+import com.synchrony.userapp.entity.TimeOrderedUuidGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.BadSqlGrammarException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import java.awt.Dimension;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves images still kept in the legacy {@code user_gallery.image} LOB column into the
+ * configured {@link ImageStore}.<br>
+ * Runs at startup when {@code app.image.migration.enabled=true}, a batch of rows is copied
+ * and then their storage keys are written back in one batched update, together with the content type
+ * sniffed from the content and the dimensions read from its header, as for uploads. Rows already carrying
+ * a storage key are skipped, so the migration can be stopped and restarted at any time.
+ */
+@Component
+@ConditionalOnProperty(name = "app.image.migration.enabled", havingValue = "true")
+@Slf4j
+public class ImageStoreMigration implements ApplicationRunner {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Autowired
+    private ImageContentRegistry imageContentRegistry;
+
+    @Value("${app.image.migration.batch-size}")
+    private int batchSize;
+
+    @Override
+    public void run(final ApplicationArguments args) {
+        List<byte[]> pending;
+        try {
+            pending = nextBatch();
+        } catch (BadSqlGrammarException e) {
+            log.info("No legacy image column found, nothing to migrate");
+            return;
+        }
+        long migrated = 0;
+        while (!pending.isEmpty()) {
+            migrated += migrateBatch(pending);
+            log.info("Migrated {} images to {}", migrated, imageStore.getClass().getSimpleName());
+            pending = pending.size() < batchSize ? new ArrayList<>() : nextBatch();
+        }
+        log.info("Image migration finished, {} images moved", migrated);
+    }
+
+    private List<byte[]> nextBatch() {
+        return jdbcTemplate.queryForList("select id from user_gallery where storage_key is null"
+                + " and image is not null fetch first ? rows only", byte[].class, batchSize);
+    }
+
+    /**
+     * Description: Copy each image of the batch into the store, then record all keys in one round trip.
+     * Identical legacy images end up sharing one stored copy.
+     * @param galleryIds ids of the rows to migrate
+     * @return number of rows migrated
+     */
+    private int migrateBatch(final List<byte[]> galleryIds) {
+        List<Object[]> storedImages = new ArrayList<>(galleryIds.size());
+        for (byte[] galleryId : galleryIds) {
+            MigratedImage migrated = copyImage(galleryId);
+            StoredImage stored = migrated.stored;
+            Dimension dimensions;
+            try {
+                imageContentRegistry.reference(stored);
+                dimensions = migrated.contentType == null ? null
+                        : ImageProbe.readDimensions(imageStore.load(stored.getStorageKey()), migrated.contentType);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot migrate image "
+                        + TimeOrderedUuidGenerator.fromBytes(galleryId), e);
+            }
+            storedImages.add(new Object[] {stored.getStorageKey(), stored.getSize(), stored.getSha256(),
+                    migrated.contentType, dimensions == null ? null : dimensions.width,
+                    dimensions == null ? null : dimensions.height, galleryId});
+        }
+        // content that is no JPEG, PNG or GIF keeps the type and dimensions the row already had
+        jdbcTemplate.batchUpdate("update user_gallery set storage_key = ?, file_size = ?, content_hash = ?,"
+                + " content_type = coalesce(?, content_type), width = coalesce(?, width), height = coalesce(?, height),"
+                + " image = null where id = ? and storage_key is null", storedImages);
+        return storedImages.size();
+    }
+
+    private MigratedImage copyImage(final byte[] galleryId) {
+        ResultSetExtractor<MigratedImage> copy = rs -> {
+            rs.next();
+            try (InputStream image = new BufferedInputStream(rs.getBinaryStream(1))) {
+                String contentType = ImageProbe.sniffContentType(image);
+                return new MigratedImage(imageStore.store(image), contentType);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot migrate image "
+                        + TimeOrderedUuidGenerator.fromBytes(galleryId), e);
+            }
+        };
+        return jdbcTemplate.query("select image from user_gallery where id = ?", copy, galleryId);
+    }
+
+    private static final class MigratedImage {
+
+        private final StoredImage stored;
+
+        private final String contentType;
+
+        private MigratedImage(final StoredImage stored, final String contentType) {
+            this.stored = stored;
+            this.contentType = contentType;
+        }
+    }
+}
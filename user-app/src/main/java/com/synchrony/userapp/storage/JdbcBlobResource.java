@@ -0,0 +1,131 @@
+package com.synchrony.userapp.storage;
+
+import org.springframework.core.io.AbstractResource;
+
+import javax.sql.DataSource;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Resource which streams a single BLOB column straight from the database.<br>
+ * Every call to {@link #getInputStream()} opens its own connection and the stream
+ * releases it on close, so the binary is never materialized on the heap and
+ * range requests can re-open the stream as often as needed.<br>
+ * The connection is held for as long as the client takes to download, which is why
+ * spring.datasource.hikari.leak-detection-threshold is set to minutes rather than seconds.
+ */
+public class JdbcBlobResource extends AbstractResource {
+
+    private final DataSource dataSource;
+
+    private final String sql;
+
+    private final Object key;
+
+    private final long contentLength;
+
+    /**
+     * @param dataSource    to borrow a connection from for every stream opened
+     * @param sql           select returning the blob as its first column, bound with the key
+     * @param key           value bound to the single query parameter
+     * @param contentLength size of the blob in bytes
+     */
+    public JdbcBlobResource(final DataSource dataSource, final String sql, final Object key,
+            final long contentLength) {
+        this.dataSource = dataSource;
+        this.sql = sql;
+        this.key = key;
+        this.contentLength = contentLength;
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public String getDescription() {
+        return "JDBC blob [" + key + "]";
+    }
+
+    /**
+     * Description: Open a stream over the blob, the connection is held until the stream is closed.
+     * @return InputStream over the blob content
+     * @throws IOException if the row is gone or the database cannot be read
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        try {
+            connection = dataSource.getConnection();
+            statement = connection.prepareStatement(sql);
+            statement.setObject(1, key);
+            resultSet = statement.executeQuery();
+            if (!resultSet.next()) {
+                throw new IOException("No blob found for " + getDescription());
+            }
+            InputStream blob = resultSet.getBinaryStream(1);
+            if (blob == null) {
+                throw new IOException("Blob is empty for " + getDescription());
+            }
+            return new JdbcBlobInputStream(blob, connection, statement, resultSet);
+        } catch (SQLException | IOException e) {
+            closeQuietly(resultSet, statement, connection);
+            throw e instanceof IOException ? (IOException) e : new IOException("Cannot read " + getDescription(), e);
+        }
+    }
+
+    private static void closeQuietly(final AutoCloseable... closeables) {
+        for (AutoCloseable closeable : closeables) {
+            if (closeable == null) {
+                continue;
+            }
+            try {
+                closeable.close();
+            } catch (Exception ignored) {
+                // nothing left to do for a resource we are discarding
+            }
+        }
+    }
+
+    /**
+     * Stream which hands the JDBC resources back once the blob has been consumed.
+     */
+    private static final class JdbcBlobInputStream extends FilterInputStream {
+
+        private final Connection connection;
+
+        private final PreparedStatement statement;
+
+        private final ResultSet resultSet;
+
+        private JdbcBlobInputStream(final InputStream in, final Connection connection,
+                final PreparedStatement statement, final ResultSet resultSet) {
+            super(in);
+            this.connection = connection;
+            this.statement = statement;
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                closeQuietly(resultSet, statement, connection);
+            }
+        }
+    }
+}
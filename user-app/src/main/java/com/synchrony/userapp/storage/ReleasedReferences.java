@@ -0,0 +1,25 @@
+package com.synchrony.userapp.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Outcome of draining queued releases with {@link ImageContentRegistry#releaseQueued(String, int)}.
+ */
+@Data
+@AllArgsConstructor
+public class ReleasedReferences {
+
+    /**
+     * Queued references dropped, none once the queue is drained.
+     */
+    private int released;
+
+    /**
+     * Storage keys left without references, their content is removed by
+     * {@link ImageContentRegistry#removeUnreferenced(java.util.Collection)}.
+     */
+    private List<String> unreferenced;
+}
@@ -0,0 +1,32 @@
+package com.synchrony.userapp.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of {@link ImageStore#store(java.io.InputStream)}, size and digest are taken while streaming.
+ */
+@Data
+@AllArgsConstructor
+public class StoredImage {
+
+    /**
+     * Key of the staged copy, only meaningful to the store which produced it.
+     */
+    private String stagingKey;
+
+    private long size;
+
+    /**
+     * Hex encoded SHA-256 of the content.
+     */
+    private String sha256;
+
+    /**
+     * Description: Key the content is loaded with once published.
+     * @return the content digest
+     */
+    public String getStorageKey() {
+        return sha256;
+    }
+}
@@ -0,0 +1,144 @@
+package db.migration;
+
+import com.synchrony.userapp.entity.TimeOrderedUuidGenerator;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Converts the VARCHAR(255) uuid keys of users, user_gallery and image_variant to BINARY(16).<br>
+ * Written in Java rather than SQL because databases baselined from ddl-auto carry generated constraint
+ * names, so the primary and foreign keys to drop are looked up in the db metadata. Existing ids keep
+ * their value, new rows get time ordered ids from {@link TimeOrderedUuidGenerator}.
+ * The binary copies are filled while the old indexes still serve the lookups, then the columns are swapped.
+ */
+public class V3__binary_time_ordered_ids extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final String[][] ID_COLUMNS = {
+            {"users", "id"}, {"user_gallery", "id"}, {"user_gallery", "user_id"}, {"image_variant", "id"}};
+
+    private static final String[][] PRIMARY_KEYS = {
+            {"users", "pk_users"}, {"user_gallery", "pk_user_gallery"}, {"image_variant", "pk_image_variant"}};
+
+    @Override
+    public void migrate(final Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            for (String[] idColumn : ID_COLUMNS) {
+                statement.execute("alter table " + idColumn[0] + " add column " + idColumn[1] + "_bin binary(16)");
+                fillBinaryColumn(connection, idColumn[0], idColumn[1]);
+            }
+            for (String foreignKey : foreignKeysTo(connection, "users")) {
+                statement.execute(foreignKey);
+            }
+            for (String[] primaryKey : PRIMARY_KEYS) {
+                statement.execute("alter table " + primaryKey[0] + " drop primary key");
+            }
+            for (String index : indexesOn(connection, "user_gallery", "id", "user_id")) {
+                statement.execute("drop index if exists " + index);
+            }
+            for (String[] idColumn : ID_COLUMNS) {
+                statement.execute("alter table " + idColumn[0] + " drop column " + idColumn[1]);
+                statement.execute("alter table " + idColumn[0] + " alter column " + idColumn[1] + "_bin rename to "
+                        + idColumn[1]);
+            }
+            for (String[] primaryKey : PRIMARY_KEYS) {
+                statement.execute("alter table " + primaryKey[0] + " alter column id set not null");
+                statement.execute("alter table " + primaryKey[0] + " add constraint " + primaryKey[1]
+                        + " primary key (id)");
+            }
+            statement.execute("alter table user_gallery add constraint fk_user_gallery_user"
+                    + " foreign key (user_id) references users (id)");
+            statement.execute("create index idx_user_gallery_listing on user_gallery (user_id, created_at, id)");
+        }
+    }
+
+    /**
+     * Description: Write the 16 byte form of every distinct value of the column into its binary copy.
+     * Values are read in batches seeking past the last one on the index of the column, so only one batch
+     * is held in memory and no cursor stays open while the batch is written.
+     */
+    private static void fillBinaryColumn(final Connection connection, final String table, final String column)
+            throws SQLException {
+        try (PreparedStatement query = connection.prepareStatement("select distinct " + column + " from " + table
+                + " where " + column + " > ? order by " + column);
+             PreparedStatement update = connection.prepareStatement("update " + table + " set " + column
+                     + "_bin = ? where " + column + " = ?")) {
+            query.setMaxRows(BATCH_SIZE);
+            String last = "";
+            while (last != null) {
+                query.setString(1, last);
+                last = null;
+                try (ResultSet rs = query.executeQuery()) {
+                    while (rs.next()) {
+                        last = rs.getString(1);
+                        update.setBytes(1, TimeOrderedUuidGenerator.toBytes(UUID.fromString(last)));
+                        update.setString(2, last);
+                        update.addBatch();
+                    }
+                }
+                if (last != null) {
+                    update.executeBatch();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return statements dropping every foreign key referencing the table, whatever its name
+     */
+    private static List<String> foreignKeysTo(final Connection connection, final String table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        List<String> drops = new ArrayList<>();
+        try (ResultSet rs = metaData.getExportedKeys(connection.getCatalog(), connection.getSchema(),
+                identifier(metaData, table))) {
+            while (rs.next()) {
+                drops.add("alter table " + rs.getString("FKTABLE_NAME") + " drop constraint " + rs.getString("FK_NAME"));
+            }
+        }
+        return drops;
+    }
+
+    /**
+     * @return names of the indexes left on the table covering any of the columns
+     */
+    private static Set<String> indexesOn(final Connection connection, final String table, final String... columns)
+            throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        Set<String> indexes = new LinkedHashSet<>();
+        try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), connection.getSchema(),
+                identifier(metaData, table), false, false)) {
+            while (rs.next()) {
+                String column = rs.getString("COLUMN_NAME");
+                String index = rs.getString("INDEX_NAME");
+                for (String candidate : columns) {
+                    if (index != null && candidate.equalsIgnoreCase(column)) {
+                        indexes.add(index);
+                    }
+                }
+            }
+        }
+        return indexes;
+    }
+
+    private static String identifier(final DatabaseMetaData metaData, final String name) throws SQLException {
+        if (metaData.storesUpperCaseIdentifiers()) {
+            return name.toUpperCase(Locale.ROOT);
+        }
+        return metaData.storesLowerCaseIdentifiers() ? name.toLowerCase(Locale.ROOT) : name;
+    }
+}
@@ -0,0 +1,50 @@
+-- Schema as it stood before migrations were versioned, databases created by ddl-auto are baselined at this version.
+
+create table users (
+    id varchar(255) not null,
+    email varchar(255),
+    password varchar(255),
+    constraint pk_users primary key (id)
+);
+
+create table user_gallery (
+    id varchar(255) not null,
+    user_id varchar(255),
+    storage_key varchar(64),
+    file_name varchar(255),
+    file_size bigint,
+    content_type varchar(255),
+    content_hash varchar(64),
+    width integer,
+    height integer,
+    created_at timestamp,
+    constraint pk_user_gallery primary key (id),
+    constraint fk_user_gallery_user foreign key (user_id) references users (id)
+);
+
+create index idx_user_gallery_listing on user_gallery (user_id, created_at, id);
+
+create table image_content (
+    content_hash varchar(64) not null,
+    content_size bigint not null,
+    ref_count bigint not null,
+    created_at timestamp not null,
+    constraint pk_image_content primary key (content_hash)
+);
+
+create table image_blob (
+    storage_key varchar(64) not null,
+    content blob not null,
+    constraint pk_image_blob primary key (storage_key)
+);
+
+create table image_variant (
+    id varchar(255) not null,
+    source_key varchar(64) not null,
+    max_dimension integer not null,
+    storage_key varchar(64) not null,
+    content_type varchar(255),
+    content_size bigint,
+    constraint pk_image_variant primary key (id),
+    constraint uk_image_variant_source_size unique (source_key, max_dimension)
+);
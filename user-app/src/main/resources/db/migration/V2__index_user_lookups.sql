@@ -0,0 +1,6 @@
+-- Every login, registration and authenticated request looks a user up by email.
+-- Fails on databases holding duplicate emails, those have to be merged first.
+create unique index uk_users_email on users (email);
+
+-- Gallery listing seeks on (user_id, created_at, id), baselined databases may predate the index.
+create index if not exists idx_user_gallery_listing on user_gallery (user_id, created_at, id);
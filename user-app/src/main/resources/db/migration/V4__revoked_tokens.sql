@@ -0,0 +1,8 @@
+-- Ids of revoked tokens and of revoked refresh token families, kept until the tokens expire on their own.
+create table revoked_token (
+    token_id varchar(64) not null,
+    expires_at timestamp not null,
+    constraint pk_revoked_token primary key (token_id)
+);
+
+create index idx_revoked_token_expires_at on revoked_token (expires_at);
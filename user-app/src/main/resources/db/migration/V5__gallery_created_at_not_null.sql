@@ -0,0 +1,7 @@
+-- Rows uploaded before created_at existed have none, the listing cursor cannot encode them.
+-- They get the oldest known upload time, so they keep sorting first and then by id.
+update user_gallery
+set created_at = coalesce((select min(created_at) from user_gallery), current_timestamp)
+where created_at is null;
+
+alter table user_gallery alter column created_at set not null;
@@ -0,0 +1,14 @@
+-- References to stored content dropped by bulk deletes, written in the transaction of the delete
+-- and drained once it commits, so releases survive a restart between the commit and the cleanup.
+-- One row per dropped reference, keys shared by several deleted rows repeat.
+create table image_release (
+    id bigint generated by default as identity,
+    release_id varchar(36) not null,
+    storage_key varchar(64) not null,
+    created_at timestamp not null,
+    constraint pk_image_release primary key (id)
+);
+
+create index idx_image_release_release_id on image_release (release_id);
+
+create index idx_image_release_created_at on image_release (created_at);
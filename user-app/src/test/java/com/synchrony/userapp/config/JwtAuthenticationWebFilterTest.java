@@ -0,0 +1,118 @@
+package com.synchrony.userapp.config;
+
+import com.synchrony.userapp.model.MyUserDetails;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+public class JwtAuthenticationWebFilterTest {
+
+    private static final MyUserDetails USER = new MyUserDetails("vidhya@yopmail.com", "hash");
+
+    private final TokenRevocationList revocationList = Mockito.mock(TokenRevocationList.class);
+
+    private final ReactiveUserDetailsService userDetailsService = Mockito.mock(ReactiveUserDetailsService.class);
+
+    private final Scheduler blockingScheduler = Schedulers.newSingle("blocking");
+
+    private JwtUtils jwtUtils;
+
+    private JwtAuthenticationWebFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        jwtUtils = new JwtUtils();
+        ReflectionTestUtils.setField(jwtUtils, "jwtSecret", "ScSw160jFqYm");
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 900000);
+        ReflectionTestUtils.setField(jwtUtils, "refreshExpirationMs", 604800000L);
+        jwtUtils.initVerifiedTokenCache();
+        Mockito.when(userDetailsService.findByUsername("vidhya@yopmail.com"))
+                .thenReturn(Mono.<UserDetails>fromCallable(() -> USER).subscribeOn(blockingScheduler));
+        filter = new JwtAuthenticationWebFilter(jwtUtils, revocationList, userDetailsService);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        blockingScheduler.dispose();
+    }
+
+    /**
+     * @return authentication seen by the rest of the chain, null when the exchange stays anonymous
+     */
+    private Authentication authenticate(final String authorization) {
+        MockServerHttpRequest.BaseBuilder<?> request = MockServerHttpRequest.get("/image/1");
+        if (authorization != null) {
+            request.header(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        AtomicReference<Authentication> authentication = new AtomicReference<>();
+        WebFilterChain chain = exchange -> ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .doOnNext(authentication::set)
+                .then();
+        filter.filter(MockServerWebExchange.from(request), chain).block(Duration.ofSeconds(5));
+        return authentication.get();
+    }
+
+    @Test
+    public void accessTokenAuthenticatesTest() {
+        AtomicReference<String> checkedOn = new AtomicReference<>();
+        Mockito.when(revocationList.isRevoked(any(), any())).thenAnswer(invocation -> {
+            checkedOn.set(Thread.currentThread().getName());
+            return false;
+        });
+        Authentication authentication = authenticate("Bearer " + jwtUtils.generateJwtToken(USER, "family"));
+        assertEquals(USER, authentication.getPrincipal());
+        // the revocation check may query the db, it must not run on the calling thread
+        assertTrue(checkedOn.get().startsWith("blocking"), checkedOn.get());
+        Mockito.verify(revocationList).isRevoked(any(), Mockito.eq("family"));
+    }
+
+    @Test
+    public void revokedTokenStaysAnonymousTest() {
+        Mockito.when(revocationList.isRevoked(any(), any())).thenReturn(true);
+        assertNull(authenticate("Bearer " + jwtUtils.generateJwtToken(USER, "family")));
+    }
+
+    @Test
+    public void refreshTokenStaysAnonymousTest() {
+        assertNull(authenticate("Bearer " + jwtUtils.generateRefreshToken(USER, "family")));
+        Mockito.verifyNoInteractions(userDetailsService, revocationList);
+    }
+
+    @Test
+    public void invalidTokenStaysAnonymousTest() {
+        assertNull(authenticate("Bearer not.a.token"));
+        assertNull(authenticate("Basic dmlkaHlh"));
+        assertNull(authenticate(null));
+        Mockito.verifyNoInteractions(userDetailsService, revocationList);
+    }
+
+    @Test
+    public void failedLookupStaysAnonymousTest() {
+        Mockito.when(userDetailsService.findByUsername("vidhya@yopmail.com"))
+                .thenReturn(Mono.error(new IllegalStateException("db down")));
+        assertNull(authenticate("Bearer " + jwtUtils.generateJwtToken(USER, "family")));
+    }
+}
@@ -0,0 +1,123 @@
+package com.synchrony.userapp.config;
+
+import com.synchrony.userapp.model.MyUserDetails;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JwtUtilsTest {
+
+    private static final String SECRET = "ScSw160jFqYm";
+
+    private static final MyUserDetails USER = new MyUserDetails("vidhya@yopmail.com", "hash");
+
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    public void setUp() {
+        jwtUtils = jwtUtils(true);
+    }
+
+    private static JwtUtils jwtUtils(final boolean verifiedCacheEnabled) {
+        JwtUtils utils = new JwtUtils();
+        ReflectionTestUtils.setField(utils, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(utils, "jwtExpirationMs", 900000);
+        ReflectionTestUtils.setField(utils, "refreshExpirationMs", 604800000L);
+        ReflectionTestUtils.setField(utils, "verifiedCacheEnabled", verifiedCacheEnabled);
+        ReflectionTestUtils.setField(utils, "verifiedCacheMaximumSize", 100L);
+        ReflectionTestUtils.setField(utils, "verifiedCacheTtlMs", 60000L);
+        utils.initVerifiedTokenCache();
+        return utils;
+    }
+
+    @Test
+    public void parseAndVerifyTest() {
+        Claims claims = jwtUtils.parseAndVerify(jwtUtils.generateJwtToken(USER));
+        assertEquals("vidhya@yopmail.com", claims.getSubject());
+        assertTrue(jwtUtils.isAccessToken(claims));
+        assertTrue(jwtUtils.validateToken(claims, USER));
+        assertTrue(jwtUtils.isRefreshToken(jwtUtils.parseAndVerify(jwtUtils.generateRefreshToken(USER))));
+    }
+
+    @Test
+    public void familyClaimTest() {
+        assertEquals("family", jwtUtils.getFamilyId(jwtUtils.parseAndVerify(jwtUtils.generateJwtToken(USER, "family"))));
+        assertEquals("family",
+                jwtUtils.getFamilyId(jwtUtils.parseAndVerify(jwtUtils.generateRefreshToken(USER, "family"))));
+        assertNull(jwtUtils.getFamilyId(jwtUtils.parseAndVerify(jwtUtils.generateJwtToken(USER))));
+    }
+
+    @Test
+    public void verifiedTokenIsServedFromCacheTest() {
+        String token = jwtUtils.generateJwtToken(USER);
+        assertSame(jwtUtils.parseAndVerify(token), jwtUtils.parseAndVerify(token));
+    }
+
+    @Test
+    public void verifiedTokenCacheDisabledTest() {
+        JwtUtils uncached = jwtUtils(false);
+        String token = uncached.generateJwtToken(USER);
+        Claims first = uncached.parseAndVerify(token);
+        assertNotSame(first, uncached.parseAndVerify(token));
+        assertEquals("vidhya@yopmail.com", first.getSubject());
+    }
+
+    @Test
+    public void tokenExpiringWithinCacheTtlIsRejectedTest() throws InterruptedException {
+        // the exp claim has a precision of one second
+        ReflectionTestUtils.setField(jwtUtils, "jwtExpirationMs", 1500);
+        String token = jwtUtils.generateJwtToken(USER);
+        jwtUtils.parseAndVerify(token);
+        Thread.sleep(2000);
+        assertThrows(ExpiredJwtException.class, () -> jwtUtils.parseAndVerify(token));
+        assertThrows(ExpiredJwtException.class, () -> jwtUtils.parseAndVerify(token));
+    }
+
+    @Test
+    public void tamperedSignatureIsRejectedTest() {
+        String token = jwtUtils.generateJwtToken(USER);
+        jwtUtils.parseAndVerify(token);
+        int signature = token.lastIndexOf('.') + 1;
+        char flipped = token.charAt(signature) == 'A' ? 'B' : 'A';
+        String tampered = token.substring(0, signature) + flipped + token.substring(signature + 1);
+        assertThrows(JwtException.class, () -> jwtUtils.parseAndVerify(tampered));
+    }
+
+    @Test
+    public void tamperedClaimsAreRejectedTest() {
+        String token = jwtUtils.generateJwtToken(USER);
+        jwtUtils.parseAndVerify(token);
+        String[] parts = token.split("\\.");
+        String forged = Jwts.builder()
+                .setSubject("admin@yopmail.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(SignatureAlgorithm.HS512, "b3RoZXJTZWNyZXQ=")
+                .compact().split("\\.")[1];
+        String tampered = parts[0] + "." + forged + "." + parts[2];
+        assertThrows(JwtException.class, () -> jwtUtils.parseAndVerify(tampered));
+    }
+
+    @Test
+    public void tokenSignedWithAnotherSecretIsRejectedTest() {
+        String token = Jwts.builder()
+                .setSubject("vidhya@yopmail.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000))
+                .signWith(SignatureAlgorithm.HS512, "b3RoZXJTZWNyZXQ=")
+                .compact();
+        assertThrows(JwtException.class, () -> jwtUtils.parseAndVerify(token));
+    }
+}
@@ -0,0 +1,131 @@
+package com.synchrony.userapp.config;
+
+import com.synchrony.userapp.controller.UserController;
+import com.synchrony.userapp.model.TokenResponse;
+import com.synchrony.userapp.model.UserModel;
+import com.synchrony.userapp.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+/**
+ * Rate limiting in front of the real controller, the limiter runs on the wall clock with refill periods
+ * long enough that no token comes back during a test.
+ */
+public class LoginRateLimitFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final UserService userService = Mockito.mock(UserService.class);
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        UserController controller = new UserController();
+        ReflectionTestUtils.setField(controller, "userService", userService);
+        Mockito.when(userService.login(any())).thenReturn(new TokenResponse("access", "refresh", 900));
+        Mockito.when(userService.registerUser(any())).thenReturn(new TokenResponse("access", "refresh", 900));
+        LoginRateLimitFilter filter = new LoginRateLimitFilter(registry, true,
+                3, Duration.ofMinutes(1), 2, Duration.ofMinutes(5), 1000, 256);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).addFilters(filter).build();
+    }
+
+    private static MockHttpServletRequestBuilder post(final String path, final String remoteAddr, final String body) {
+        return MockMvcRequestBuilders.post(path)
+                .servletPath(path)
+                .with(request -> {
+                    request.setRemoteAddr(remoteAddr);
+                    return request;
+                })
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body);
+    }
+
+    private static String credentials(final String email) {
+        return "{\"email\":\"" + email + "\",\"password\":\"testing\"}";
+    }
+
+    private double rejected(final String key) {
+        return registry.get("auth.rate.limited").tag("key", key).counter().count();
+    }
+
+    @Test
+    public void bodyIsReplayedToControllerTest() throws Exception {
+        mockMvc.perform(post("/login", "10.0.0.1", credentials("vidhya@yopmail.com")))
+                .andExpect(result -> assertEquals(200, result.getResponse().getStatus()));
+        ArgumentCaptor<UserModel> login = ArgumentCaptor.forClass(UserModel.class);
+        Mockito.verify(userService).login(login.capture());
+        assertEquals("vidhya@yopmail.com", login.getValue().getEmail());
+        assertEquals("testing", login.getValue().getPassword());
+    }
+
+    @Test
+    public void ipLimitTest() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(post("/login", "10.0.0.1", credentials("user" + i + "@yopmail.com")))
+                    .andExpect(result -> assertEquals(200, result.getResponse().getStatus()));
+        }
+        MvcResult limited = mockMvc.perform(post("/register", "10.0.0.1", credentials("user3@yopmail.com")))
+                .andReturn();
+        assertEquals(429, limited.getResponse().getStatus());
+        long retryAfter = Long.parseLong(limited.getResponse().getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(retryAfter > 0 && retryAfter <= 20, "Retry-After " + retryAfter);
+        assertEquals(1.0, rejected("ip"));
+        assertEquals(0.0, rejected("email"));
+        Mockito.verify(userService, Mockito.never()).registerUser(any());
+        mockMvc.perform(post("/login", "10.0.0.2", credentials("user3@yopmail.com")))
+                .andExpect(result -> assertEquals(200, result.getResponse().getStatus()));
+    }
+
+    @Test
+    public void emailLimitTest() throws Exception {
+        mockMvc.perform(post("/login", "10.0.0.1", credentials("vidhya@yopmail.com")))
+                .andExpect(result -> assertEquals(200, result.getResponse().getStatus()));
+        mockMvc.perform(post("/login", "10.0.0.2", credentials("Vidhya@YopMail.com")))
+                .andExpect(result -> assertEquals(200, result.getResponse().getStatus()));
+        // blanks would fail the email validation of the controller, the limiter still counts them on the same key
+        MvcResult limited = mockMvc.perform(post("/login", "10.0.0.3", credentials(" VIDHYA@yopmail.com ")))
+                .andReturn();
+        assertEquals(429, limited.getResponse().getStatus());
+        long retryAfter = Long.parseLong(limited.getResponse().getHeader(HttpHeaders.RETRY_AFTER));
+        assertTrue(retryAfter > 0 && retryAfter <= 150, "Retry-After " + retryAfter);
+        assertEquals(1.0, rejected("email"));
+        assertEquals(0.0, rejected("ip"));
+        Mockito.verify(userService, Mockito.times(2)).login(any());
+    }
+
+    @Test
+    public void oversizedBodyTest() throws Exception {
+        String body = "{\"email\":\"vidhya@yopmail.com\",\"password\":\"" + new String(new char[300]).replace('\0', 'x')
+                + "\"}";
+        MvcResult result = mockMvc.perform(post("/login", "10.0.0.1", body)).andReturn();
+        assertEquals(413, result.getResponse().getStatus());
+        assertEquals(null, result.getResponse().getHeader(HttpHeaders.RETRY_AFTER));
+        Mockito.verifyNoInteractions(userService);
+    }
+
+    @Test
+    public void otherPathsAreNotLimitedTest() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(post("/token/refresh", "10.0.0.1", "{\"refreshToken\":\"refresh\"}"));
+        }
+        assertEquals(0.0, rejected("ip"));
+    }
+}
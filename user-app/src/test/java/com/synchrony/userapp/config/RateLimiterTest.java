@@ -0,0 +1,66 @@
+package com.synchrony.userapp.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class RateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(TimeUnit.DAYS.toNanos(1));
+
+    /**
+     * 5 tokens refilled within 5 seconds, one every second.
+     */
+    private final RateLimiter limiter = new RateLimiter(5, Duration.ofSeconds(5), 100, clock::get);
+
+    @Test
+    public void burstUpToCapacityTest() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        }
+        assertEquals(SECOND, limiter.tryAcquire("10.0.0.1"));
+    }
+
+    @Test
+    public void tokensRefillAtEmissionIntervalTest() {
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("10.0.0.1");
+        }
+        clock.addAndGet(SECOND / 4);
+        assertEquals(SECOND * 3 / 4, limiter.tryAcquire("10.0.0.1"));
+        clock.addAndGet(SECOND * 3 / 4);
+        assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        assertEquals(SECOND, limiter.tryAcquire("10.0.0.1"));
+        clock.addAndGet(SECOND * 2);
+        assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        assertEquals(SECOND, limiter.tryAcquire("10.0.0.1"));
+    }
+
+    @Test
+    public void idleBucketIsFullAgainTest() {
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("10.0.0.1");
+        }
+        clock.addAndGet(SECOND * 60);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("10.0.0.1"));
+        }
+        assertEquals(SECOND, limiter.tryAcquire("10.0.0.1"));
+    }
+
+    @Test
+    public void keysHaveTheirOwnBucketsTest() {
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("10.0.0.1");
+        }
+        assertEquals(SECOND, limiter.tryAcquire("10.0.0.1"));
+        assertEquals(0, limiter.tryAcquire("10.0.0.2"));
+    }
+}
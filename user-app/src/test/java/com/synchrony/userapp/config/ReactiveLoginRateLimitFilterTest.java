@@ -0,0 +1,123 @@
+package com.synchrony.userapp.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Same limits as {@link LoginRateLimitFilterTest}, on the reactive stack.
+ */
+public class ReactiveLoginRateLimitFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    /**
+     * Bodies which reached the rest of the chain.
+     */
+    private final List<String> passed = new ArrayList<>();
+
+    private final WebFilterChain chain = exchange -> DataBufferUtils.join(exchange.getRequest().getBody())
+            .map(body -> body.toString(StandardCharsets.UTF_8))
+            .doOnNext(passed::add)
+            .then();
+
+    private ReactiveLoginRateLimitFilter filter;
+
+    @BeforeEach
+    public void setUp() {
+        filter = new ReactiveLoginRateLimitFilter(registry, true,
+                3, Duration.ofMinutes(1), 2, Duration.ofMinutes(5), 1000, 256);
+    }
+
+    private MockServerWebExchange post(final String path, final String remoteAddr, final String body) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post(path)
+                .remoteAddress(new InetSocketAddress(remoteAddr, 40000))
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body));
+        filter.filter(exchange, chain).block(Duration.ofSeconds(5));
+        return exchange;
+    }
+
+    private static String credentials(final String email) {
+        return "{\"email\":\"" + email + "\",\"password\":\"testing\"}";
+    }
+
+    private double rejected(final String key) {
+        return registry.get("auth.rate.limited").tag("key", key).counter().count();
+    }
+
+    private static long retryAfter(final MockServerWebExchange exchange) {
+        return Long.parseLong(exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    public void bodyIsReplayedToChainTest() {
+        post("/login", "10.0.0.1", credentials("vidhya@yopmail.com"));
+        assertEquals(1, passed.size());
+        assertEquals(credentials("vidhya@yopmail.com"), passed.get(0));
+    }
+
+    @Test
+    public void ipLimitTest() {
+        for (int i = 0; i < 3; i++) {
+            post("/login", "10.0.0.1", credentials("user" + i + "@yopmail.com"));
+        }
+        MockServerWebExchange limited = post("/register", "10.0.0.1", credentials("user3@yopmail.com"));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, limited.getResponse().getStatusCode());
+        assertTrue(retryAfter(limited) > 0 && retryAfter(limited) <= 20, "Retry-After " + retryAfter(limited));
+        assertEquals(1.0, rejected("ip"));
+        assertEquals(0.0, rejected("email"));
+        assertEquals(3, passed.size());
+        post("/login", "10.0.0.2", credentials("user3@yopmail.com"));
+        assertEquals(4, passed.size());
+    }
+
+    @Test
+    public void emailLimitTest() {
+        post("/login", "10.0.0.1", credentials("vidhya@yopmail.com"));
+        post("/login", "10.0.0.2", credentials(" Vidhya@YopMail.com "));
+        MockServerWebExchange limited = post("/login", "10.0.0.3", credentials("VIDHYA@yopmail.com"));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, limited.getResponse().getStatusCode());
+        assertTrue(retryAfter(limited) > 0 && retryAfter(limited) <= 150, "Retry-After " + retryAfter(limited));
+        assertEquals("{\"message\":\"Too many attempts, try again later\"}",
+                limited.getResponse().getBodyAsString().block(Duration.ofSeconds(5)));
+        assertEquals(1.0, rejected("email"));
+        assertEquals(2, passed.size());
+    }
+
+    @Test
+    public void oversizedBodyTest() {
+        String body = "{\"email\":\"vidhya@yopmail.com\",\"password\":\"" + new String(new char[300]).replace('\0', 'x')
+                + "\"}";
+        MockServerWebExchange rejected = post("/login", "10.0.0.1", body);
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, rejected.getResponse().getStatusCode());
+        assertNull(rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertTrue(passed.isEmpty());
+    }
+
+    @Test
+    public void otherPathsAreNotLimitedTest() {
+        for (int i = 0; i < 5; i++) {
+            post("/token/refresh", "10.0.0.1", "{\"refreshToken\":\"refresh\"}");
+        }
+        assertEquals(0.0, rejected("ip"));
+        assertEquals(5, passed.size());
+    }
+}
@@ -0,0 +1,184 @@
+package com.synchrony.userapp.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+
+/**
+ * Revocations against the Flyway schema on H2. Tests are not wrapped in a transaction,
+ * so every revocation commits as it does in the application.
+ */
+@JdbcTest(properties = "app.jwt.revocation.expected-tokens=1000")
+@Import({TokenRevocationList.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class TokenRevocationListTest {
+
+    @Autowired
+    private TokenRevocationList revocationList;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @SpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.update("delete from revoked_token");
+        revocationList.purgeExpired();
+    }
+
+    private static Date inOneHour() {
+        return new Date(System.currentTimeMillis() + 3600000);
+    }
+
+    /**
+     * Revocation made by another instance, straight into the table.
+     */
+    private void insert(final String tokenId, final long expiresAt) {
+        jdbcTemplate.update("insert into revoked_token (token_id, expires_at) values (?, ?)",
+                tokenId, new Timestamp(expiresAt));
+    }
+
+    private int rows() {
+        return jdbcTemplate.queryForObject("select count(*) from revoked_token", Integer.class);
+    }
+
+    @Test
+    public void bloomFilterTest() {
+        TokenRevocationList.BloomFilter filter = new TokenRevocationList.BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("revoked-" + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain("revoked-" + i));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain("other-" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, falsePositives + " false positives");
+    }
+
+    @Test
+    public void revokeTest() {
+        String tokenId = UUID.randomUUID().toString();
+        assertFalse(revocationList.isRevoked(tokenId));
+        assertTrue(revocationList.revoke(tokenId, inOneHour()));
+        assertTrue(revocationList.isRevoked(tokenId));
+        assertTrue(revocationList.isRevokedInStore(tokenId));
+        assertTrue(revocationList.isRevoked(null, tokenId));
+        assertFalse(revocationList.revoke(tokenId, inOneHour()));
+        assertEquals(1, rows());
+        assertEquals(1.0, registry.get("auth.tokens.revoked").gauge().value());
+        assertFalse(revocationList.isRevoked(null));
+        assertFalse(revocationList.isRevokedInStore(null));
+    }
+
+    @Test
+    public void unknownTokenDoesNotQueryStoreTest() {
+        revocationList.revoke(UUID.randomUUID().toString(), inOneHour());
+        Mockito.clearInvocations(jdbcTemplate);
+        assertFalse(revocationList.isRevoked(UUID.randomUUID().toString()));
+        Mockito.verify(jdbcTemplate, Mockito.never()).queryForObject(anyString(), any(Class.class), any(), any());
+    }
+
+    @Test
+    public void expiredTokenIsNotStoredTest() {
+        String tokenId = UUID.randomUUID().toString();
+        assertTrue(revocationList.revoke(tokenId, new Date(System.currentTimeMillis() - 1000)));
+        assertTrue(revocationList.revoke(tokenId, null));
+        assertEquals(0, rows());
+        assertFalse(revocationList.isRevoked(tokenId));
+    }
+
+    @Test
+    public void revocationSurvivesRestartTest() {
+        String tokenId = UUID.randomUUID().toString();
+        revocationList.revoke(tokenId, inOneHour());
+        TokenRevocationList restarted = new TokenRevocationList(new SimpleMeterRegistry(), jdbcTemplate, 1000, 0.01);
+        restarted.init();
+        assertTrue(restarted.isRevoked(tokenId));
+        assertFalse(restarted.revoke(tokenId, inOneHour()));
+    }
+
+    @Test
+    public void purgeRebuildsFilterTest() {
+        String remote = UUID.randomUUID().toString();
+        insert(remote, System.currentTimeMillis() + 3600000);
+        assertTrue(revocationList.isRevokedInStore(remote));
+        revocationList.purgeExpired();
+        assertTrue(revocationList.isRevoked(remote));
+    }
+
+    @Test
+    public void purgeDeletesExpiredTokensTest() {
+        String live = UUID.randomUUID().toString();
+        String expired = UUID.randomUUID().toString();
+        revocationList.revoke(live, inOneHour());
+        insert(expired, System.currentTimeMillis() - 1000);
+        assertFalse(revocationList.isRevokedInStore(expired));
+        revocationList.purgeExpired();
+        assertEquals(1, rows());
+        assertTrue(revocationList.isRevoked(live));
+        assertFalse(revocationList.isRevoked(expired));
+        assertEquals(1.0, registry.get("auth.tokens.revoked").gauge().value());
+    }
+
+    @Test
+    public void concurrentRevocationsOfOneIdTest() {
+        String tokenId = UUID.randomUUID().toString();
+        List<CompletableFuture<Boolean>> revocations = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            revocations.add(CompletableFuture.supplyAsync(() -> revocationList.revoke(tokenId, inOneHour())));
+        }
+        assertEquals(1, revocations.stream().filter(CompletableFuture::join).count());
+        assertEquals(1, rows());
+        assertTrue(revocationList.isRevoked(tokenId));
+    }
+
+    @Test
+    public void revocationDuringPurgeTest() {
+        String tokenId = UUID.randomUUID().toString();
+        // revoked on another thread while the filter is rebuilt, which must neither wait nor lose it
+        Mockito.doAnswer(invocation -> {
+            invocation.callRealMethod();
+            assertTrue(CompletableFuture.supplyAsync(() -> revocationList.revoke(tokenId, inOneHour()))
+                    .get(5, TimeUnit.SECONDS));
+            return null;
+        }).doCallRealMethod().when(jdbcTemplate).query(eq("select token_id from revoked_token"),
+                any(RowCallbackHandler.class));
+        revocationList.purgeExpired();
+        Mockito.verify(jdbcTemplate, Mockito.never()).queryForObject(
+                startsWith("select count(*) from revoked_token where token_id"), any(Class.class), any(), any());
+        assertTrue(revocationList.isRevoked(tokenId));
+    }
+}
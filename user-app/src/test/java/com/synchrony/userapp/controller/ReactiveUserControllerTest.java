@@ -0,0 +1,224 @@
+package com.synchrony.userapp.controller;
+
+import com.synchrony.userapp.config.JwtUtils;
+import com.synchrony.userapp.exception.CustomException;
+import com.synchrony.userapp.model.ImageDeleteRequest;
+import com.synchrony.userapp.model.ImageDownload;
+import com.synchrony.userapp.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class ReactiveUserControllerTest {
+
+    private ReactiveUserController userController;
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private JwtUtils jwtUtils;
+
+    private WebTestClient webTestClient;
+
+    private final UUID imageId = UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef");
+
+    private final ImageDownload download = new ImageDownload(imageId,
+            "5f70bf18a086007016e948b04aed3b82103a36bea41755b6cddfaf10ace3c6ef", "image/jpeg",
+            Instant.parse("2023-01-17T10:15:30Z"));
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        userController = new ReactiveUserController(userService, jwtUtils, Schedulers.boundedElastic(),
+                DataSize.ofMegabytes(20), Duration.ofDays(365));
+        Principal principal = () -> "vidhya@yopmail.com";
+        webTestClient = WebTestClient.bindToController(userController)
+                .controllerAdvice(new CustomException())
+                .httpMessageCodecs(codecs -> codecs.defaultCodecs().maxInMemorySize(
+                        (int) DataSize.ofMegabytes(1).toBytes()))
+                .webFilter((exchange, chain) -> chain.filter(exchange.mutate().principal(Mono.just(principal)).build()))
+                .build();
+    }
+
+    private static MultipartBodyBuilder imageBody(final int size) {
+        MultipartBodyBuilder body = new MultipartBodyBuilder();
+        body.part("image", new ByteArrayResource(new byte[size]) {
+            @Override
+            public String getFilename() {
+                return "img.jpg";
+            }
+        }).contentType(MediaType.IMAGE_JPEG);
+        return body;
+    }
+
+    private WebTestClient.ResponseSpec upload(final MultipartBodyBuilder body) {
+        return webTestClient.post().uri("/uploadImage")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(body.build()))
+                .exchange();
+    }
+
+    @Test
+    public void uploadImageTest() throws Exception {
+        AtomicReference<MultipartFile> staged = new AtomicReference<>();
+        Mockito.when(userService.uploadImage(eq("vidhya@yopmail.com"), any())).thenAnswer(invocation -> {
+            MultipartFile image = invocation.getArgument(1);
+            staged.set(image);
+            return image.getBytes().length == 1024 && image.getSize() == 1024
+                    && "img.jpg".equals(image.getOriginalFilename());
+        });
+        upload(imageBody(1024))
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("Image uploaded successfully");
+        // the temp file is removed asynchronously once the response is complete
+        for (int i = 0; i < 50 && isStaged(staged.get()); i++) {
+            Thread.sleep(100);
+        }
+        assertFalse(isStaged(staged.get()));
+    }
+
+    private static boolean isStaged(final MultipartFile image) {
+        try (InputStream content = image.getInputStream()) {
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    @Test
+    public void uploadEmptyImageTest() throws Exception {
+        upload(imageBody(0)).expectStatus().isNotFound();
+        Mockito.verify(userService, Mockito.never()).uploadImage(any(), any());
+    }
+
+    @Test
+    public void uploadImageAboveMaxFileSizeTest() throws Exception {
+        ReflectionTestUtils.setField(userController, "maxFileSize", DataSize.ofBytes(1000));
+        upload(imageBody(1024)).expectStatus().isEqualTo(413);
+        Mockito.verify(userService, Mockito.never()).uploadImage(any(), any());
+    }
+
+    @Test
+    public void uploadWithoutImageTest() throws Exception {
+        MultipartBodyBuilder body = new MultipartBodyBuilder();
+        body.part("description", "holiday");
+        upload(body).expectStatus().isNotFound();
+    }
+
+    @Test
+    public void revokeTokenTest() throws Exception {
+        Mockito.when(jwtUtils.parseJwt("Bearer access")).thenReturn("access");
+        webTestClient.post().uri("/token/revoke")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer access")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("{\"refreshToken\":\"refresh\"}")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("Token revoked successfully");
+        Mockito.verify(userService).revokeTokens("access", "refresh");
+    }
+
+    @Test
+    public void downloadImageTest() throws Exception {
+        Mockito.when(userService.findImage(imageId, null)).thenReturn(download);
+        Mockito.when(userService.getImage(download)).thenReturn(new ByteArrayResource(new byte[40000]));
+        byte[] image = webTestClient.get().uri("/image/{id}", imageId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.IMAGE_JPEG)
+                .expectHeader().valueEquals(HttpHeaders.ETAG, download.getETag())
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        assertEquals(40000, image.length);
+    }
+
+    @Test
+    public void downloadImageNotModifiedTest() throws Exception {
+        Mockito.when(userService.findImage(imageId, null)).thenReturn(download);
+        webTestClient.get().uri("/image/{id}", imageId)
+                .header(HttpHeaders.IF_NONE_MATCH, download.getETag())
+                .exchange()
+                .expectStatus().isNotModified();
+        Mockito.verify(userService, Mockito.never()).getImage(any());
+    }
+
+    @Test
+    public void deleteImagesTest() throws Exception {
+        UUID second = UUID.fromString("0189f7a2-5c1e-7b3d-9a4f-2c8e6d1b0a57");
+        Mockito.when(userService.deleteImages("vidhya@yopmail.com", Arrays.asList(imageId, second))).thenReturn(2);
+        webTestClient.method(HttpMethod.DELETE).uri("/images")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new ImageDeleteRequest(Arrays.asList(imageId, second)))
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody(String.class).isEqualTo("2 images deleted successfully");
+    }
+
+    @Test
+    public void deleteMostImagesTest() throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < ImageDeleteRequest.MAX_IDS; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        Mockito.when(userService.deleteImages("vidhya@yopmail.com", ids)).thenReturn(ImageDeleteRequest.MAX_IDS);
+        webTestClient.method(HttpMethod.DELETE).uri("/images")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new ImageDeleteRequest(ids))
+                .exchange()
+                .expectStatus().isAccepted();
+    }
+
+    @Test
+    public void deleteTooManyImagesTest() throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i <= ImageDeleteRequest.MAX_IDS; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        webTestClient.method(HttpMethod.DELETE).uri("/images")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new ImageDeleteRequest(ids))
+                .exchange()
+                .expectStatus().isBadRequest();
+        Mockito.verify(userService, Mockito.never()).deleteImages(any(), any());
+    }
+
+    @Test
+    public void deleteAccountTest() throws Exception {
+        Mockito.when(userService.deleteAccount("vidhya@yopmail.com")).thenReturn(3);
+        webTestClient.delete().uri("/account")
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody(String.class).isEqualTo("Account deleted successfully");
+        Mockito.verify(userService).deleteAccount("vidhya@yopmail.com");
+    }
+}
@@ -3,11 +3,21 @@ package com.synchrony.userapp.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.synchrony.userapp.config.JwtAuthenticationEntryPoint;
 import com.synchrony.userapp.config.JwtUtils;
+import com.synchrony.userapp.config.TokenRevocationList;
+import com.synchrony.userapp.exception.AuthenticationBusyException;
 import com.synchrony.userapp.exception.ImageNotFoundException;
+import com.synchrony.userapp.exception.InvalidCursorException;
+import com.synchrony.userapp.exception.InvalidTokenException;
 import com.synchrony.userapp.exception.RecordAlreadyExistsException;
+import com.synchrony.userapp.model.ImageDataQuery;
+import com.synchrony.userapp.model.ImageDeleteRequest;
+import com.synchrony.userapp.model.ImageDownload;
+import com.synchrony.userapp.model.ImageUploadResult;
+import com.synchrony.userapp.model.TokenRefreshRequest;
+import com.synchrony.userapp.model.TokenResponse;
 import com.synchrony.userapp.model.UserModel;
 import com.synchrony.userapp.service.UserService;
-import org.json.simple.JSONArray;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -17,6 +27,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -24,6 +37,12 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
@@ -31,6 +50,7 @@ import static org.mockito.Mockito.doReturn;
 
 @AutoConfigureMockMvc(addFilters = false)
 @WebMvcTest(UserController.class)
+@Import(SimpleMeterRegistry.class)
 public class UserControllerTest {
 
     @Autowired
@@ -51,13 +71,22 @@ public class UserControllerTest {
     @MockBean
     private JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
 
+    @MockBean
+    private TokenRevocationList tokenRevocationList;
+
     ObjectMapper mapper = new ObjectMapper();
 
     private UserModel userModel;
 
+    private final ImageDownload download = new ImageDownload(UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef"),
+            "5f70bf18a086007016e948b04aed3b82103a36bea41755b6cddfaf10ace3c6ef", "image/jpeg",
+            Instant.parse("2023-01-17T10:15:30Z"));
+
     String token =
             "eyJhbGciOiJIUzUxMiJ9." + "eyJzdWIiOiJ2aWRoeWFAZ21haWwuY29tIiwiZXhwIjoxNjQyNDM3MTQ2LCJpYXQiOjE2NDI0MTkxNDZ9." + "Bv5OMK2O4xHs5RhDh_x9EojT_vKxfrlsGHWzpEPznddF-N4PlVaCy8jeTDuxZxrJyGLd002cfqUlLSTw9Sotqg";
 
+    private final TokenResponse tokens = new TokenResponse(token, token, 900);
+
     @BeforeEach
     public void setUp() {
         userModel = new UserModel("vidhya@yopmail.com", "testing");
@@ -67,7 +96,7 @@ public class UserControllerTest {
     public void registerUserTest() throws Exception {
         String request = mapper.writeValueAsString(userModel);
         Mockito.when(userService.registerUser(any(UserModel.class)))
-                .thenReturn(token);
+                .thenReturn(tokens);
         MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/register")
                         .content(request)
                         .characterEncoding("utf-8")
@@ -115,31 +144,88 @@ public class UserControllerTest {
 
     }
 
+    @Test
+    public void uploadImagesPartialFailureTest() throws Exception {
+        MockMultipartFile first =
+                new MockMultipartFile("images", "one.jpg", "image/jpeg", new byte[1024]);
+        MockMultipartFile second =
+                new MockMultipartFile("images", "two.jpg", "image/jpeg", new byte[0]);
+        doReturn("vidhya@yopmail.com").when(jwtTokenUtil)
+                .getLoggedInUserName();
+        Mockito.when(userService.uploadImages(any(), any())).thenReturn(Arrays.asList(
+                ImageUploadResult.uploaded("one.jpg", UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef")),
+                ImageUploadResult.failed("two.jpg", "No image Found")));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.multipart("/uploadImages")
+                        .file(first)
+                        .file(second))
+                .andReturn();
+        assertEquals(207, result.getResponse().getStatus());
+        assertTrue(result.getResponse().getContentAsString().contains("\"uploaded\":false"));
+    }
+
    @Test
     public void getUserImageTest() throws Exception {
-        Mockito.when(userService.getImage(any())).thenReturn(new byte[1024]);
+        Mockito.when(userService.findImage(any(), any())).thenReturn(download);
+        Mockito.when(userService.getImage(any())).thenReturn(new ByteArrayResource(new byte[1024]));
         MvcResult result = mockMvc.perform(
                 MockMvcRequestBuilders.get("/image/{id}", "dc7812f3-3830-43e9-b637-9f3d39584bef")
                         .contentType(MediaType.IMAGE_JPEG_VALUE))
                         .andReturn();
         assertEquals(200, result.getResponse().getStatus());
+        assertEquals(1024, result.getResponse().getContentLength());
+        assertEquals(download.getETag(), result.getResponse().getHeader(HttpHeaders.ETAG));
+        assertTrue(result.getResponse().getHeader(HttpHeaders.CACHE_CONTROL).contains("immutable"));
+    }
+
+    @Test
+    public void getUserImageNotModifiedTest() throws Exception {
+        Mockito.when(userService.findImage(any(), any())).thenReturn(download);
+        MvcResult result = mockMvc.perform(
+                MockMvcRequestBuilders.get("/image/{id}", "dc7812f3-3830-43e9-b637-9f3d39584bef")
+                        .header(HttpHeaders.IF_NONE_MATCH, download.getETag()))
+                        .andReturn();
+        assertEquals(304, result.getResponse().getStatus());
+        assertEquals(0, result.getResponse().getContentLength());
+        Mockito.verify(userService, Mockito.never()).getImage(any());
+    }
+
+    @Test
+    public void getUserImageRangeTest() throws Exception {
+        Mockito.when(userService.findImage(any(), any())).thenReturn(download);
+        Mockito.when(userService.getImage(any())).thenReturn(new ByteArrayResource(new byte[1024]));
+        MvcResult result = mockMvc.perform(
+                MockMvcRequestBuilders.get("/image/{id}", "dc7812f3-3830-43e9-b637-9f3d39584bef")
+                        .header(HttpHeaders.RANGE, "bytes=0-99"))
+                        .andReturn();
+        assertEquals(206, result.getResponse().getStatus());
+        assertEquals(100, result.getResponse().getContentAsByteArray().length);
     }
 
     @Test
     public void getUserImageDataTest() throws Exception {
-        JSONArray json = new JSONArray();
-        Mockito.when(userService.getImage(any())).thenReturn(null);
+        Mockito.when(userService.getImagesData(any(), any(), any()))
+                .thenReturn(new ImageDataQuery(UUID.randomUUID(), "vidhya@yopmail.com", 50, null));
         MvcResult result = mockMvc.perform(
                         MockMvcRequestBuilders.get("/imageData")
                                 .contentType(MediaType.APPLICATION_JSON_UTF8_VALUE)).andReturn();
         assertEquals(200, result.getResponse().getStatus());
     }
 
+    @Test
+    public void getUserImageDataInvalidCursorTest() throws Exception {
+        Mockito.when(userService.getImagesData(any(), any(), any()))
+                .thenThrow(new InvalidCursorException("Invalid cursor"));
+        MvcResult result = mockMvc.perform(
+                        MockMvcRequestBuilders.get("/imageData").param("cursor", "not-a-cursor"))
+                .andReturn();
+        assertEquals(400, result.getResponse().getStatus());
+    }
+
    @Test
     public void getLoginTest() throws Exception {
        String request = mapper.writeValueAsString(userModel);
        Mockito.when(userService.registerUser(any(UserModel.class)))
-               .thenReturn(token);
+               .thenReturn(tokens);
        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/login")
                        .content(request)
                        .characterEncoding("utf-8")
@@ -149,6 +235,42 @@ public class UserControllerTest {
                .getStatus());
     }
 
+    @Test
+    public void loginWhenPasswordHashingIsBusyTest() throws Exception {
+        Mockito.when(userService.login(any(UserModel.class)))
+                .thenThrow(new AuthenticationBusyException("Too many login attempts in progress, try again later"));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/login")
+                        .content(mapper.writeValueAsString(userModel))
+                        .characterEncoding("utf-8")
+                        .contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+                .andReturn();
+        assertEquals(503, result.getResponse().getStatus());
+    }
+
+    @Test
+    public void refreshTokenTest() throws Exception {
+        String request = mapper.writeValueAsString(new TokenRefreshRequest(token));
+        Mockito.when(userService.refreshToken(token)).thenReturn(tokens);
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/token/refresh")
+                        .content(request)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andReturn();
+        assertEquals(200, result.getResponse().getStatus());
+        assertEquals(token, mapper.readTree(result.getResponse().getContentAsString()).get("accessToken").asText());
+    }
+
+    @Test
+    public void refreshTokenWhenRevokedTest() throws Exception {
+        String request = mapper.writeValueAsString(new TokenRefreshRequest(token));
+        Mockito.when(userService.refreshToken(token))
+                .thenThrow(new InvalidTokenException("Refresh token has been revoked"));
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.post("/token/refresh")
+                        .content(request)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andReturn();
+        assertEquals(401, result.getResponse().getStatus());
+    }
+
     @Test
     public void deleteImageTest() throws Exception {
         Mockito.doNothing().when(userService).deleteImage(any());
@@ -156,4 +278,49 @@ public class UserControllerTest {
                 .delete("/image/{id}", "dc7812f3-3830-43e9-b637-9f3d39584bef").contentType(MediaType.APPLICATION_JSON)).andReturn();
         assertEquals(202, result.getResponse().getStatus());
     }
+
+    @Test
+    public void deleteImagesTest() throws Exception {
+        Mockito.when(jwtTokenUtil.getLoggedInUserName()).thenReturn("vidhya@yopmail.com");
+        Mockito.when(userService.deleteImages("vidhya@yopmail.com", Arrays.asList(
+                UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef"),
+                UUID.fromString("0189f7a2-5c1e-7b3d-9a4f-2c8e6d1b0a57")))).thenReturn(2);
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.delete("/images")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"ids\":[\"dc7812f3-3830-43e9-b637-9f3d39584bef\",\"0189f7a2-5c1e-7b3d-9a4f-2c8e6d1b0a57\"]}"))
+                .andReturn();
+        assertEquals(202, result.getResponse().getStatus());
+        assertEquals("2 images deleted successfully", result.getResponse().getContentAsString());
+    }
+
+    @Test
+    public void deleteTooManyImagesTest() throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i <= ImageDeleteRequest.MAX_IDS; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.delete("/images")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(mapper.writeValueAsString(new ImageDeleteRequest(ids))))
+                .andReturn();
+        assertEquals(400, result.getResponse().getStatus());
+        Mockito.verifyNoInteractions(userService);
+    }
+
+    @Test
+    public void deleteNoImagesTest() throws Exception {
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.delete("/images")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"ids\":[]}"))
+                .andReturn();
+        assertEquals(400, result.getResponse().getStatus());
+        Mockito.verifyNoInteractions(userService);
+    }
+
+    @Test
+    public void deleteAccountTest() throws Exception {
+        Mockito.when(jwtTokenUtil.getLoggedInUserName()).thenReturn("vidhya@yopmail.com");
+        MvcResult result = mockMvc.perform(MockMvcRequestBuilders.delete("/account")).andReturn();
+        assertEquals(202, result.getResponse().getStatus());
+        Mockito.verify(userService).deleteAccount("vidhya@yopmail.com");
+    }
 }
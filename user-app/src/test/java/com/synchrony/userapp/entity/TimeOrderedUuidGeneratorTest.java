@@ -0,0 +1,75 @@
+package com.synchrony.userapp.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TimeOrderedUuidGeneratorTest {
+
+    private static long millis(final UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+
+    @Test
+    public void versionAndVariantTest() {
+        long before = System.currentTimeMillis();
+        UUID id = TimeOrderedUuidGenerator.next();
+        long after = System.currentTimeMillis();
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        // the counter may run the timestamp slightly ahead of the clock
+        assertTrue(millis(id) >= before && millis(id) <= after + 1, id.toString());
+    }
+
+    @Test
+    public void monotonicWithinMillisecondTest() {
+        UUID previous = TimeOrderedUuidGenerator.next();
+        int sameMillisecond = 0;
+        for (int i = 0; i < 10000; i++) {
+            UUID next = TimeOrderedUuidGenerator.next();
+            assertTrue(Long.compareUnsigned(next.getMostSignificantBits(), previous.getMostSignificantBits()) > 0,
+                    previous + " before " + next);
+            assertTrue(Arrays.compareUnsigned(TimeOrderedUuidGenerator.toBytes(next),
+                    TimeOrderedUuidGenerator.toBytes(previous)) > 0);
+            if (millis(next) == millis(previous)) {
+                sameMillisecond++;
+            }
+            previous = next;
+        }
+        assertTrue(sameMillisecond > 0, "no two ids generated within the same millisecond");
+    }
+
+    @Test
+    public void uniqueAcrossThreadsTest() {
+        Set<UUID> ids = ConcurrentHashMap.newKeySet();
+        CompletableFuture<?>[] writers = new CompletableFuture<?>[4];
+        for (int t = 0; t < writers.length; t++) {
+            writers[t] = CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    ids.add(TimeOrderedUuidGenerator.next());
+                }
+            });
+        }
+        CompletableFuture.allOf(writers).join();
+        assertEquals(40000, ids.size());
+    }
+
+    @Test
+    public void bytesRoundTripTest() {
+        UUID id = TimeOrderedUuidGenerator.next();
+        byte[] bytes = TimeOrderedUuidGenerator.toBytes(id);
+        assertEquals(16, bytes.length);
+        assertEquals((byte) (id.getMostSignificantBits() >>> 56), bytes[0]);
+        assertEquals((byte) id.getLeastSignificantBits(), bytes[15]);
+        assertEquals(id, TimeOrderedUuidGenerator.fromBytes(bytes));
+        UUID random = UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef");
+        assertEquals(random, TimeOrderedUuidGenerator.fromBytes(TimeOrderedUuidGenerator.toBytes(random)));
+    }
+}
@@ -0,0 +1,114 @@
+package com.synchrony.userapp.repository;
+
+import com.synchrony.userapp.entity.User;
+import com.synchrony.userapp.entity.UserGallery;
+import com.synchrony.userapp.model.UserGalleryKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Locking and bulk delete queries against the Flyway schema on H2, the UUID parameters have to be bound
+ * as the BINARY(16) ids they are compared with.
+ */
+@DataJpaTest
+public class UserGalleryRepositoryTest {
+
+    @Autowired
+    private UserGalleryRepository userGalleryRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private User user;
+
+    private User other;
+
+    private UserGallery first;
+
+    private UserGallery second;
+
+    private UserGallery withoutContent;
+
+    private UserGallery ofOther;
+
+    @BeforeEach
+    public void setUp() {
+        user = entityManager.persist(new User(null, "vidhya@yopmail.com", "hash"));
+        other = entityManager.persist(new User(null, "other@yopmail.com", "hash"));
+        first = gallery(user, "key-1");
+        second = gallery(user, "key-2");
+        withoutContent = gallery(user, null);
+        ofOther = gallery(other, "key-3");
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private UserGallery gallery(final User owner, final String storageKey) {
+        UserGallery gallery = new UserGallery();
+        gallery.setUser(owner);
+        gallery.setStorageKey(storageKey);
+        gallery.setFileName("image.jpg");
+        return entityManager.persist(gallery);
+    }
+
+    private static Map<UUID, String> keys(final List<UserGalleryKey> rows) {
+        Map<UUID, String> keys = new HashMap<>();
+        rows.forEach(row -> keys.put(row.getId(), row.getStorageKey()));
+        return keys;
+    }
+
+    @Test
+    public void lockKeysByUserIdTest() {
+        Map<UUID, String> expected = new HashMap<>();
+        expected.put(first.getId(), "key-1");
+        expected.put(second.getId(), "key-2");
+        expected.put(withoutContent.getId(), null);
+        assertEquals(expected, keys(userGalleryRepository.lockKeysByUserId(user.getId())));
+        assertEquals(Collections.emptyList(), userGalleryRepository.lockKeysByUserId(UUID.randomUUID()));
+    }
+
+    @Test
+    public void lockKeysByUserIdAndIdInTest() {
+        Map<UUID, String> expected = new HashMap<>();
+        expected.put(first.getId(), "key-1");
+        expected.put(withoutContent.getId(), null);
+        assertEquals(expected, keys(userGalleryRepository.lockKeysByUserIdAndIdIn(
+                user.getId(), Arrays.asList(first.getId(), withoutContent.getId(), ofOther.getId()))));
+        assertEquals(Collections.singletonMap(ofOther.getId(), "key-3"), keys(userGalleryRepository
+                .lockKeysByUserIdAndIdIn(other.getId(), Collections.singletonList(ofOther.getId()))));
+    }
+
+    @Test
+    public void deleteByUserIdAndIdInTest() {
+        assertEquals(2, userGalleryRepository.deleteByUserIdAndIdIn(user.getId(),
+                Arrays.asList(first.getId(), withoutContent.getId(), ofOther.getId())));
+        assertEquals(Collections.singletonMap(second.getId(), "key-2"),
+                keys(userGalleryRepository.lockKeysByUserId(user.getId())));
+        assertEquals(Collections.singletonMap(ofOther.getId(), "key-3"),
+                keys(userGalleryRepository.lockKeysByUserId(other.getId())));
+    }
+
+    @Test
+    public void deleteLockedIdsKeepsRowsInsertedAfterTheLockTest() {
+        List<UUID> locked = userGalleryRepository.lockKeysByUserId(user.getId()).stream()
+                .map(UserGalleryKey::getId).collect(Collectors.toList());
+        UserGallery uploaded = gallery(user, "key-4");
+        entityManager.flush();
+        assertEquals(3, userGalleryRepository.deleteByUserIdAndIdIn(user.getId(), locked));
+        assertEquals(Collections.singletonMap(uploaded.getId(), "key-4"),
+                keys(userGalleryRepository.lockKeysByUserId(user.getId())));
+    }
+}
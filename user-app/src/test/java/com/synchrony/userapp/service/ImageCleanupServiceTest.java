@@ -0,0 +1,163 @@
+package com.synchrony.userapp.service;
+
+import com.synchrony.userapp.model.ImagesDeletedEvent;
+import com.synchrony.userapp.service.implemetation.ImageCleanupService;
+import com.synchrony.userapp.service.implemetation.ImageVariantService;
+import com.synchrony.userapp.storage.ImageContentCache;
+import com.synchrony.userapp.storage.ImageContentRegistry;
+import com.synchrony.userapp.storage.ReleasedReferences;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+
+@ExtendWith(MockitoExtension.class)
+public class ImageCleanupServiceTest {
+
+    @InjectMocks
+    private ImageCleanupService imageCleanupService;
+
+    @Mock
+    private ImageContentRegistry imageContentRegistry;
+
+    @Mock
+    private ImageContentCache imageContentCache;
+
+    @Mock
+    private ImageVariantService imageVariantService;
+
+    @Mock
+    private TaskExecutor imageCleanupExecutor;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(imageCleanupService, "batchSize", 2);
+        ReflectionTestUtils.setField(imageCleanupService, "sweepIntervalMs", 60000L);
+    }
+
+    private static ReleasedReferences released(final int released, final String... unreferenced) {
+        return new ReleasedReferences(released, Arrays.asList(unreferenced));
+    }
+
+    private static ReleasedReferences drained() {
+        return new ReleasedReferences(0, Collections.emptyList());
+    }
+
+    private void removes(final String... storageKeys) {
+        List<String> keys = Arrays.asList(storageKeys);
+        Mockito.when(imageContentRegistry.removeUnreferenced(keys)).thenReturn(keys);
+    }
+
+    @Test
+    public void releaseRunsOnExecutorTest() {
+        imageCleanupService.onImagesDeleted(new ImagesDeletedEvent("release"));
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(imageCleanupExecutor).execute(task.capture());
+        Mockito.verifyNoInteractions(imageContentRegistry);
+        Mockito.when(imageContentRegistry.releaseQueued("release", 2)).thenReturn(drained());
+        task.getValue().run();
+        Mockito.verify(imageContentRegistry).releaseQueued("release", 2);
+    }
+
+    @Test
+    public void releaseDrainsInBatchesTest() {
+        Mockito.when(imageContentRegistry.releaseQueued("release", 2))
+                .thenReturn(released(2, "key-1"), released(2), released(1, "key-2"), drained());
+        removes("key-1");
+        removes();
+        removes("key-2");
+        imageCleanupService.releaseImages("release");
+        Mockito.verify(imageContentRegistry, Mockito.times(4)).releaseQueued("release", 2);
+        Mockito.verify(imageContentCache).invalidate("key-1");
+        Mockito.verify(imageContentCache).invalidate("key-2");
+        Mockito.verify(imageVariantService).deleteAllVariants(Collections.singletonList("key-1"));
+        Mockito.verify(imageVariantService).deleteAllVariants(Collections.singletonList("key-2"));
+    }
+
+    @Test
+    public void contentWhichIsNotRemovedKeepsItsVariantsTest() {
+        Mockito.when(imageContentRegistry.releaseQueued("release", 2)).thenReturn(released(2, "key-1", "key-2"),
+                drained());
+        Mockito.when(imageContentRegistry.removeUnreferenced(Arrays.asList("key-1", "key-2")))
+                .thenReturn(Collections.singletonList("key-2"));
+        imageCleanupService.releaseImages("release");
+        Mockito.verify(imageContentCache, Mockito.never()).invalidate("key-1");
+        Mockito.verify(imageContentCache).invalidate("key-2");
+        Mockito.verify(imageVariantService).deleteAllVariants(Collections.singletonList("key-2"));
+    }
+
+    @Test
+    public void failedBatchStopsTheDrainTest() {
+        Mockito.when(imageContentRegistry.releaseQueued("release", 2))
+                .thenReturn(released(2, "key-1"))
+                .thenThrow(new QueryTimeoutException("image_content"));
+        removes("key-1");
+        imageCleanupService.releaseImages("release");
+        Mockito.verify(imageContentRegistry, Mockito.times(2)).releaseQueued("release", 2);
+        Mockito.verify(imageContentCache).invalidate("key-1");
+    }
+
+    @Test
+    public void failedVariantDeleteDoesNotStopTheDrainTest() {
+        Mockito.when(imageContentRegistry.releaseQueued("release", 2))
+                .thenReturn(released(2, "key-1"), released(1, "key-2"), drained());
+        removes("key-1");
+        removes("key-2");
+        Mockito.when(imageVariantService.deleteAllVariants(Collections.singletonList("key-1")))
+                .thenThrow(new QueryTimeoutException("image_variant"));
+        Mockito.when(imageVariantService.deleteAllVariants(Collections.singletonList("key-2"))).thenReturn(null);
+        imageCleanupService.releaseImages("release");
+        Mockito.verify(imageContentCache).invalidate("key-2");
+        Mockito.verify(imageVariantService).deleteAllVariants(Collections.singletonList("key-2"));
+    }
+
+    @Test
+    public void variantReleaseIsDrainedTest() {
+        Mockito.when(imageContentRegistry.releaseQueued("release", 2)).thenReturn(released(1, "key-1"), drained());
+        removes("key-1");
+        Mockito.when(imageVariantService.deleteAllVariants(Collections.singletonList("key-1"))).thenReturn("variants");
+        Mockito.when(imageContentRegistry.releaseQueued("variants", 2)).thenReturn(released(2, "variant-1"),
+                drained());
+        removes("variant-1");
+        Mockito.when(imageVariantService.deleteAllVariants(Collections.singletonList("variant-1"))).thenReturn(null);
+        imageCleanupService.releaseImages("release");
+        Mockito.verify(imageContentCache).invalidate("variant-1");
+    }
+
+    @Test
+    public void sweepTest() {
+        long startedAt = System.currentTimeMillis();
+        Mockito.when(imageContentRegistry.releaseQueuedBefore(any(), eq(2))).thenReturn(released(1, "key-1"),
+                drained());
+        removes("key-1");
+        Mockito.when(imageContentRegistry.findUnreferenced("", 2)).thenReturn(Arrays.asList("key-2", "key-3"));
+        Mockito.when(imageContentRegistry.findUnreferenced("key-3", 2)).thenReturn(Collections.emptyList());
+        Mockito.when(imageContentRegistry.removeUnreferenced(Arrays.asList("key-2", "key-3")))
+                .thenReturn(Collections.singletonList("key-3"));
+        imageCleanupService.sweep();
+        ArgumentCaptor<Instant> queuedBefore = ArgumentCaptor.forClass(Instant.class);
+        Mockito.verify(imageContentRegistry, Mockito.times(2)).releaseQueuedBefore(queuedBefore.capture(), eq(2));
+        // releases younger than a sweep interval are still drained after their commit
+        assertTrue(queuedBefore.getValue().toEpochMilli() <= System.currentTimeMillis() - 60000);
+        assertTrue(queuedBefore.getValue().toEpochMilli() >= startedAt - 60000);
+        Mockito.verify(imageContentCache).invalidate("key-1");
+        Mockito.verify(imageContentCache).invalidate("key-3");
+        Mockito.verify(imageContentCache, Mockito.never()).invalidate("key-2");
+    }
+}
@@ -0,0 +1,177 @@
+package com.synchrony.userapp.service;
+
+import com.synchrony.userapp.entity.ImageVariant;
+import com.synchrony.userapp.model.ImageUploadedEvent;
+import com.synchrony.userapp.repository.ImageVariantRepository;
+import com.synchrony.userapp.service.implemetation.ImageVariantService;
+import com.synchrony.userapp.storage.ImageContentCache;
+import com.synchrony.userapp.storage.ImageContentRegistry;
+import com.synchrony.userapp.storage.ImageStore;
+import com.synchrony.userapp.storage.StoredImage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+
+@ExtendWith(MockitoExtension.class)
+public class ImageVariantServiceTest {
+
+    private static final String SOURCE_KEY = "5f70bf18a086007016e948b04aed3b82103a36bea41755b6cddfaf10ace3c6ef";
+
+    @InjectMocks
+    private ImageVariantService imageVariantService;
+
+    @Mock
+    private ImageStore imageStore;
+
+    @Mock
+    private ImageContentRegistry imageContentRegistry;
+
+    @Mock
+    private ImageContentCache imageContentCache;
+
+    @Mock
+    private ImageVariantRepository imageVariantRepository;
+
+    @Mock
+    private TaskExecutor imageVariantExecutor;
+
+    /**
+     * Dimensions of every variant handed to the store, in order.
+     */
+    private final List<Dimension> stored = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(imageVariantService, "sizes", new int[] {160, 640});
+        ReflectionTestUtils.setField(imageVariantService, "maxPixels", 40000000L);
+    }
+
+    private void storeVariants() throws IOException {
+        Mockito.when(imageStore.store(any())).thenAnswer(invocation -> {
+            InputStream content = invocation.getArgument(0);
+            BufferedImage variant = ImageIO.read(content);
+            stored.add(new Dimension(variant.getWidth(), variant.getHeight()));
+            return new StoredImage("staged-" + stored.size(), 100, "variant-" + stored.size());
+        });
+    }
+
+    private static byte[] encode(final int width, final int height, final String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height,
+                "png".equals(format) ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void generateVariantsTest() throws IOException {
+        Mockito.when(imageStore.load(SOURCE_KEY)).thenReturn(new ByteArrayResource(encode(1000, 500, "jpeg")));
+        storeVariants();
+        imageVariantService.generateVariants(SOURCE_KEY);
+        assertEquals(new Dimension(160, 80), stored.get(0));
+        assertEquals(new Dimension(640, 320), stored.get(1));
+        ArgumentCaptor<ImageVariant> variants = ArgumentCaptor.forClass(ImageVariant.class);
+        Mockito.verify(imageVariantRepository, Mockito.times(2)).save(variants.capture());
+        assertEquals(160, variants.getAllValues().get(0).getMaxDimension().intValue());
+        assertEquals("image/jpeg", variants.getAllValues().get(0).getContentType());
+        assertEquals(SOURCE_KEY, variants.getAllValues().get(1).getSourceKey());
+        assertEquals("variant-2", variants.getAllValues().get(1).getStorageKey());
+        Mockito.verify(imageContentRegistry, Mockito.times(2)).reference(any());
+    }
+
+    @Test
+    public void resizeKeepsAspectRatioOfPortraitImagesTest() throws IOException {
+        Mockito.when(imageStore.load(SOURCE_KEY)).thenReturn(new ByteArrayResource(encode(300, 1200, "jpeg")));
+        storeVariants();
+        imageVariantService.generateVariants(SOURCE_KEY);
+        assertEquals(new Dimension(40, 160), stored.get(0));
+        assertEquals(new Dimension(160, 640), stored.get(1));
+    }
+
+    @Test
+    public void noVariantAtOrAboveOriginalSizeTest() throws IOException {
+        Mockito.when(imageStore.load(SOURCE_KEY)).thenReturn(new ByteArrayResource(encode(640, 200, "png")));
+        storeVariants();
+        imageVariantService.generateVariants(SOURCE_KEY);
+        assertEquals(1, stored.size());
+        assertEquals(new Dimension(160, 50), stored.get(0));
+        ArgumentCaptor<ImageVariant> variant = ArgumentCaptor.forClass(ImageVariant.class);
+        Mockito.verify(imageVariantRepository).save(variant.capture());
+        assertEquals("image/png", variant.getValue().getContentType());
+    }
+
+    @Test
+    public void imageAbovePixelCapIsNotDecodedTest() throws IOException {
+        ReflectionTestUtils.setField(imageVariantService, "maxPixels", 1000L * 500 - 1);
+        Mockito.when(imageStore.load(SOURCE_KEY)).thenReturn(new ByteArrayResource(encode(1000, 500, "jpeg")));
+        imageVariantService.generateVariants(SOURCE_KEY);
+        Mockito.verify(imageStore, Mockito.never()).store(any());
+        Mockito.verifyNoInteractions(imageContentRegistry);
+        Mockito.verify(imageVariantRepository, Mockito.never()).save(any());
+    }
+
+    @Test
+    public void unreadableContentGetsNoVariantsTest() throws IOException {
+        Mockito.when(imageStore.load(SOURCE_KEY)).thenReturn(new ByteArrayResource("not an image".getBytes()));
+        imageVariantService.generateVariants(SOURCE_KEY);
+        Mockito.verify(imageStore, Mockito.never()).store(any());
+    }
+
+    @Test
+    public void existingVariantsAreNotGeneratedAgainTest() throws IOException {
+        Mockito.when(imageVariantRepository.existsBySourceKey(SOURCE_KEY)).thenReturn(true);
+        imageVariantService.generateVariants(SOURCE_KEY);
+        Mockito.verify(imageStore, Mockito.never()).load(any());
+    }
+
+    @Test
+    public void onImageUploadedRunsOnExecutorTest() {
+        imageVariantService.onImageUploaded(new ImageUploadedEvent(SOURCE_KEY, "image/jpeg"));
+        Mockito.verify(imageVariantExecutor).execute(any());
+        Mockito.verifyNoInteractions(imageStore);
+    }
+
+    @Test
+    public void deleteAllVariantsQueuesTheirReleaseTest() {
+        List<String> sourceKeys = Arrays.asList(SOURCE_KEY, "3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7");
+        Mockito.when(imageVariantRepository.findStorageKeysBySourceKeyIn(sourceKeys))
+                .thenReturn(Arrays.asList("variant-1", "variant-2"));
+        Mockito.when(imageContentRegistry.queueRelease(Arrays.asList("variant-1", "variant-2"))).thenReturn("release");
+        assertEquals("release", imageVariantService.deleteAllVariants(sourceKeys));
+        Mockito.verify(imageVariantRepository).deleteBySourceKeyIn(sourceKeys);
+        Mockito.verifyNoInteractions(imageContentCache);
+    }
+
+    @Test
+    public void deleteAllVariantsWithoutVariantsTest() {
+        Mockito.when(imageVariantRepository.findStorageKeysBySourceKeyIn(Collections.singletonList(SOURCE_KEY)))
+                .thenReturn(Collections.emptyList());
+        assertNull(imageVariantService.deleteAllVariants(Collections.singletonList(SOURCE_KEY)));
+        assertNull(imageVariantService.deleteAllVariants(Collections.emptyList()));
+        Mockito.verify(imageVariantRepository, Mockito.never()).deleteBySourceKeyIn(any());
+        Mockito.verifyNoInteractions(imageContentRegistry);
+    }
+}
@@ -0,0 +1,111 @@
+package com.synchrony.userapp.service;
+
+import com.synchrony.userapp.exception.AuthenticationBusyException;
+import com.synchrony.userapp.service.implemetation.PasswordHasher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class PasswordHasherTest {
+
+    private final BCryptPasswordEncoder passwordEncoder = Mockito.spy(new BCryptPasswordEncoder(4));
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private ThreadPoolTaskExecutor executor;
+
+    private PasswordHasher passwordHasher;
+
+    @BeforeEach
+    public void setUp() {
+        passwordHasher = hasher(1, 1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    private PasswordHasher hasher(final int poolSize, final int queueCapacity) {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.initialize();
+        PasswordHasher hasher = new PasswordHasher();
+        ReflectionTestUtils.setField(hasher, "passwordEncoder", passwordEncoder);
+        ReflectionTestUtils.setField(hasher, "passwordHashingExecutor", executor);
+        ReflectionTestUtils.setField(hasher, "timeoutMs", 200L);
+        hasher.init();
+        return hasher;
+    }
+
+    /**
+     * Keeps the only worker of the pool busy until the test ends.
+     */
+    private void occupyWorker() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        started.await();
+    }
+
+    @Test
+    public void hashAndMatchTest() throws AuthenticationBusyException {
+        String hash = passwordHasher.hash("testing");
+        assertTrue(passwordHasher.isHash(hash));
+        assertTrue(passwordHasher.matches("testing", hash));
+        assertFalse(passwordHasher.matches("wrong", hash));
+        assertFalse(passwordHasher.needsRehash(hash));
+        assertTrue(passwordHasher.needsRehash("testing"));
+    }
+
+    @Test
+    public void unknownUserIsCheckedAgainstDummyHashTest() throws AuthenticationBusyException {
+        String unknownUserHash = (String) ReflectionTestUtils.getField(passwordHasher, "unknownUserHash");
+        assertTrue(passwordHasher.isHash(unknownUserHash));
+        assertFalse(passwordHasher.matches("unknown-user", null));
+        Mockito.verify(passwordEncoder).matches(eq("unknown-user"), eq(unknownUserHash));
+    }
+
+    @Test
+    public void timeoutIsBusyTest() throws InterruptedException {
+        occupyWorker();
+        assertThrows(AuthenticationBusyException.class, () -> passwordHasher.hash("testing"));
+        // the timed out task was cancelled, it is not hashed once the worker is free
+        release.countDown();
+        executor.getThreadPoolExecutor().shutdown();
+        assertTrue(executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS));
+        Mockito.verify(passwordEncoder, Mockito.never()).encode("testing");
+    }
+
+    @Test
+    public void rejectedExecutionIsBusyTest() throws InterruptedException {
+        executor.shutdown();
+        passwordHasher = hasher(1, 0);
+        occupyWorker();
+        long started = System.nanoTime();
+        assertThrows(AuthenticationBusyException.class, () -> passwordHasher.matches("testing", null));
+        // rejected right away instead of waiting for the timeout
+        assertTrue(System.nanoTime() - started < 200_000_000L);
+    }
+}
@@ -0,0 +1,140 @@
+package com.synchrony.userapp.service;
+
+import com.synchrony.userapp.config.CacheConfiguration;
+import com.synchrony.userapp.config.JwtUtils;
+import com.synchrony.userapp.config.TokenRevocationList;
+import com.synchrony.userapp.entity.User;
+import com.synchrony.userapp.metrics.ImageMetrics;
+import com.synchrony.userapp.model.AccountDeletedEvent;
+import com.synchrony.userapp.repository.UserGalleryRepository;
+import com.synchrony.userapp.repository.UserRepository;
+import com.synchrony.userapp.service.implemetation.ImageVariantService;
+import com.synchrony.userapp.service.implemetation.PasswordHasher;
+import com.synchrony.userapp.service.implemetation.PrincipalCacheEvictor;
+import com.synchrony.userapp.service.implemetation.UploadLimiter;
+import com.synchrony.userapp.service.implemetation.UserServiceImpl;
+import com.synchrony.userapp.storage.ImageContentCache;
+import com.synchrony.userapp.storage.ImageContentRegistry;
+import com.synchrony.userapp.storage.ImageStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Principal cache in front of loadUserByUsername and its eviction, with the caching proxies of a real context.
+ */
+@SpringBootTest(classes = {UserServiceImpl.class, PrincipalCacheEvictor.class, CacheConfiguration.class},
+        properties = "app.security.admin-emails=admin@yopmail.com")
+@ImportAutoConfiguration(CacheAutoConfiguration.class)
+public class PrincipalCacheTest {
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private UserGalleryRepository userGalleryRepository;
+
+    @MockBean
+    private JwtUtils jwtUtils;
+
+    @MockBean
+    private TokenRevocationList tokenRevocationList;
+
+    @MockBean
+    private ImageStore imageStore;
+
+    @MockBean
+    private ImageMetrics imageMetrics;
+
+    @MockBean
+    private UploadLimiter uploadLimiter;
+
+    @MockBean
+    private PasswordHasher passwordHasher;
+
+    @MockBean
+    private ImageContentRegistry imageContentRegistry;
+
+    @MockBean
+    private ImageVariantService imageVariantService;
+
+    @MockBean
+    private ImageContentCache imageContentCache;
+
+    @BeforeEach
+    public void setUp() {
+        cacheManager.getCache(CacheConfiguration.PRINCIPAL_CACHE).clear();
+    }
+
+    @Test
+    public void principalIsLoadedOnceTest() {
+        Mockito.when(userRepository.findByEmail("vidhya@yopmail.com")).thenReturn(Optional.of(
+                new User(UUID.randomUUID(), "vidhya@yopmail.com", "hash")));
+        UserDetails first = userDetailsService.loadUserByUsername("vidhya@yopmail.com");
+        UserDetails second = userDetailsService.loadUserByUsername("vidhya@yopmail.com");
+        assertSame(first, second);
+        assertTrue(first.getAuthorities().isEmpty());
+        Mockito.verify(userRepository, Mockito.times(1)).findByEmail("vidhya@yopmail.com");
+    }
+
+    @Test
+    public void deletedAccountIsEvictedTest() {
+        Mockito.when(userRepository.findByEmail("vidhya@yopmail.com")).thenReturn(Optional.of(
+                new User(UUID.randomUUID(), "vidhya@yopmail.com", "hash")));
+        userDetailsService.loadUserByUsername("vidhya@yopmail.com");
+        // published outside of a transaction, so the listener runs right away
+        eventPublisher.publishEvent(new AccountDeletedEvent("vidhya@yopmail.com"));
+        assertNull(cacheManager.getCache(CacheConfiguration.PRINCIPAL_CACHE).get("vidhya@yopmail.com"));
+        userDetailsService.loadUserByUsername("vidhya@yopmail.com");
+        Mockito.verify(userRepository, Mockito.times(2)).findByEmail("vidhya@yopmail.com");
+    }
+
+    @Test
+    public void unknownUserIsNotCachedTest() {
+        Mockito.when(userRepository.findByEmail("unknown@yopmail.com")).thenReturn(Optional.empty());
+        assertThrows(UsernameNotFoundException.class,
+                () -> userDetailsService.loadUserByUsername("unknown@yopmail.com"));
+        assertThrows(UsernameNotFoundException.class,
+                () -> userDetailsService.loadUserByUsername("unknown@yopmail.com"));
+        Mockito.verify(userRepository, Mockito.times(2)).findByEmail("unknown@yopmail.com");
+    }
+
+    @Test
+    public void adminEmailGetsAdminRoleTest() {
+        Mockito.when(userRepository.findByEmail("admin@yopmail.com")).thenReturn(Optional.of(
+                new User(UUID.randomUUID(), "admin@yopmail.com", "hash")));
+        UserDetails admin = userDetailsService.loadUserByUsername("admin@yopmail.com");
+        assertEquals(1, admin.getAuthorities().size());
+        GrantedAuthority role = admin.getAuthorities().iterator().next();
+        assertEquals("ROLE_ADMIN", role.getAuthority());
+    }
+}
@@ -1,32 +1,74 @@
 package com.synchrony.userapp.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.synchrony.userapp.config.JwtUtils;
+import com.synchrony.userapp.config.TokenRevocationList;
+import com.synchrony.userapp.entity.ImageVariant;
 import com.synchrony.userapp.entity.User;
 import com.synchrony.userapp.entity.UserGallery;
+import com.synchrony.userapp.exception.AuthenticationBusyException;
 import com.synchrony.userapp.exception.ImageNotFoundException;
+import com.synchrony.userapp.exception.InvalidCursorException;
+import com.synchrony.userapp.exception.InvalidTokenException;
 import com.synchrony.userapp.exception.RecordAlreadyExistsException;
 import com.synchrony.userapp.exception.RecordNotFoundException;
+import com.synchrony.userapp.exception.UnsupportedImageTypeException;
+import com.synchrony.userapp.exception.UploadLimitExceededException;
+import com.synchrony.userapp.metrics.ImageMetrics;
+import com.synchrony.userapp.model.AccountDeletedEvent;
+import com.synchrony.userapp.model.ImageDataCursor;
+import com.synchrony.userapp.model.ImageDataQuery;
+import com.synchrony.userapp.model.ImageDownload;
+import com.synchrony.userapp.model.ImageUploadedEvent;
+import com.synchrony.userapp.model.ImagesDeletedEvent;
+import com.synchrony.userapp.model.ImageUploadResult;
+import com.synchrony.userapp.model.TokenResponse;
+import com.synchrony.userapp.model.UserGalleryKey;
+import com.synchrony.userapp.model.UserGalleryMetadata;
 import com.synchrony.userapp.model.UserModel;
 import com.synchrony.userapp.repository.UserGalleryRepository;
 import com.synchrony.userapp.repository.UserRepository;
+import com.synchrony.userapp.service.implemetation.ImageVariantService;
+import com.synchrony.userapp.service.implemetation.PasswordHasher;
+import com.synchrony.userapp.service.implemetation.UploadLimiter;
 import com.synchrony.userapp.service.implemetation.UserServiceImpl;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
+import com.synchrony.userapp.storage.ImageContentCache;
+import com.synchrony.userapp.storage.ImageContentRegistry;
+import com.synchrony.userapp.storage.ImageStore;
+import com.synchrony.userapp.storage.StoredImage;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.management.GarbageCollectorMXBean;
+import java.time.Instant;
+import java.util.Date;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -48,9 +90,38 @@ public class UserServiceTest {
     @Mock
     private JwtUtils jwtTokenUtil;
 
+    @Mock
+    private TokenRevocationList tokenRevocationList;
+
+    @Mock
+    private ImageStore imageStore;
+
+    @Mock
+    private ImageMetrics imageMetrics;
+
+    @Mock
+    private UploadLimiter uploadLimiter;
+
+    @Mock
+    private PasswordHasher passwordHasher;
+
+    @Mock
+    private ImageContentRegistry imageContentRegistry;
+
+    @Mock
+    private ImageVariantService imageVariantService;
+
+    @Mock
+    private ImageContentCache imageContentCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @Mock
     private UserDetailsService userDetailsService;
 
+    private static final String HASHED_PASSWORD = "$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z2.xV5ncCO8s6bqJ0x9kaD5e";
+
     private UserModel userModel;
 
     private User user;
@@ -62,92 +133,471 @@ public class UserServiceTest {
 
     @BeforeEach
     public void setUp() {
+        ReflectionTestUtils.setField(userService, "defaultPageSize", 50);
+        ReflectionTestUtils.setField(userService, "maxPageSize", 200);
         userModel = new UserModel("vidhya@yopmail.com", "testing");
         user = new User(UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef"),"vidhya@yopmail.com","testing" );
         gallery.setUser(user);
         gallery.setFileName("image.png");
-        byte[] image = new byte[100];
-        gallery.setImage(image);
-        JSONArray json = new JSONArray();
-        JSONObject obj = new JSONObject();
-        obj.put("user", user);
-        JSONArray galleries = new JSONArray();
-        JSONObject galleryObj = new JSONObject();
-        galleryObj.put("gallery", gallery);
-        obj.put("galleries",galleryObj);
-        json.add(obj);
+        gallery.setStorageKey("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7");
     }
 
     @Test
-    public void registerUserTest() throws RecordAlreadyExistsException {
+    public void registerUserTest() throws RecordAlreadyExistsException, AuthenticationBusyException {
         Mockito.when(userRepository.save(any())).thenReturn(user);
-        Mockito.when(jwtTokenUtil.generateJwtToken(any())).thenReturn(token);
-        String token = userService.registerUser(userModel);
+        Mockito.when(jwtTokenUtil.generateJwtToken(any(), any())).thenReturn(token);
+        Mockito.when(passwordHasher.hash("testing")).thenReturn(HASHED_PASSWORD);
+        TokenResponse tokens = userService.registerUser(userModel);
+        assertEquals(token, tokens.getAccessToken());
+        ArgumentCaptor<User> saved = ArgumentCaptor.forClass(User.class);
+        Mockito.verify(userRepository).save(saved.capture());
+        assertEquals(HASHED_PASSWORD, saved.getValue().getPassword());
+    }
+
+    @Test
+    public void registerUserWhenEmailTakenConcurrentlyTest() throws AuthenticationBusyException {
+        Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.empty());
+        Mockito.when(passwordHasher.hash("testing")).thenReturn(HASHED_PASSWORD);
+        Mockito.when(userRepository.save(any())).thenThrow(new DataIntegrityViolationException("uk_users_email"));
+        assertThrows(RecordAlreadyExistsException.class, () -> userService.registerUser(userModel));
     }
 
     @Test
     public void registerUserExceptionTest() {
         Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(user));
-        Mockito.when(jwtTokenUtil.generateJwtToken(any())).thenReturn(token);
+        Mockito.when(jwtTokenUtil.generateJwtToken(any(), any())).thenReturn(token);
         assertThrows(RecordAlreadyExistsException.class, () -> {
             userService.registerUser(userModel);
         });
     }
 
    @Test
-    public void loginTest() throws RecordNotFoundException {
-        Mockito.when(userRepository.findByEmailAndPassword(any(),any())).thenReturn(Optional.ofNullable(user));
-       Mockito.when(jwtTokenUtil.generateJwtToken(any())).thenReturn(token);
-       String token = userService.login(userModel);
+    public void loginTest() throws RecordNotFoundException, AuthenticationBusyException {
+       user.setPassword(HASHED_PASSWORD);
+       Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(user));
+       Mockito.when(passwordHasher.isHash(HASHED_PASSWORD)).thenReturn(true);
+       Mockito.when(passwordHasher.matches("testing", HASHED_PASSWORD)).thenReturn(true);
+       Mockito.when(jwtTokenUtil.generateJwtToken(any(), any())).thenReturn(token);
+       TokenResponse tokens = userService.login(userModel);
+       assertEquals(token, tokens.getAccessToken());
+       Mockito.verify(userRepository, Mockito.never()).save(any());
     }
 
     @Test
-    public void loginWhenUserNotFoundTest() throws RecordNotFoundException {
-        Mockito.when(userRepository.findByEmailAndPassword(any(),any())).thenReturn(Optional.ofNullable(null));
+    public void loginWhenUserNotFoundTest() throws RecordNotFoundException, AuthenticationBusyException {
+        Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(null));
         assertThrows(RecordNotFoundException.class, () -> {
             userService.login(userModel);
         });
+        Mockito.verify(passwordHasher).matches("testing", null);
     }
 
     @Test
-    public void uploadImageTest() throws IOException, RecordNotFoundException {
+    public void loginRehashesPlaintextPasswordTest() throws RecordNotFoundException, AuthenticationBusyException {
+        Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(user));
+        Mockito.when(passwordHasher.needsRehash("testing")).thenReturn(true);
+        Mockito.when(passwordHasher.hash("testing")).thenReturn(HASHED_PASSWORD);
+        Mockito.when(jwtTokenUtil.generateJwtToken(any(), any())).thenReturn(token);
+        userService.login(userModel);
+        Mockito.verify(userRepository).save(user);
+        assertEquals(HASHED_PASSWORD, user.getPassword());
+    }
+
+    @Test
+    public void loginWhenRehashIsBusyTest() throws RecordNotFoundException, AuthenticationBusyException {
+        Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(user));
+        Mockito.when(passwordHasher.needsRehash("testing")).thenReturn(true);
+        Mockito.when(passwordHasher.hash("testing"))
+                .thenThrow(new AuthenticationBusyException("Too many login attempts in progress, try again later"));
+        Mockito.when(jwtTokenUtil.generateJwtToken(any(), any())).thenReturn(token);
+        assertEquals(token, userService.login(userModel).getAccessToken());
+        Mockito.verify(userRepository, Mockito.never()).save(any());
+        assertEquals("testing", user.getPassword());
+    }
+
+    @Test
+    public void refreshTokenTest() throws InvalidTokenException {
+        Claims claims = refreshClaims();
+        Mockito.when(jwtTokenUtil.parseAndVerify("refresh")).thenReturn(claims);
+        Mockito.when(jwtTokenUtil.isRefreshToken(claims)).thenReturn(true);
+        Mockito.when(tokenRevocationList.revoke(claims.getId(), claims.getExpiration())).thenReturn(true);
+        Mockito.when(userRepository.findByEmail("vidhya@yopmail.com")).thenReturn(Optional.of(user));
+        Mockito.when(jwtTokenUtil.generateJwtToken(any(), any())).thenReturn(token);
+        Mockito.when(jwtTokenUtil.getJwtExpirationMs()).thenReturn(900000L);
+        TokenResponse tokens = userService.refreshToken("refresh");
+        assertEquals(token, tokens.getAccessToken());
+        assertEquals(900, tokens.getExpiresIn());
+        Mockito.verifyNoInteractions(passwordHasher);
+        // a token without a family starts one named after it
+        Mockito.verify(jwtTokenUtil).generateRefreshToken(any(), Mockito.eq(claims.getId()));
+    }
+
+    @Test
+    public void refreshTokenKeepsFamilyTest() throws InvalidTokenException {
+        Claims claims = refreshClaims();
+        Mockito.when(jwtTokenUtil.parseAndVerify("refresh")).thenReturn(claims);
+        Mockito.when(jwtTokenUtil.isRefreshToken(claims)).thenReturn(true);
+        Mockito.when(jwtTokenUtil.getFamilyId(claims)).thenReturn("family");
+        Mockito.when(tokenRevocationList.revoke(claims.getId(), claims.getExpiration())).thenReturn(true);
+        Mockito.when(userRepository.findByEmail("vidhya@yopmail.com")).thenReturn(Optional.of(user));
+        userService.refreshToken("refresh");
+        Mockito.verify(tokenRevocationList).isRevokedInStore("family");
+        Mockito.verify(jwtTokenUtil).generateJwtToken(any(), Mockito.eq("family"));
+        Mockito.verify(jwtTokenUtil).generateRefreshToken(any(), Mockito.eq("family"));
+    }
+
+    @Test
+    public void refreshTokenOfRevokedFamilyTest() {
+        Claims claims = refreshClaims();
+        Mockito.when(jwtTokenUtil.parseAndVerify("refresh")).thenReturn(claims);
+        Mockito.when(jwtTokenUtil.isRefreshToken(claims)).thenReturn(true);
+        Mockito.when(jwtTokenUtil.getFamilyId(claims)).thenReturn("family");
+        Mockito.when(tokenRevocationList.isRevokedInStore("family")).thenReturn(true);
+        assertThrows(InvalidTokenException.class, () -> userService.refreshToken("refresh"));
+        Mockito.verify(tokenRevocationList, Mockito.never()).revoke(any(), any());
+        Mockito.verify(jwtTokenUtil, Mockito.never()).generateJwtToken(any(), any());
+    }
+
+    @Test
+    public void refreshTokenWhenReusedTest() {
+        Claims claims = refreshClaims();
+        Mockito.when(jwtTokenUtil.parseAndVerify("refresh")).thenReturn(claims);
+        Mockito.when(jwtTokenUtil.isRefreshToken(claims)).thenReturn(true);
+        Mockito.when(jwtTokenUtil.getFamilyId(claims)).thenReturn("family");
+        Mockito.when(jwtTokenUtil.getRefreshExpirationMs()).thenReturn(60000L);
+        Mockito.when(tokenRevocationList.revoke(claims.getId(), claims.getExpiration())).thenReturn(false);
+        assertThrows(InvalidTokenException.class, () -> userService.refreshToken("refresh"));
+        Mockito.verify(jwtTokenUtil, Mockito.never()).generateJwtToken(any(), any());
+        // the replay revokes every token issued from the same login
+        ArgumentCaptor<Date> familyExpiry = ArgumentCaptor.forClass(Date.class);
+        Mockito.verify(tokenRevocationList).revoke(Mockito.eq("family"), familyExpiry.capture());
+        assertTrue(familyExpiry.getValue().getTime() > System.currentTimeMillis());
+    }
+
+    private Claims refreshClaims() {
+        return Jwts.claims()
+                .setId(UUID.randomUUID().toString())
+                .setSubject("vidhya@yopmail.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60000));
+    }
+
+    @Test
+    public void uploadImageTest() throws IOException, RecordNotFoundException, UploadLimitExceededException,
+            UnsupportedImageTypeException {
         MockMultipartFile file =
-                new MockMultipartFile("image", "img.jpg", "MediaType.IMAGE_JPEG_VALUE", new byte[1024]);
+                new MockMultipartFile("image", "img.jpg", "MediaType.IMAGE_JPEG_VALUE", jpeg(1024));
         UserGallery gallery = mock(UserGallery.class);
         Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(user));
         Mockito.when(userRepository.save(any())).thenReturn(gallery);
+        Mockito.when(imageStore.store(any())).thenReturn(new StoredImage("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7", 1024,
+                "5f70bf18a086007016e948b04aed3b82103a36bea41755b6cddfaf10ace3c6ef"));
+        Mockito.when(imageStore.load(any())).thenReturn(new ByteArrayResource(jpeg(1024)));
         assertTrue(userService.uploadImage("vidhya@yopmail.com",file));
+        ArgumentCaptor<UserGallery> saved = ArgumentCaptor.forClass(UserGallery.class);
+        Mockito.verify(userGalleryRepository).save(saved.capture());
+        assertEquals(1024L, saved.getValue().getFileSize());
+        assertEquals("5f70bf18a086007016e948b04aed3b82103a36bea41755b6cddfaf10ace3c6ef",
+                saved.getValue().getContentHash());
+        assertEquals(saved.getValue().getContentHash(), saved.getValue().getStorageKey());
+        assertEquals("image/jpeg", saved.getValue().getContentType());
+        Mockito.verify(uploadLimiter).release();
+        Mockito.verify(imageContentRegistry).reference(any());
+        Mockito.verify(eventPublisher).publishEvent(any(ImageUploadedEvent.class));
+    }
+
+    @Test
+    public void uploadImageLimitExceededTest() throws UploadLimitExceededException {
+        MockMultipartFile file =
+                new MockMultipartFile("image", "img.jpg", "MediaType.IMAGE_JPEG_VALUE", jpeg(1024));
+        Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(user));
+        Mockito.doThrow(new UploadLimitExceededException("Too many uploads in progress, try again later"))
+                .when(uploadLimiter).acquire();
+        assertThrows(UploadLimitExceededException.class, () -> userService.uploadImage("vidhya@yopmail.com", file));
+        Mockito.verifyNoInteractions(imageStore);
     }
 
     @Test
-    public void getImageTest() throws RecordNotFoundException {
+    public void uploadImageUnsupportedTypeTest() {
+        MockMultipartFile file =
+                new MockMultipartFile("image", "img.jpg", "image/jpeg", "%PDF-1.7".getBytes());
+        Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(user));
+        assertThrows(UnsupportedImageTypeException.class, () -> userService.uploadImage("vidhya@yopmail.com", file));
+        Mockito.verifyNoInteractions(imageStore);
+    }
+
+    @Test
+    public void uploadImagesTest() throws IOException, RecordNotFoundException {
+        List<MultipartFile> files = Arrays.asList(
+                new MockMultipartFile("images", "one.jpg", "image/jpeg", jpeg(1024)),
+                new MockMultipartFile("images", "empty.jpg", "image/jpeg", new byte[0]),
+                new MockMultipartFile("images", "two.jpg", "image/jpeg", jpeg(2048)));
+        UUID galleryId = UUID.fromString("e1f0a6c2-8d4b-4b7e-9a55-0c3d2f1b6a90");
+        Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(user));
+        Mockito.when(imageStore.store(any())).thenReturn(
+                new StoredImage("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7", 1024, "a1"),
+                new StoredImage("4b3a0d2f6c8e5f9ab1c2d3e4f5a6b7c8", 2048, "b2"));
+        Mockito.when(imageStore.load(any())).thenReturn(new ByteArrayResource(jpeg(1024)));
+        Mockito.when(userGalleryRepository.saveAll(any())).thenAnswer(invocation -> {
+            Iterable<UserGallery> galleries = invocation.getArgument(0);
+            galleries.forEach(saved -> saved.setId(galleryId));
+            return galleries;
+        });
+        List<ImageUploadResult> results = userService.uploadImages("vidhya@yopmail.com", files);
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isUploaded());
+        assertEquals(galleryId, results.get(0).getGalleryId());
+        assertFalse(results.get(1).isUploaded());
+        assertTrue(results.get(2).isUploaded());
+        Mockito.verify(userRepository, Mockito.times(1)).findByEmail(any());
+        Mockito.verify(userGalleryRepository, Mockito.times(1)).saveAll(any());
+        Mockito.verify(userGalleryRepository, Mockito.never()).save(any());
+    }
+
+    @Test
+    public void uploadImagesWhenOneFailsTest() throws IOException, RecordNotFoundException {
+        List<MultipartFile> files = Arrays.asList(
+                new MockMultipartFile("images", "one.jpg", "image/jpeg", jpeg(1024)),
+                new MockMultipartFile("images", "two.jpg", "image/jpeg", jpeg(2048)),
+                new MockMultipartFile("images", "three.jpg", "image/jpeg", jpeg(512)));
+        StoredImage one = new StoredImage("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7", 1024, "a1");
+        StoredImage two = new StoredImage("4b3a0d2f6c8e5f9ab1c2d3e4f5a6b7c8", 2048, "b2");
+        StoredImage three = new StoredImage("5c4b1e3a7d9f6a0bc2d3e4f5a6b7c8d9", 512, "c3");
+        Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(user));
+        Mockito.when(imageStore.store(any())).thenReturn(one, two, three);
+        Mockito.when(imageContentRegistry.reference(two))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+        Mockito.when(imageStore.load("a1")).thenReturn(new ByteArrayResource(jpeg(1024)));
+        Mockito.when(imageStore.load("c3")).thenThrow(new IllegalStateException("store unavailable"));
+        Mockito.when(userGalleryRepository.saveAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        List<ImageUploadResult> results = userService.uploadImages("vidhya@yopmail.com", files);
+        assertTrue(results.get(0).isUploaded());
+        assertFalse(results.get(1).isUploaded());
+        assertEquals("Image could not be saved", results.get(1).getMessage());
+        assertFalse(results.get(2).isUploaded());
+        Mockito.verify(imageStore).discard(two);
+        Mockito.verify(imageContentRegistry, Mockito.never()).release("b2");
+        Mockito.verify(imageContentRegistry).release("c3");
+        Mockito.verify(imageContentRegistry, Mockito.never()).release("a1");
+        ArgumentCaptor<List<UserGallery>> saved = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(userGalleryRepository).saveAll(saved.capture());
+        assertEquals(1, saved.getValue().size());
+    }
+
+    @Test
+    public void getImageTest() throws RecordNotFoundException, IOException {
         Mockito.when(userGalleryRepository.findById(any())).thenReturn(Optional.ofNullable(gallery));
-        byte[] result =  userService.getImage(UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef"));
-        assertEquals(100, result.length);
+        Mockito.when(imageContentCache.load(gallery.getStorageKey())).thenReturn(new ByteArrayResource(new byte[100]));
+        ImageDownload download = userService.findImage(UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef"), null);
+        assertEquals("\"" + gallery.getStorageKey() + "\"", download.getETag());
+        Resource result =  userService.getImage(download);
+        assertEquals(100, result.contentLength());
+    }
+
+    @Test
+    public void getImageVariantTest() throws RecordNotFoundException, IOException {
+        ImageVariant variant = new ImageVariant();
+        variant.setStorageKey("9c1e5b7d4e8fa0b1c2d3e4f5a6b73f2a");
+        variant.setMaxDimension(160);
+        Mockito.when(userGalleryRepository.findById(any())).thenReturn(Optional.ofNullable(gallery));
+        Mockito.when(imageVariantService.findVariant(gallery.getStorageKey(), 120)).thenReturn(Optional.of(variant));
+        Mockito.when(imageContentCache.load(variant.getStorageKey())).thenReturn(new ByteArrayResource(new byte[10]));
+        ImageDownload download = userService.findImage(UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef"), 120);
+        assertEquals(variant.getStorageKey(), download.getStorageKey());
+        Resource result = userService.getImage(download);
+        assertEquals(10, result.contentLength());
     }
 
     @Test
     public void getImageNegativeTest() {
         Mockito.when(userRepository.findById( any())).thenReturn(Optional.ofNullable(null));
         assertThrows(RecordNotFoundException.class, () -> {
-            userService.getImage(UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef"));
+            userService.findImage(UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef"), null);
         });
     }
     @Test
     public void deleteImageTest() throws RecordNotFoundException {
-        Mockito.when(userGalleryRepository.findByUserId(any()));
+        Mockito.when(userGalleryRepository.findById(any())).thenReturn(Optional.ofNullable(null));
         assertThrows(RecordNotFoundException.class, () -> {
             userService.deleteImage(UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef"));
         });
     }
 
     @Test
-    public void getImageDataTest() throws RecordNotFoundException {
+    public void deleteImageRemovesStoredContentTest() throws RecordNotFoundException, IOException {
+        Mockito.when(userGalleryRepository.findById(any())).thenReturn(Optional.ofNullable(gallery));
+        userService.deleteImage(UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef"));
+        Mockito.verify(userGalleryRepository).delete(gallery);
+        Mockito.verify(imageContentRegistry).release(gallery.getStorageKey());
+        Mockito.verify(imageVariantService, Mockito.never()).deleteVariants(any());
+        Mockito.verify(imageContentCache, Mockito.never()).invalidate(any());
+    }
+
+    private static UserGalleryKey galleryKey(final UUID id, final String storageKey) {
+        return new UserGalleryKey() {
+            @Override
+            public UUID getId() {
+                return id;
+            }
+
+            @Override
+            public String getStorageKey() {
+                return storageKey;
+            }
+        };
+    }
+
+    @Test
+    public void deleteAccountTest() throws RecordNotFoundException {
+        UUID first = UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef");
+        UUID second = UUID.fromString("0189f7a2-5c1e-7b3d-9a4f-2c8e6d1b0a57");
+        UUID third = UUID.fromString("0189f7a2-5c1e-7b3d-9a4f-2c8e6d1b0a58");
+        UUID legacy = UUID.fromString("0189f7a2-5c1e-7b3d-9a4f-2c8e6d1b0a59");
+        Mockito.when(userRepository.findByEmail("vidhya@yopmail.com")).thenReturn(Optional.of(user));
+        Mockito.when(userGalleryRepository.lockKeysByUserId(user.getId()))
+                .thenReturn(Arrays.asList(galleryKey(first, "key-1"), galleryKey(second, "key-2"),
+                        galleryKey(third, "key-1"), galleryKey(legacy, null)))
+                .thenReturn(Collections.emptyList());
+        Mockito.when(userGalleryRepository.deleteByUserIdAndIdIn(user.getId(),
+                Arrays.asList(first, second, third, legacy))).thenReturn(4);
+        Mockito.when(imageContentRegistry.queueRelease(Arrays.asList("key-1", "key-2", "key-1"))).thenReturn("release");
+        assertEquals(4, userService.deleteAccount("vidhya@yopmail.com"));
+        Mockito.verify(userRepository).deleteUser(user.getId());
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(eventPublisher, Mockito.times(2)).publishEvent(events.capture());
+        assertEquals(new ImagesDeletedEvent("release"), events.getAllValues().get(0));
+        assertEquals(new AccountDeletedEvent("vidhya@yopmail.com"), events.getAllValues().get(1));
+        Mockito.verify(userGalleryRepository, Mockito.never()).findById(any());
+        Mockito.verify(imageContentRegistry, Mockito.never()).release(any());
+    }
+
+    @Test
+    public void deleteAccountRacingUploadTest() throws RecordNotFoundException {
+        UUID first = UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef");
+        UUID uploaded = UUID.fromString("0189f7a2-5c1e-7b3d-9a4f-2c8e6d1b0a57");
+        Mockito.when(userRepository.findByEmail("vidhya@yopmail.com")).thenReturn(Optional.of(user));
+        // the upload commits its row after the first lock, deleting by user id would remove it unreleased
+        Mockito.when(userGalleryRepository.lockKeysByUserId(user.getId()))
+                .thenReturn(Collections.singletonList(galleryKey(first, "key-1")))
+                .thenReturn(Collections.singletonList(galleryKey(uploaded, "key-2")))
+                .thenReturn(Collections.emptyList());
+        Mockito.when(userGalleryRepository.deleteByUserIdAndIdIn(user.getId(), Collections.singletonList(first)))
+                .thenReturn(1);
+        Mockito.when(userGalleryRepository.deleteByUserIdAndIdIn(user.getId(), Collections.singletonList(uploaded)))
+                .thenReturn(1);
+        Mockito.when(imageContentRegistry.queueRelease(Arrays.asList("key-1", "key-2"))).thenReturn("release");
+        assertEquals(2, userService.deleteAccount("vidhya@yopmail.com"));
+        InOrder inOrder = Mockito.inOrder(userGalleryRepository, userRepository);
+        inOrder.verify(userGalleryRepository, Mockito.times(3)).lockKeysByUserId(user.getId());
+        inOrder.verify(userRepository).deleteUser(user.getId());
+        Mockito.verify(eventPublisher).publishEvent(new ImagesDeletedEvent("release"));
+    }
+
+    @Test
+    public void deleteAccountFailingOnUncommittedUploadReleasesNothingTest() {
+        Mockito.when(userRepository.findByEmail("vidhya@yopmail.com")).thenReturn(Optional.of(user));
+        Mockito.when(userGalleryRepository.lockKeysByUserId(user.getId())).thenReturn(Collections.emptyList());
+        Mockito.when(userRepository.deleteUser(user.getId()))
+                .thenThrow(new DataIntegrityViolationException("fk_user_gallery_user"));
+        assertThrows(DataIntegrityViolationException.class, () -> userService.deleteAccount("vidhya@yopmail.com"));
+        Mockito.verifyNoInteractions(imageContentRegistry, eventPublisher);
+    }
+
+    @Test
+    public void deleteImagesOfUnknownUserTest() {
+        Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.empty());
+        assertThrows(RecordNotFoundException.class, () -> userService.deleteImages("vidhya@yopmail.com",
+                Arrays.asList(UUID.randomUUID())));
+        Mockito.verifyNoInteractions(userGalleryRepository);
+    }
+
+    @Test
+    public void deleteImagesTest() throws RecordNotFoundException {
+        UUID first = UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef");
+        UUID second = UUID.fromString("0189f7a2-5c1e-7b3d-9a4f-2c8e6d1b0a57");
+        Mockito.when(userRepository.findByEmail("vidhya@yopmail.com")).thenReturn(Optional.of(user));
+        Mockito.when(userGalleryRepository.lockKeysByUserIdAndIdIn(user.getId(), Arrays.asList(first, second)))
+                .thenReturn(Collections.singletonList(galleryKey(first, "key-1")));
+        Mockito.when(userGalleryRepository.deleteByUserIdAndIdIn(user.getId(), Collections.singletonList(first)))
+                .thenReturn(1);
+        Mockito.when(imageContentRegistry.queueRelease(Arrays.asList("key-1"))).thenReturn("release");
+        assertEquals(1, userService.deleteImages("vidhya@yopmail.com", Arrays.asList(first, second, first)));
+        Mockito.verify(eventPublisher).publishEvent(new ImagesDeletedEvent("release"));
+        Mockito.verify(userRepository, Mockito.never()).deleteUser(any());
+    }
+
+    @Test
+    public void deleteLastReferenceInvalidatesCacheTest() throws RecordNotFoundException {
+        Mockito.when(userGalleryRepository.findById(any())).thenReturn(Optional.ofNullable(gallery));
+        Mockito.when(imageContentRegistry.release(gallery.getStorageKey())).thenReturn(true);
+        userService.deleteImage(UUID.fromString("dc7812f3-3830-43e9-b637-9f3d39584bef"));
+        Mockito.verify(imageContentCache).invalidate(gallery.getStorageKey());
+        Mockito.verify(imageVariantService).deleteVariants(gallery.getStorageKey());
+    }
+
+    @Test
+    public void getImageDataTest() throws RecordNotFoundException, InvalidCursorException, IOException {
         Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(user));
-        List<UserGallery> galleries = new ArrayList<>();
-        galleries.add(gallery);
-        Mockito.when(userGalleryRepository.findByUserId(any())).thenReturn(galleries);
-        userService.getImagesData("vidhya.yopmail.com");
+        UserGalleryMetadata metadata = mock(UserGalleryMetadata.class);
+        when(metadata.getId()).thenReturn(UUID.randomUUID());
+        when(metadata.getFileName()).thenReturn("image.png");
+        Mockito.when(userGalleryRepository.streamMetadataByUserId(any(), any())).thenReturn(Stream.of(metadata));
+        ImageDataQuery query = userService.getImagesData("vidhya.yopmail.com", null, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        userService.writeImagesData(query, out);
+
+        JsonNode result = new ObjectMapper().readTree(out.toByteArray());
+        assertEquals(user.getEmail(), result.get(0).get("email").asText());
+        assertEquals("image.png", result.get(0).get("imageData").get(0).get("fileName").asText());
+        assertTrue(result.get(0).get("nextCursor").isNull());
     }
 
+    @Test
+    public void getImageDataEmptyTest() throws RecordNotFoundException, InvalidCursorException, IOException {
+        Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(user));
+        Mockito.when(userGalleryRepository.streamMetadataByUserId(any(), any())).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        userService.writeImagesData(userService.getImagesData("vidhya.yopmail.com", null, null), out);
+        assertEquals("[]", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void getImageDataNextPageTest() throws RecordNotFoundException, InvalidCursorException, IOException {
+        Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(user));
+        List<UserGalleryMetadata> galleries = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            UserGalleryMetadata metadata = mock(UserGalleryMetadata.class);
+            when(metadata.getId()).thenReturn(UUID.randomUUID());
+            when(metadata.getCreatedAt()).thenReturn(Instant.now());
+            galleries.add(metadata);
+        }
+        Mockito.when(userGalleryRepository.streamMetadataByUserId(any(), any())).thenReturn(galleries.stream());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        userService.writeImagesData(userService.getImagesData("vidhya.yopmail.com", 2, null), out);
+        JsonNode page = new ObjectMapper().readTree(out.toByteArray()).get(0);
+        assertEquals(2, page.get("imageData").size());
+
+        ImageDataCursor cursor = ImageDataCursor.decode(page.get("nextCursor").asText());
+        assertEquals(galleries.get(1).getId(), cursor.getId());
+        Mockito.when(userGalleryRepository.streamMetadataByUserIdAfter(any(), any(), any(), any()))
+                .thenReturn(Stream.empty());
+        userService.writeImagesData(userService.getImagesData("vidhya.yopmail.com", 2, cursor.encode()),
+                new ByteArrayOutputStream());
+        Mockito.verify(userGalleryRepository).streamMetadataByUserIdAfter(any(), any(), any(), any());
+    }
+
+    @Test
+    public void getImageDataInvalidCursorTest() {
+        Mockito.when(userRepository.findByEmail(any())).thenReturn(Optional.ofNullable(user));
+        assertThrows(InvalidCursorException.class, () -> {
+            userService.getImagesData("vidhya.yopmail.com", null, "not-a-cursor");
+        });
+    }
+
+    private static byte[] jpeg(final int size) {
+        byte[] content = new byte[size];
+        content[0] = (byte) 0xFF;
+        content[1] = (byte) 0xD8;
+        content[2] = (byte) 0xFF;
+        return content;
+    }
 }
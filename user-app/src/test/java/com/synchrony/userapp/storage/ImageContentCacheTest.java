@@ -0,0 +1,157 @@
+package com.synchrony.userapp.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+
+public class ImageContentCacheTest {
+
+    private ImageStore imageStore;
+
+    private SimpleMeterRegistry registry;
+
+    private ImageContentCache cache;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        imageStore = Mockito.mock(ImageStore.class);
+        registry = new SimpleMeterRegistry();
+        cache = new ImageContentCache(imageStore, registry, DataSize.ofBytes(100), DataSize.ofBytes(40), 100);
+        Mockito.when(imageStore.load(any())).thenAnswer(invocation -> new ByteArrayResource(
+                content(((String) invocation.getArgument(0)).length())));
+    }
+
+    /**
+     * Keys are chosen so that the content length is the length of the key.
+     */
+    private static byte[] content(final int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+
+    private static String key(final int length) {
+        return new String(new char[length]).replace('\0', 'k');
+    }
+
+    private double cachedBytes() {
+        // run the pending maintenance, Caffeine applies weights and evictions asynchronously
+        ((Cache<?, ?>) ReflectionTestUtils.getField(cache, "cache")).cleanUp();
+        return registry.get("image.cache.size").gauge().value();
+    }
+
+    private static byte[] read(final Resource resource) throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return StreamUtils.copyToByteArray(in);
+        }
+    }
+
+    /**
+     * Loads the key twice, so its content is admitted.
+     */
+    private Resource admit(final String storageKey) throws IOException {
+        cache.load(storageKey);
+        return cache.load(storageKey);
+    }
+
+    @Test
+    public void firstMissStreamsFromStoreTest() throws IOException {
+        Resource stored = new ByteArrayResource(content(30));
+        Mockito.when(imageStore.load("once")).thenReturn(stored);
+        assertSame(stored, cache.load("once"));
+        assertEquals(0.0, cachedBytes());
+    }
+
+    @Test
+    public void repeatedMissLoadsThroughTest() throws IOException {
+        Resource first = cache.load(key(30));
+        Resource second = cache.load(key(30));
+        Resource third = cache.load(key(30));
+        assertArrayEquals(content(30), read(first));
+        assertArrayEquals(content(30), read(second));
+        assertArrayEquals(content(30), read(third));
+        assertEquals(30, third.contentLength());
+        Mockito.verify(imageStore, Mockito.times(2)).load(key(30));
+        assertEquals(30.0, cachedBytes());
+    }
+
+    @Test
+    public void contentAboveMaxEntrySizeBypassesCacheTest() throws IOException {
+        Resource stored = new ByteArrayResource(content(41));
+        Mockito.when(imageStore.load("large")).thenReturn(stored);
+        assertSame(stored, cache.load("large"));
+        assertSame(stored, cache.load("large"));
+        Mockito.verify(imageStore, Mockito.times(2)).load("large");
+        assertEquals(0.0, cachedBytes());
+    }
+
+    @Test
+    public void contentOfUnknownLengthBypassesCacheTest() throws IOException {
+        Resource stored = Mockito.mock(Resource.class);
+        Mockito.when(stored.contentLength()).thenReturn(-1L);
+        Mockito.when(imageStore.load("unknown")).thenReturn(stored);
+        assertSame(stored, cache.load("unknown"));
+        assertEquals(0.0, cachedBytes());
+    }
+
+    @Test
+    public void entryLimitIsCappedToBufferSizeTest() throws IOException {
+        ImageContentCache large = new ImageContentCache(imageStore, new SimpleMeterRegistry(),
+                DataSize.ofGigabytes(8), DataSize.ofGigabytes(4), 100);
+        Resource stored = Mockito.mock(Resource.class);
+        Mockito.when(stored.contentLength()).thenReturn(3L * 1024 * 1024 * 1024);
+        Mockito.when(imageStore.load("huge")).thenReturn(stored);
+        assertSame(stored, large.load("huge"));
+        Mockito.verify(stored, Mockito.never()).getInputStream();
+    }
+
+    @Test
+    public void invalidateDropsContentTest() throws IOException {
+        admit(key(20));
+        cache.invalidate(key(20));
+        assertEquals(0.0, cachedBytes());
+        assertArrayEquals(content(20), read(cache.load(key(20))));
+        assertEquals(0.0, cachedBytes());
+        Mockito.verify(imageStore, Mockito.times(3)).load(key(20));
+    }
+
+    @Test
+    public void weightIsContentSizeTest() throws IOException {
+        admit(key(10));
+        admit(key(25));
+        assertEquals(35.0, cachedBytes());
+        admit(key(40));
+        admit(key(39));
+        admit(key(38));
+        assertTrue(cachedBytes() <= 100.0);
+    }
+
+    @Test
+    public void streamsDoNotInterfereTest() throws IOException {
+        Resource cached = admit(key(30));
+        InputStream first = cached.getInputStream();
+        first.skip(10);
+        assertArrayEquals(content(30), read(cached));
+        assertEquals(20, first.available());
+        assertNotSame(first, cached.getInputStream());
+    }
+}
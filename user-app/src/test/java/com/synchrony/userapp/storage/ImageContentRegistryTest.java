@@ -0,0 +1,223 @@
+package com.synchrony.userapp.storage;
+
+import com.synchrony.userapp.metrics.ImageMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.startsWith;
+
+/**
+ * Reference counting against the Flyway schema on H2. Tests are not wrapped in a transaction,
+ * so every registry call commits as it does in the application.
+ */
+@JdbcTest
+@Import(ImageContentRegistry.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ImageContentRegistryTest {
+
+    private static final String SHA256 = "5f70bf18a086007016e948b04aed3b82103a36bea41755b6cddfaf10ace3c6ef";
+
+    @Autowired
+    private ImageContentRegistry registry;
+
+    @SpyBean
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private ImageStore imageStore;
+
+    @MockBean
+    private ImageMetrics imageMetrics;
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.update("delete from image_content");
+        jdbcTemplate.update("delete from image_release");
+    }
+
+    private static StoredImage staged(final String stagingKey) {
+        return new StoredImage(stagingKey, 1024, SHA256);
+    }
+
+    private Long refCount() {
+        return refCount(SHA256);
+    }
+
+    private Long refCount(final String storageKey) {
+        return jdbcTemplate.query("select ref_count from image_content where content_hash = ?",
+                rs -> rs.next() ? rs.getLong(1) : null, storageKey);
+    }
+
+    @Test
+    public void referenceCountsSharedContentTest() throws IOException {
+        assertTrue(registry.reference(staged("first")));
+        assertFalse(registry.reference(staged("second")));
+        assertEquals(2L, refCount());
+        Mockito.verify(imageStore).publish(staged("first"));
+        Mockito.verify(imageStore).discard(staged("second"));
+        Mockito.verify(imageMetrics).recordContent(true, 1024);
+        Mockito.verify(imageMetrics).recordContent(false, 1024);
+    }
+
+    @Test
+    public void lastReleaseDeletesContentTest() throws IOException {
+        registry.reference(staged("first"));
+        registry.reference(staged("second"));
+        assertFalse(registry.release(SHA256));
+        assertEquals(1L, refCount());
+        Mockito.verify(imageStore, Mockito.never()).delete(SHA256);
+        assertTrue(registry.release(SHA256));
+        assertEquals(null, refCount());
+        Mockito.verify(imageStore).delete(SHA256);
+    }
+
+    @Test
+    public void releaseOfLegacyKeyDeletesContentTest() throws IOException {
+        assertTrue(registry.release("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7"));
+        Mockito.verify(imageStore).delete("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7");
+    }
+
+    @Test
+    public void referenceRetriesWhenConcurrentUploadInsertsFirstTest() throws IOException {
+        // the first count update misses, then a concurrent upload commits the row before our insert
+        Mockito.doAnswer(invocation -> {
+            Object updated = invocation.callRealMethod();
+            CompletableFuture.runAsync(() -> jdbcTemplate.update("insert into image_content"
+                    + " (content_hash, content_size, ref_count, created_at) values (?, 1024, 1, ?)",
+                    SHA256, Timestamp.from(Instant.now()))).join();
+            return updated;
+        }).doCallRealMethod().when(jdbcTemplate).update(startsWith("update image_content set ref_count"), (Object[]) any());
+        assertFalse(registry.reference(staged("second")));
+        assertEquals(2L, refCount());
+        Mockito.verify(imageStore, Mockito.never()).publish(any());
+        Mockito.verify(imageStore).discard(staged("second"));
+    }
+
+    @Test
+    public void referenceGivesUpAfterRepeatedDuplicateKeysTest() throws IOException {
+        Mockito.doThrow(new DuplicateKeyException("image_content"))
+                .when(jdbcTemplate).update(startsWith("insert into image_content"), any(), any(), any());
+        IOException failure = assertThrows(IOException.class, () -> registry.reference(staged("staged")));
+        assertTrue(failure.getCause() instanceof DuplicateKeyException);
+        Mockito.verify(jdbcTemplate, Mockito.times(3))
+                .update(startsWith("insert into image_content"), any(), any(), any());
+        Mockito.verify(imageStore).discard(staged("staged"));
+        Mockito.verifyNoInteractions(imageMetrics);
+    }
+
+    @Test
+    public void releaseAllCountsSharedKeysOncePerRowTest() throws IOException {
+        registry.reference(staged("first"));
+        registry.reference(staged("second"));
+        registry.reference(staged("third"));
+        assertEquals(Collections.emptyList(), registry.releaseAll(Arrays.asList(SHA256, SHA256)));
+        assertEquals(1L, refCount());
+        assertEquals(Collections.singletonList(SHA256), registry.releaseAll(Collections.singletonList(SHA256)));
+        // the row stays until its content is removed after the commit
+        assertEquals(0L, refCount());
+        assertEquals(0L, registry.report().getReferences());
+        Mockito.verify(imageStore, Mockito.never()).delete(any());
+        assertEquals(Collections.singletonList(SHA256), registry.removeUnreferenced(Collections.singletonList(SHA256)));
+        assertEquals(null, refCount());
+        Mockito.verify(imageStore).delete(SHA256);
+    }
+
+    @Test
+    public void releaseAllOfLegacyKeysTest() throws IOException {
+        registry.reference(staged("first"));
+        List<String> unreferenced = registry.releaseAll(Arrays.asList("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7", SHA256));
+        assertEquals(new HashSet<>(Arrays.asList("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7", SHA256)),
+                new HashSet<>(unreferenced));
+        assertEquals(0L, refCount("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7"));
+        Mockito.verify(imageStore, Mockito.never()).delete(any());
+        assertEquals(2, registry.removeUnreferenced(unreferenced).size());
+        Mockito.verify(imageStore).delete("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7");
+        Mockito.verify(imageStore).delete(SHA256);
+        assertEquals(null, refCount("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7"));
+    }
+
+    @Test
+    public void removeUnreferencedKeepsKeysWhichFailTest() throws IOException {
+        List<String> unreferenced = registry.releaseAll(Arrays.asList("0a", "0b", "0c"));
+        Mockito.doThrow(new IOException("disk")).when(imageStore).delete("0b");
+        assertEquals(Arrays.asList("0a", "0c"), registry.removeUnreferenced(unreferenced));
+        assertEquals(0L, refCount("0b"));
+        assertEquals(null, refCount("0a"));
+        assertEquals(null, refCount("0c"));
+        assertEquals(Collections.singletonList("0b"), registry.findUnreferenced("", 10));
+        Mockito.doNothing().when(imageStore).delete("0b");
+        assertEquals(Collections.singletonList("0b"), registry.removeUnreferenced(registry.findUnreferenced("", 10)));
+        assertEquals(Collections.emptyList(), registry.findUnreferenced("", 10));
+    }
+
+    @Test
+    public void uploadAfterReleaseKeepsContentTest() throws IOException {
+        registry.reference(staged("first"));
+        List<String> unreferenced = registry.releaseAll(Collections.singletonList(SHA256));
+        assertFalse(registry.reference(staged("second")));
+        assertEquals(Collections.emptyList(), registry.removeUnreferenced(unreferenced));
+        assertEquals(1L, refCount());
+        Mockito.verify(imageStore, Mockito.never()).delete(any());
+    }
+
+    @Test
+    public void releaseQueuedTest() throws IOException {
+        registry.reference(staged("first"));
+        registry.reference(staged("second"));
+        String releaseId = registry.queueRelease(Arrays.asList(SHA256, SHA256));
+        registry.queueRelease(Collections.singletonList("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7"));
+        assertEquals(new ReleasedReferences(1, Collections.emptyList()), registry.releaseQueued(releaseId, 1));
+        assertEquals(new ReleasedReferences(1, Collections.singletonList(SHA256)), registry.releaseQueued(releaseId, 10));
+        assertEquals(new ReleasedReferences(0, Collections.emptyList()), registry.releaseQueued(releaseId, 10));
+        // the other release is left queued
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from image_release", Integer.class).intValue());
+        Mockito.verify(imageStore, Mockito.never()).delete(any());
+    }
+
+    @Test
+    public void releaseQueuedBeforeTest() {
+        registry.queueRelease(Collections.singletonList("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7"));
+        assertEquals(0, registry.releaseQueuedBefore(Instant.now().minusSeconds(60), 10).getReleased());
+        assertEquals(new ReleasedReferences(1, Collections.singletonList("3f2a9c1e5b7d4e8fa0b1c2d3e4f5a6b7")),
+                registry.releaseQueuedBefore(Instant.now().plusSeconds(1), 10));
+    }
+
+    @Test
+    public void queuedReferenceIsReleasedOnceTest() throws IOException {
+        registry.reference(staged("first"));
+        registry.reference(staged("second"));
+        String releaseId = registry.queueRelease(Collections.singletonList(SHA256));
+        // a concurrent drain claims the row after it was read
+        Mockito.doAnswer(invocation -> {
+            CompletableFuture.runAsync(() -> jdbcTemplate.update("delete from image_release")).join();
+            return invocation.callRealMethod();
+        }).when(jdbcTemplate).batchUpdate(startsWith("delete from image_release"), anyList());
+        assertEquals(0, registry.releaseQueued(releaseId, 10).getReleased());
+        assertEquals(2L, refCount());
+    }
+}
@@ -0,0 +1,85 @@
+package com.synchrony.userapp.storage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ImageProbeTest {
+
+    private static String sniff(final byte[] content) throws IOException {
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(content));
+        String contentType = ImageProbe.sniffContentType(in);
+        // the sniffed bytes are read again by whoever stores the content
+        assertEquals(content.length > 0 ? content[0] & 0xFF : -1, in.read());
+        return contentType;
+    }
+
+    private static byte[] encode(final int width, final int height, final String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), format, out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void sniffJpegTest() throws IOException {
+        assertEquals(MediaType.IMAGE_JPEG_VALUE,
+                sniff(new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0, 0, 0, 0, 0}));
+    }
+
+    @Test
+    public void sniffPngTest() throws IOException {
+        assertEquals(MediaType.IMAGE_PNG_VALUE,
+                sniff(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'}));
+        assertNull(sniff(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, 0}));
+    }
+
+    @Test
+    public void sniffGifTest() throws IOException {
+        assertEquals(MediaType.IMAGE_GIF_VALUE, sniff("GIF87a..".getBytes()));
+        assertEquals(MediaType.IMAGE_GIF_VALUE, sniff("GIF89a..".getBytes()));
+        assertNull(sniff("GIF88a..".getBytes()));
+    }
+
+    @Test
+    public void sniffInputShorterThanSignatureTest() throws IOException {
+        assertNull(sniff(new byte[0]));
+        assertNull(sniff(new byte[] {(byte) 0xFF, (byte) 0xD8}));
+        assertNull(sniff(new byte[] {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A}));
+        assertEquals(MediaType.IMAGE_JPEG_VALUE, sniff(new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}));
+        assertEquals(MediaType.IMAGE_GIF_VALUE, sniff("GIF89a".getBytes()));
+    }
+
+    @Test
+    public void sniffUnknownContentTest() throws IOException {
+        assertNull(sniff("%PDF-1.7".getBytes()));
+    }
+
+    @Test
+    public void readDimensionsTest() throws IOException {
+        assertEquals(new Dimension(64, 32), ImageProbe.readDimensions(
+                new ByteArrayResource(encode(64, 32, "jpeg")), MediaType.IMAGE_JPEG_VALUE));
+        assertEquals(new Dimension(20, 40), ImageProbe.readDimensions(
+                new ByteArrayResource(encode(20, 40, "png")), MediaType.IMAGE_PNG_VALUE));
+        assertEquals(new Dimension(7, 3), ImageProbe.readDimensions(
+                new ByteArrayResource(encode(7, 3, "gif")), MediaType.IMAGE_GIF_VALUE));
+    }
+
+    @Test
+    public void readDimensionsOfUnreadableContentTest() {
+        assertNull(ImageProbe.readDimensions(new ByteArrayResource(new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+                MediaType.IMAGE_JPEG_VALUE));
+        assertNull(ImageProbe.readDimensions(new ByteArrayResource(new byte[10]), "image/x-unknown"));
+    }
+}
@@ -0,0 +1,105 @@
+package com.synchrony.userapp.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.StreamUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class ImageStoreMigrationTest {
+
+    private static final byte[] GALLERY_ID = new byte[16];
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private ImageStore imageStore;
+
+    @Mock
+    private ImageContentRegistry imageContentRegistry;
+
+    @InjectMocks
+    private ImageStoreMigration migration;
+
+    private final StoredImage stored = new StoredImage("staged", 42, "digest");
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(migration, "batchSize", 100);
+        Mockito.when(jdbcTemplate.queryForList(anyString(), eq(byte[].class), eq(100)))
+                .thenReturn(Collections.singletonList(GALLERY_ID));
+    }
+
+    private static byte[] png(final int width, final int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void legacyContent(final byte[] content) throws Exception {
+        ResultSet rs = Mockito.mock(ResultSet.class);
+        Mockito.when(rs.next()).thenReturn(true);
+        Mockito.when(rs.getBinaryStream(1)).thenReturn(new ByteArrayInputStream(content));
+        Mockito.when(jdbcTemplate.query(eq("select image from user_gallery where id = ?"),
+                any(ResultSetExtractor.class), eq(GALLERY_ID)))
+                .thenAnswer(invocation -> ((ResultSetExtractor<?>) invocation.getArgument(1)).extractData(rs));
+        Mockito.when(imageStore.store(any())).thenAnswer(invocation -> {
+            // the sniffed header has to be stored too
+            try (InputStream in = invocation.getArgument(0)) {
+                assertArrayEquals(content, StreamUtils.copyToByteArray(in));
+            }
+            return stored;
+        });
+        Mockito.when(imageStore.load("digest")).thenReturn(new ByteArrayResource(content));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object[] updatedRow() {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        Mockito.verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        assertEquals(1, rows.getValue().size());
+        return rows.getValue().get(0);
+    }
+
+    @Test
+    public void migratedRowGetsTypeAndDimensionsTest() throws Exception {
+        legacyContent(png(20, 40));
+        migration.run(null);
+        assertArrayEquals(new Object[] {"digest", 42L, "digest", "image/png", 20, 40, GALLERY_ID}, updatedRow());
+        Mockito.verify(imageContentRegistry).reference(stored);
+    }
+
+    @Test
+    public void unknownContentKeepsTypeAndDimensionsTest() throws Exception {
+        legacyContent(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        migration.run(null);
+        assertArrayEquals(new Object[] {"digest", 42L, "digest", null, null, null, GALLERY_ID}, updatedRow());
+        Mockito.verify(imageStore, Mockito.never()).load(any());
+    }
+}
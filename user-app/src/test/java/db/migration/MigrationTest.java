@@ -0,0 +1,113 @@
+package db.migration;
+
+import com.synchrony.userapp.entity.TimeOrderedUuidGenerator;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Migrations run one version at a time against data written in the schema they start from.
+ */
+public class MigrationTest {
+
+    private DriverManagerDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:migration-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.execute("shutdown");
+    }
+
+    private void migrate(final String target) {
+        Flyway.configure().dataSource(dataSource).target(target).load().migrate();
+    }
+
+    @Test
+    public void idsAreConvertedToBinaryTest() {
+        migrate("2");
+        List<String> userIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            userIds.add(UUID.randomUUID().toString());
+            jdbcTemplate.update("insert into users (id, email, password) values (?, ?, 'hash')",
+                    userIds.get(i), "user" + i + "@yopmail.com");
+        }
+        // more rows than one conversion batch, spread over the users
+        List<Object[]> galleries = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+            galleries.add(new Object[] {UUID.randomUUID().toString(), userIds.get(i % 3), "img" + i + ".jpg"});
+        }
+        jdbcTemplate.batchUpdate("insert into user_gallery (id, user_id, file_name) values (?, ?, ?)", galleries);
+        jdbcTemplate.update("insert into user_gallery (id, user_id, file_name) values (?, null, 'orphan.jpg')",
+                UUID.randomUUID().toString());
+        String variantId = UUID.randomUUID().toString();
+        jdbcTemplate.update("insert into image_variant (id, source_key, max_dimension, storage_key)"
+                + " values (?, 'source', 160, 'variant')", variantId);
+
+        migrate("3");
+
+        int[] galleryCounts = {834, 833, 833};
+        for (int i = 0; i < 3; i++) {
+            byte[] binary = TimeOrderedUuidGenerator.toBytes(UUID.fromString(userIds.get(i)));
+            assertEquals(userIds.get(i), TimeOrderedUuidGenerator.fromBytes(jdbcTemplate.queryForObject(
+                    "select id from users where id = ?", byte[].class, binary)).toString());
+            assertEquals(galleryCounts[i], jdbcTemplate.queryForObject(
+                    "select count(*) from user_gallery where user_id = ?", Integer.class, binary));
+        }
+        for (Object[] gallery : galleries.subList(0, 10)) {
+            byte[] userId = jdbcTemplate.queryForObject("select user_id from user_gallery where id = ?", byte[].class,
+                    TimeOrderedUuidGenerator.toBytes(UUID.fromString((String) gallery[0])));
+            assertEquals(gallery[1], TimeOrderedUuidGenerator.fromBytes(userId).toString());
+        }
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "select count(*) from user_gallery where user_id is null", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject("select count(*) from image_variant where id = ?", Integer.class,
+                TimeOrderedUuidGenerator.toBytes(UUID.fromString(variantId))));
+        // the keys are back in place on the binary columns
+        byte[] unknownUser = TimeOrderedUuidGenerator.toBytes(TimeOrderedUuidGenerator.next());
+        assertThrows(DataIntegrityViolationException.class, () -> insertGallery(unknownUser, null));
+        byte[] existingId = TimeOrderedUuidGenerator.toBytes(UUID.fromString(userIds.get(0)));
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "insert into users (id, email, password) values (?, 'copy@yopmail.com', 'hash')", existingId));
+    }
+
+    @Test
+    public void galleryCreatedAtIsBackfilledTest() {
+        migrate("4");
+        byte[] userId = TimeOrderedUuidGenerator.toBytes(TimeOrderedUuidGenerator.next());
+        jdbcTemplate.update("insert into users (id, email, password) values (?, 'vidhya@yopmail.com', 'hash')", userId);
+        Timestamp oldest = Timestamp.valueOf("2023-01-17 10:15:30");
+        insertGallery(userId, oldest);
+        insertGallery(userId, Timestamp.valueOf("2023-02-01 08:00:00"));
+        insertGallery(userId, null);
+        insertGallery(userId, null);
+        migrate("5");
+        List<Timestamp> createdAt = jdbcTemplate.queryForList(
+                "select created_at from user_gallery order by created_at", Timestamp.class);
+        assertEquals(List.of(oldest, oldest, oldest, Timestamp.valueOf("2023-02-01 08:00:00")), createdAt);
+        assertThrows(DataIntegrityViolationException.class, () -> insertGallery(userId, null));
+    }
+
+    private void insertGallery(final byte[] userId, final Timestamp createdAt) {
+        jdbcTemplate.update("insert into user_gallery (id, user_id, file_name, created_at) values (?, ?, 'img.jpg', ?)",
+                TimeOrderedUuidGenerator.toBytes(TimeOrderedUuidGenerator.next()), userId, createdAt);
+    }
+}